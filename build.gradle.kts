@@ -3,6 +3,7 @@ plugins {
     id("com.diffplug.spotless") version "6.22.0"
     id("org.springframework.boot") version "3.3.4"
     id("io.spring.dependency-management") version "1.1.6"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "me.zhc1"
@@ -27,18 +28,49 @@ repositories {
 dependencies {
     implementation("org.springframework.boot:spring-boot-starter-data-jpa")
     implementation("org.springframework.boot:spring-boot-starter-web")
+    implementation("org.springframework.boot:spring-boot-starter-actuator")
+    implementation("com.github.ben-manes.caffeine:caffeine")
     compileOnly("org.projectlombok:lombok")
     runtimeOnly("com.h2database:h2")
+    runtimeOnly("io.micrometer:micrometer-registry-prometheus")
     annotationProcessor("org.springframework.boot:spring-boot-configuration-processor")
     annotationProcessor("org.projectlombok:lombok")
     testImplementation("org.springframework.boot:spring-boot-starter-test")
     testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+    jmh("com.h2database:h2")
 }
 
 tasks.withType<Test> {
     useJUnitPlatform()
 }
 
+tasks.test {
+    useJUnitPlatform {
+        excludeTags("load")
+    }
+}
+
+// ./gradlew loadTest
+val loadTest by tasks.registering(Test::class) {
+    description = "Runs the HTTP load tests comparing platform and virtual threads."
+    group = "verification"
+    testClassesDirs = sourceSets.test.get().output.classesDirs
+    classpath = sourceSets.test.get().runtimeClasspath
+    useJUnitPlatform {
+        includeTags("load")
+    }
+    maxHeapSize = "2g"
+    testLogging.showStandardStreams = true
+}
+
+// ./gradlew jmh -Pjmh.includes=PointServiceBenchmark
+jmh {
+    (findProperty("jmh.includes") as String?)?.let { includes = listOf(it) }
+    profilers = listOf("gc")
+    resultFormat = "JSON"
+    jvmArgs = listOf("-Xms1g", "-Xmx1g")
+}
+
 spotless {
     java {
         palantirJavaFormat("2.38.0")
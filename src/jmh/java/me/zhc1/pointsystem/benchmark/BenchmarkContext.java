@@ -0,0 +1,54 @@
+package me.zhc1.pointsystem.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import me.zhc1.pointsystem.PointSystemApplication;
+import me.zhc1.pointsystem.service.PointService;
+import me.zhc1.pointsystem.service.UserRegistrar;
+
+// Boots the real application against a private in-memory H2 database, without the web layer
+final class BenchmarkContext {
+    private BenchmarkContext() {}
+
+    static ConfigurableApplicationContext start(String... properties) {
+        return new SpringApplicationBuilder(PointSystemApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.datasource.url=jdbc:h2:mem:bench-" + UUID.randomUUID() + ";MODE=MYSQL")
+                .properties("spring.jpa.show-sql=false", "logging.level.root=warn")
+                .properties(properties)
+                .run();
+    }
+
+    // Private in-memory H2 databases, one per shard
+    static String[] shardProperties(int shards) {
+        String run = UUID.randomUUID().toString();
+        String[] properties = new String[shards + 1];
+        properties[0] = "point.sharding.enabled=true";
+        for (int shard = 0; shard < shards; shard++) {
+            properties[shard + 1] =
+                    "point.sharding.urls[%s]=jdbc:h2:mem:bench-%s-%s;MODE=MYSQL".formatted(shard, run, shard);
+        }
+        return properties;
+    }
+
+    static int createUser(ConfigurableApplicationContext context) {
+        String name = UUID.randomUUID().toString();
+        return context.getBean(UserRegistrar.class)
+                .register(name, name + "@example.com")
+                .getUserId();
+    }
+
+    // Blocks are large enough that the benchmark never runs out of points to spend
+    static void seedBlocks(ConfigurableApplicationContext context, int userId, int blocks) {
+        PointService pointService = context.getBean(PointService.class);
+        LocalDateTime expiresAt = LocalDateTime.now().plusYears(1);
+        for (int i = 0; i < blocks; i++) {
+            pointService.earnPoints(userId, 1_000_000_000L, expiresAt.plusMinutes(i));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package me.zhc1.pointsystem.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+
+import me.zhc1.pointsystem.service.PointService;
+
+// Acknowledgement latency of a queued earn against a synchronous one, from the caller's side.
+// The end-to-end latency from acceptance to the group commit is printed from the queue's timer after each trial.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class EarnQueueBenchmark {
+    private static final int USERS = 64;
+    private static final int THREADS = 16;
+
+    ConfigurableApplicationContext context;
+    PointService pointService;
+    int[] userIds;
+    final AtomicInteger nextUser = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(
+                "point.earn-queue.max-pending=10000000", "management.metrics.distribution.percentiles.all=0.5,0.99");
+        pointService = context.getBean(PointService.class);
+
+        userIds = new int[USERS];
+        for (int i = 0; i < USERS; i++) {
+            userIds[i] = BenchmarkContext.createUser(context);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Timer latency = context.getBean(MeterRegistry.class)
+                .find("point.earn.queue.latency")
+                .timer();
+        if (latency != null && latency.count() > 0) {
+            StringBuilder percentiles = new StringBuilder();
+            for (ValueAtPercentile value : latency.takeSnapshot().percentileValues()) {
+                percentiles.append(" p%s=%.1fms".formatted(
+                        Math.round(value.percentile() * 100), value.value(TimeUnit.MILLISECONDS)));
+            }
+            System.out.printf(
+                    "%nEnd-to-end earn queue latency over %d grants:%s max=%.1fms%n",
+                    latency.count(), percentiles, latency.max(TimeUnit.MILLISECONDS));
+        }
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Caller {
+        int userId;
+
+        @Setup(Level.Trial)
+        public void setUp(EarnQueueBenchmark benchmark) {
+            userId = benchmark.userIds[benchmark.nextUser.getAndIncrement() % USERS];
+        }
+    }
+
+    @Benchmark
+    @Threads(THREADS)
+    public void earnPoints(Caller caller) {
+        pointService.earnPoints(caller.userId, 1L, LocalDateTime.now().plusYears(1));
+    }
+
+    @Benchmark
+    @Threads(THREADS)
+    public void earnPointsAsync(Caller caller) {
+        pointService.earnPointsAsync(caller.userId, 1L, LocalDateTime.now().plusYears(1), null);
+    }
+}
@@ -0,0 +1,88 @@
+package me.zhc1.pointsystem.benchmark;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.unit.DataSize;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import me.zhc1.pointsystem.config.FraudProperties;
+import me.zhc1.pointsystem.service.FraudAction;
+import me.zhc1.pointsystem.service.FraudDetector;
+
+// Per-event cost of the fraud check with every user's window already in memory; the p99 of the sample time
+// is what each earn and use pays. The heap used per tracked user is printed after each trial.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class FraudDetectorBenchmark {
+    @Param({"10000", "1000000"})
+    int users;
+
+    FraudDetector fraudDetector;
+    long heapBefore;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        heapBefore = usedHeap();
+        FraudProperties properties = new FraudProperties(
+                true, FraudAction.FLAG, DataSize.ofGigabytes(1), 60, 1_000_000L, 100_000L, Duration.ofMinutes(10));
+        fraudDetector = new FraudDetector(properties, new SimpleMeterRegistry());
+        for (int userId = 1; userId <= users; userId++) {
+            fraudDetector.onEarn(userId, 100L);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        long tracked = fraudDetector.trackedUsers();
+        System.out.printf(
+                "%nTracking %d users in about %d bytes each%n", tracked, (usedHeap() - heapBefore) / tracked);
+    }
+
+    @Benchmark
+    public void use() {
+        fraudDetector.onUse(nextUser(), 10L);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void useConcurrently() {
+        fraudDetector.onUse(nextUser(), 10L);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void earnConcurrently() {
+        fraudDetector.onEarn(nextUser(), 10L);
+    }
+
+    private int nextUser() {
+        return ThreadLocalRandom.current().nextInt(users) + 1;
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,103 @@
+package me.zhc1.pointsystem.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import me.zhc1.pointsystem.service.PartnerPointImporter;
+import me.zhc1.pointsystem.service.PartnerPointImporter.ImportResult;
+import me.zhc1.pointsystem.service.UserRegistrar;
+
+// One import per iteration of a generated partner file, printing the records it imported per second.
+// Its checkpoints are dropped before every iteration so the same file imports again. H2 keeps every imported
+// block and ledger event on the heap, hence the large one.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 2)
+@Fork(value = 1, jvmArgs = "-Xmx16g")
+public class PartnerImportBenchmark {
+    private static final int USERS = 100_000;
+
+    @Param({"1000000", "10000000"})
+    int lines;
+
+    ConfigurableApplicationContext context;
+    PartnerPointImporter importer;
+    JdbcTemplate jdbcTemplate;
+    Path file;
+    ImportResult result;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        context = BenchmarkContext.start("point.fraud.enabled=false");
+        importer = context.getBean(PartnerPointImporter.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+
+        UserRegistrar userRegistrar = context.getBean(UserRegistrar.class);
+        for (int i = 0; i < USERS; i++) {
+            userRegistrar.register(username(i), username(i) + "@example.com");
+        }
+
+        file = Files.createTempFile("partner-", ".csv");
+        LocalDate validThrough = LocalDate.now().plusYears(1);
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (int i = 0; i < lines; i++) {
+                writer.write(username(i % USERS));
+                writer.write(',');
+                writer.write(Integer.toString(1 + i % 1000));
+                writer.write(',');
+                writer.write(validThrough.plusDays(i % 30).toString());
+                writer.write('\n');
+            }
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void dropCheckpoints() {
+        jdbcTemplate.update("DELETE FROM job_checkpoints WHERE job_name LIKE 'partner-import:%'");
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        System.out.printf(
+                "%n%,d of %,d lines imported, %,.0f records/s%n",
+                result.imported(), result.lines(), result.recordsPerSecond());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long importFile() {
+        result = importer.importFile(file);
+        return result.imported();
+    }
+
+    private static String username(int index) {
+        return "partner-user-" + index;
+    }
+}
@@ -0,0 +1,70 @@
+package me.zhc1.pointsystem.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import me.zhc1.pointsystem.service.PointService;
+
+// One expiration run per iteration over freshly earned, already expired blocks
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PointExpirationBenchmark {
+    private static final int USERS = 10;
+
+    @Param({"1", "100", "10000"})
+    int blocksPerUser;
+
+    ConfigurableApplicationContext context;
+    PointService pointService;
+    int[] userIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        pointService = context.getBean(PointService.class);
+
+        userIds = new int[USERS];
+        for (int i = 0; i < USERS; i++) {
+            userIds[i] = BenchmarkContext.createUser(context);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void earnExpiredBlocks() {
+        LocalDateTime expiresAt = LocalDateTime.now().minusDays(1);
+        for (int userId : userIds) {
+            for (int i = 0; i < blocksPerUser; i++) {
+                pointService.earnPoints(userId, 100L, expiresAt);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public long expirePoints() {
+        return pointService.expirePoints().blocks();
+    }
+}
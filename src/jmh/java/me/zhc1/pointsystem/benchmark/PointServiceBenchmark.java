@@ -0,0 +1,124 @@
+package me.zhc1.pointsystem.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import me.zhc1.pointsystem.service.PointService;
+
+// Throughput and sampled latency (p50/p99) of the PointService hot paths against a real H2-backed context.
+// Every benchmark thread works on its own user, seeded with blocksPerUser live blocks.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PointServiceBenchmark {
+    private static final int USERS = 8;
+
+    @Param({"1", "100", "10000"})
+    int blocksPerUser;
+
+    ConfigurableApplicationContext context;
+    PointService pointService;
+    int[] userIds;
+    final AtomicInteger nextUser = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        pointService = context.getBean(PointService.class);
+
+        userIds = new int[USERS];
+        for (int i = 0; i < USERS; i++) {
+            userIds[i] = BenchmarkContext.createUser(context);
+            BenchmarkContext.seedBlocks(context, userIds[i], blocksPerUser);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Caller {
+        int userId;
+
+        @Setup(Level.Trial)
+        public void setUp(PointServiceBenchmark benchmark) {
+            userId = benchmark.userIds[benchmark.nextUser.getAndIncrement() % USERS];
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long getAvailablePoints(Caller caller) {
+        return pointService.getAvailablePoints(caller.userId);
+    }
+
+    @Benchmark
+    @Threads(USERS)
+    public long getAvailablePointsMultiThreaded(Caller caller) {
+        return pointService.getAvailablePoints(caller.userId);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void usePoints(Caller caller) {
+        pointService.usePoints(caller.userId, 1L);
+    }
+
+    @Benchmark
+    @Threads(USERS)
+    public void usePointsMultiThreaded(Caller caller) {
+        pointService.usePoints(caller.userId, 1L);
+    }
+
+    // Earned blocks accumulate during the run, so later iterations see slightly more blocks than the parameter
+    @Benchmark
+    @Threads(1)
+    public void earnPoints(Caller caller) {
+        pointService.earnPoints(caller.userId, 1L, LocalDateTime.now().plusYears(2));
+    }
+
+    @Benchmark
+    @Threads(USERS)
+    public void earnPointsMultiThreaded(Caller caller) {
+        pointService.earnPoints(caller.userId, 1L, LocalDateTime.now().plusYears(2));
+    }
+
+    // Storefront-like mix: three balance reads for every spend
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(6)
+    public long mixedRead(Caller caller) {
+        return pointService.getAvailablePoints(caller.userId);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public void mixedWrite(Caller caller) {
+        pointService.usePoints(caller.userId, 1L);
+    }
+}
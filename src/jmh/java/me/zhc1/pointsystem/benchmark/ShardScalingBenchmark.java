@@ -0,0 +1,84 @@
+package me.zhc1.pointsystem.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import me.zhc1.pointsystem.service.PointService;
+
+// Functional smoke test of the sharded write path under many concurrent users, for 1, 2 and 4 shards.
+// All shards are in-memory H2 databases in this JVM sharing its CPUs, so the numbers say nothing about how
+// throughput scales with real shards; they only catch routing overhead or contention the sharding adds.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ShardScalingBenchmark {
+    private static final int USERS = 64;
+    private static final int THREADS = 32;
+
+    @Param({"1", "2", "4"})
+    int shards;
+
+    ConfigurableApplicationContext context;
+    PointService pointService;
+    int[] userIds;
+    final AtomicInteger nextUser = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(BenchmarkContext.shardProperties(shards));
+        pointService = context.getBean(PointService.class);
+
+        userIds = new int[USERS];
+        for (int i = 0; i < USERS; i++) {
+            userIds[i] = BenchmarkContext.createUser(context);
+            BenchmarkContext.seedBlocks(context, userIds[i], 1);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Caller {
+        int userId;
+
+        @Setup(Level.Trial)
+        public void setUp(ShardScalingBenchmark benchmark) {
+            userId = benchmark.userIds[benchmark.nextUser.getAndIncrement() % USERS];
+        }
+    }
+
+    @Benchmark
+    @Threads(THREADS)
+    public void earnPoints(Caller caller) {
+        pointService.earnPoints(caller.userId, 1L, LocalDateTime.now().plusYears(2));
+    }
+
+    @Benchmark
+    @Threads(THREADS)
+    public void usePoints(Caller caller) {
+        pointService.usePoints(caller.userId, 1L);
+    }
+}
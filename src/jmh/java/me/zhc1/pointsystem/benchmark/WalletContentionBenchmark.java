@@ -0,0 +1,91 @@
+package me.zhc1.pointsystem.benchmark;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import me.zhc1.pointsystem.service.PointService;
+
+// Families of four on a ring of users, spending from their wallets and transferring between members concurrently.
+// With a stride of four the families are disjoint; smaller strides make every user a member of more families,
+// so more spends wait on each other's locks.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class WalletContentionBenchmark {
+    private static final int USERS = 64;
+    private static final int FAMILY_SIZE = 4;
+    private static final int THREADS = 16;
+
+    @Param({"4", "2", "1"})
+    int stride;
+
+    ConfigurableApplicationContext context;
+    PointService pointService;
+    int[] userIds;
+    int[] walletIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("point.fraud.enabled=false");
+        pointService = context.getBean(PointService.class);
+
+        userIds = new int[USERS];
+        for (int i = 0; i < USERS; i++) {
+            userIds[i] = BenchmarkContext.createUser(context);
+            BenchmarkContext.seedBlocks(context, userIds[i], 4);
+        }
+
+        walletIds = new int[USERS / stride];
+        for (int w = 0; w < walletIds.length; w++) {
+            Integer[] members = new Integer[FAMILY_SIZE];
+            for (int m = 0; m < FAMILY_SIZE; m++) {
+                members[m] = userIds[(w * stride + m) % USERS];
+            }
+            walletIds[w] = pointService.createWallet("family-" + w, List.of(members)).getWalletId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @Threads(THREADS)
+    public void useWalletPoints() {
+        pointService.useWalletPoints(walletIds[ThreadLocalRandom.current().nextInt(walletIds.length)], 1L);
+    }
+
+    // Between two members of one family, in either direction
+    @Benchmark
+    @Threads(THREADS)
+    public void transferPoints() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(USERS / stride) * stride;
+        int from = userIds[(first + random.nextInt(FAMILY_SIZE)) % USERS];
+        int to = userIds[(first + random.nextInt(FAMILY_SIZE)) % USERS];
+        if (from != to) {
+            pointService.transferPoints(from, to, 1L);
+        }
+    }
+}
@@ -2,8 +2,12 @@ package me.zhc1.pointsystem;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
+@EnableScheduling
 public class PointSystemApplication {
     public static void main(String[] args) {
         SpringApplication.run(PointSystemApplication.class, args);
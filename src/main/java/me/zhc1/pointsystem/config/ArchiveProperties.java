@@ -0,0 +1,15 @@
+package me.zhc1.pointsystem.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties("point.archive")
+public record ArchiveProperties(
+        @DefaultValue("0 30 3 * * *") String cron,
+        // Usages older than this move to the archive and can no longer be canceled
+        @DefaultValue("90d") Duration retention,
+        @DefaultValue("1000") int chunkSize,
+        // Gives foreground traffic room between chunks of the background sweep
+        @DefaultValue("0ms") Duration pauseBetweenChunks) {}
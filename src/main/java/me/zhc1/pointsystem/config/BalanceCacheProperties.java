@@ -0,0 +1,14 @@
+package me.zhc1.pointsystem.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties("point.balance-cache")
+public record BalanceCacheProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("100000") long maximumSize,
+        @DefaultValue("30s") Duration ttl,
+        // Writers are fenced per stripe, so a larger value means fewer readers bypass the cache during a commit
+        @DefaultValue("4096") int invalidationStripes) {}
@@ -0,0 +1,14 @@
+package me.zhc1.pointsystem.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+@ConfigurationProperties("point.block-heap")
+public record BlockHeapProperties(
+        @DefaultValue("true") boolean enabled,
+        // Estimated from the array sizes; least recently used users are evicted beyond it
+        @DefaultValue("64MB") DataSize maximumMemory,
+        @DefaultValue("10m") Duration idleTimeout) {}
@@ -0,0 +1,7 @@
+package me.zhc1.pointsystem.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties("point.bulk-earn")
+public record BulkEarnProperties(@DefaultValue("1000") int chunkSize) {}
@@ -0,0 +1,7 @@
+package me.zhc1.pointsystem.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties("point.cancel")
+public record CancelProperties(@DefaultValue("500") int chunkSize) {}
@@ -0,0 +1,15 @@
+package me.zhc1.pointsystem.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties("point.concurrency")
+public record ConcurrencyProperties(
+        // Serialize operations of the same user inside this JVM before they reach the database
+        @DefaultValue("true") boolean lockStriping,
+        @DefaultValue("1024") int lockStripes,
+        // Total attempts, including the first one, for a transaction that hit a concurrency conflict
+        @DefaultValue("5") int maxAttempts,
+        @DefaultValue("5ms") Duration retryBackoff) {}
@@ -0,0 +1,14 @@
+package me.zhc1.pointsystem.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties("point.db-permits")
+public record DbPermitProperties(
+        @DefaultValue("false") boolean enabled,
+        // Connections nested in a permit holder's skip the gate, so this must stay below the pool size by the most
+        // connections one request holds at once, or permit holders end up waiting inside the pool
+        @DefaultValue("8") int permits,
+        @DefaultValue("5s") Duration acquireTimeout) {}
@@ -0,0 +1,15 @@
+package me.zhc1.pointsystem.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties("point.earn-queue")
+public record EarnQueueProperties(
+        // Grants applied by one group commit
+        @DefaultValue("500") int batchSize,
+        // ISO-8601, since @Scheduled reads it as well
+        @DefaultValue("PT0.1S") Duration drainInterval,
+        // Beyond this many unapplied grants new ones are rejected until the consumer catches up
+        @DefaultValue("100000") long maxPending) {}
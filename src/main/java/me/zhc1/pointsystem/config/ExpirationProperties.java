@@ -0,0 +1,12 @@
+package me.zhc1.pointsystem.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties("point.expiration")
+public record ExpirationProperties(
+        @DefaultValue("500") int chunkSize,
+        // Gives foreground traffic room between chunks of the background sweep
+        @DefaultValue("0ms") Duration pauseBetweenChunks) {}
@@ -0,0 +1,18 @@
+package me.zhc1.pointsystem.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import me.zhc1.pointsystem.service.ExpiryNotifier;
+import me.zhc1.pointsystem.service.LoggingExpiryNotifier;
+
+@Configuration(proxyBeanMethods = false)
+public class ExpiryNotificationConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    ExpiryNotifier expiryNotifier() {
+        return new LoggingExpiryNotifier();
+    }
+}
@@ -0,0 +1,12 @@
+package me.zhc1.pointsystem.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties("point.expiry-notification")
+public record ExpiryNotificationProperties(
+        // Users are notified of points expiring today and in the following days, this many days in all
+        @DefaultValue("7") int days,
+        // Users handed to the notifier at a time
+        @DefaultValue("1000") int chunkSize,
+        @DefaultValue("0 0 9 * * *") String cron) {}
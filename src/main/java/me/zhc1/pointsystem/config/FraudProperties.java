@@ -0,0 +1,25 @@
+package me.zhc1.pointsystem.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import me.zhc1.pointsystem.service.FraudAction;
+
+// A limit of 0 turns its rule off
+@ConfigurationProperties("point.fraud")
+public record FraudProperties(
+        @DefaultValue("true") boolean enabled,
+        // FLAG lets suspicious operations through and reports them, HOLD rejects them
+        @DefaultValue("FLAG") FraudAction action,
+        // Estimated from the window sizes; least recently active users are evicted beyond it
+        @DefaultValue("256MB") DataSize maximumMemory,
+        // Earns and uses of one user within a minute
+        @DefaultValue("60") int maxEventsPerMinute,
+        // Points one user spends within an hour
+        @DefaultValue("1000000") long maxSpendPerHour,
+        // An earn of at least this much makes a spend that follows it within quickSpendWindow suspicious
+        @DefaultValue("100000") long largeEarn,
+        @DefaultValue("10m") Duration quickSpendWindow) {}
@@ -0,0 +1,16 @@
+package me.zhc1.pointsystem.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties("point.idempotency")
+public record IdempotencyProperties(
+        // Recent keys answered from memory without a database read
+        @DefaultValue("100000") long cacheSize,
+        // How long a client may retry with the same key
+        @DefaultValue("24h") Duration retention,
+        // ISO-8601, since @Scheduled reads it as well
+        @DefaultValue("PT10M") Duration purgeInterval,
+        @DefaultValue("1000") int purgeChunkSize) {}
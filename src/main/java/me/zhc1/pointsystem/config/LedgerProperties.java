@@ -0,0 +1,13 @@
+package me.zhc1.pointsystem.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties("point.ledger")
+public record LedgerProperties(
+        // How often ledger tails are folded into the balance snapshots. ISO-8601, since @Scheduled reads it as well
+        @DefaultValue("PT1M") Duration snapshotInterval,
+        @DefaultValue("1000") int snapshotChunkSize,
+        @DefaultValue("1000") int rebuildChunkSize) {}
@@ -0,0 +1,11 @@
+package me.zhc1.pointsystem.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties("point.liability")
+public record LiabilityProperties(
+        // Rows each day and cohort is spread over; also the partitions of a backfill
+        @DefaultValue("8") int slots,
+        // Slots a backfill rebuilds at once on each shard
+        @DefaultValue("4") int backfillParallelism) {}
@@ -0,0 +1,14 @@
+package me.zhc1.pointsystem.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties("point.partner-import")
+public record PartnerImportProperties(
+        // Lines parsed and resolved together; each partition writes its share of a chunk in one transaction
+        @DefaultValue("10000") int chunkSize,
+        // Partitions of every shard, by user id. Their checkpoints are named after them, so changing this
+        // makes an unfinished import start over
+        @DefaultValue("16") int partitions,
+        // Partitions written at once on each shard
+        @DefaultValue("4") int parallelism) {}
@@ -0,0 +1,120 @@
+package me.zhc1.pointsystem.config;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+// Admits callers to the connection pool through a fair semaphore.
+// With virtual threads, tens of thousands of requests can ask for a connection at once; parking them here
+// is cheap and FIFO, whereas piling them up inside the pool ends in connection timeouts.
+// A thread that already holds a permit opens further connections without another one, as for REQUIRES_NEW or a
+// write outside the caller's transaction; waiting for a permit while holding one could otherwise deadlock once
+// every permit is held that way. Those nested connections still come from the pool, so the permits must stay
+// below the pool size by the most connections one thread holds at a time.
+public class PermitGatedDataSource extends DelegatingDataSource {
+    private final Semaphore permits;
+    private final long acquireTimeoutNanos;
+    // Connections the current thread has open through this gate
+    private final ThreadLocal<int[]> openOnThread = ThreadLocal.withInitial(() -> new int[1]);
+
+    public PermitGatedDataSource(DataSource targetDataSource, int permits, Duration acquireTimeout) {
+        super(targetDataSource);
+        if (permits <= 0) {
+            throw new IllegalArgumentException("Permits must be positive");
+        }
+
+        this.permits = new Semaphore(permits, true);
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        boolean gated = acquire();
+        try {
+            return releasingOnClose(super.getConnection(), gated);
+        } catch (SQLException | RuntimeException e) {
+            release(gated);
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        boolean gated = acquire();
+        try {
+            return releasingOnClose(super.getConnection(username, password), gated);
+        } catch (SQLException | RuntimeException e) {
+            release(gated);
+            throw e;
+        }
+    }
+
+    public int availablePermits() {
+        return permits.availablePermits();
+    }
+
+    public int queueLength() {
+        return permits.getQueueLength();
+    }
+
+    // Returns whether a permit was taken, false for a connection nested in one the thread already holds
+    private boolean acquire() throws SQLException {
+        int[] open = openOnThread.get();
+        if (open[0] > 0) {
+            open[0]++;
+            return false;
+        }
+
+        try {
+            if (!permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new SQLTransientConnectionException(
+                        "Timed out waiting for a database permit, %s callers queued".formatted(queueLength()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a database permit", e);
+        }
+        open[0]++;
+        return true;
+    }
+
+    private void release(boolean gated) {
+        int[] open = openOnThread.get();
+        open[0] = Math.max(open[0] - 1, 0);
+        if (gated) {
+            permits.release();
+        }
+    }
+
+    private Connection releasingOnClose(Connection connection, boolean gated) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(), new Class<?>[] {Connection.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("close") && released.compareAndSet(false, true)) {
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        } finally {
+                            release(gated);
+                        }
+                    }
+
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+}
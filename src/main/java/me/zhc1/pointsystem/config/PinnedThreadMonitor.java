@@ -0,0 +1,69 @@
+package me.zhc1.pointsystem.config;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+
+import org.springframework.context.SmartLifecycle;
+
+import lombok.extern.slf4j.Slf4j;
+
+// Streams the JFR jdk.VirtualThreadPinned event in-process and reports every virtual thread that stayed pinned
+// to its carrier longer than the threshold, typically by blocking inside synchronized code or a native frame
+@Slf4j
+public class PinnedThreadMonitor implements SmartLifecycle {
+    private final Duration threshold;
+    private final AtomicLong pinnedCount = new AtomicLong();
+    private RecordingStream stream;
+
+    public PinnedThreadMonitor(Duration threshold) {
+        this.threshold = threshold;
+    }
+
+    @Override
+    public synchronized void start() {
+        stream = new RecordingStream();
+        stream.enable("jdk.VirtualThreadPinned").withThreshold(threshold).withStackTrace();
+        stream.onEvent("jdk.VirtualThreadPinned", this::report);
+        stream.startAsync();
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (stream != null) {
+            stream.close();
+            stream = null;
+        }
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return stream != null;
+    }
+
+    public long pinnedCount() {
+        return pinnedCount.get();
+    }
+
+    private void report(RecordedEvent event) {
+        pinnedCount.incrementAndGet();
+
+        StringBuilder frames = new StringBuilder();
+        if (event.getStackTrace() != null) {
+            event.getStackTrace().getFrames().stream().limit(8).forEach(frame -> frames.append("\n\tat ")
+                    .append(describe(frame)));
+        }
+        log.warn(
+                "Virtual thread {} pinned its carrier for {} ms{}",
+                event.getThread() == null ? "?" : event.getThread().getJavaName(),
+                event.getDuration().toMillis(),
+                frames);
+    }
+
+    private static String describe(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+}
@@ -0,0 +1,18 @@
+package me.zhc1.pointsystem.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties("point.reconciliation")
+public record ReconciliationProperties(
+        @DefaultValue("0 0 4 * * *") String cron,
+        // User ids checked by one aggregate statement
+        @DefaultValue("10000") int partitionSize,
+        // Partition statements running at once on each shard
+        @DefaultValue("4") int parallelism,
+        // Partition statements started per second on each shard, the bound on the load the job adds
+        @DefaultValue("20") double partitionsPerSecond,
+        // Appends an ADJUST event that brings the ledger back to the blocks
+        @DefaultValue("false") boolean autoRepair,
+        // Mismatches kept in the report and logged; all of them are counted and repaired
+        @DefaultValue("100") int reportLimit) {}
@@ -0,0 +1,41 @@
+package me.zhc1.pointsystem.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+// Replaces the single datasource with one pool per shard behind a routing datasource.
+// Everything built on the DataSource bean, JPA included, then follows ShardContext.
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "point.sharding.enabled", havingValue = "true")
+public class ShardingConfiguration {
+
+    @Bean
+    ShardRoutingDataSource dataSource(ShardingProperties properties) {
+        if (properties.urls().isEmpty()) {
+            throw new IllegalArgumentException("Sharding needs at least one shard url");
+        }
+
+        List<DataSource> shards = new ArrayList<>(properties.urls().size());
+        for (int shard = 0; shard < properties.urls().size(); shard++) {
+            HikariDataSource dataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(properties.urls().get(shard))
+                    .username(properties.username())
+                    .password(properties.password())
+                    .build();
+            dataSource.setPoolName("shard-" + shard);
+            dataSource.setMaximumPoolSize(properties.poolSize());
+            shards.add(dataSource);
+        }
+        return new ShardRoutingDataSource(shards);
+    }
+}
@@ -0,0 +1,18 @@
+package me.zhc1.pointsystem.config;
+
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties("point.sharding")
+public record ShardingProperties(
+        @DefaultValue("false") boolean enabled,
+        // One JDBC url per shard; shard 0 also holds the user registry and the bucket assignments
+        @DefaultValue List<String> urls,
+        @DefaultValue("sa") String username,
+        @DefaultValue("") String password,
+        @DefaultValue("10") int poolSize,
+        // Copies the schema Hibernate created on shard 0 to the other shards. For local H2 shards only,
+        // real shards are provisioned by migrations.
+        @DefaultValue("true") boolean copySchema) {}
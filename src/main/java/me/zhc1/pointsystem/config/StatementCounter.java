@@ -0,0 +1,19 @@
+package me.zhc1.pointsystem.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+// Counts the statements Hibernate prepares on the current thread, so that callers can measure
+// how many statements one operation issued and N+1 regressions show up as a rising count
+public class StatementCounter implements StatementInspector {
+    private static final ThreadLocal<long[]> COUNT = ThreadLocal.withInitial(() -> new long[1]);
+
+    @Override
+    public String inspect(String sql) {
+        COUNT.get()[0]++;
+        return sql;
+    }
+
+    public static long current() {
+        return COUNT.get()[0];
+    }
+}
@@ -0,0 +1,43 @@
+package me.zhc1.pointsystem.config;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// Web requests and scheduled work run on virtual threads once spring.threads.virtual.enabled=true
+// (see the virtual-threads profile). This adds what that mode needs around the JDBC layer.
+@Configuration(proxyBeanMethods = false)
+public class VirtualThreadConfiguration {
+    // The name both Spring Boot's datasource and the sharded routing datasource are registered under
+    private static final String PRIMARY_DATA_SOURCE = "dataSource";
+
+    // Only the primary pool is gated; any other DataSource bean keeps its own limits
+    @Bean
+    @ConditionalOnProperty(name = "point.db-permits.enabled", havingValue = "true")
+    static BeanPostProcessor permitGatedDataSourcePostProcessor(ObjectProvider<DbPermitProperties> properties) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (PRIMARY_DATA_SOURCE.equals(beanName)
+                        && bean instanceof DataSource dataSource
+                        && !(bean instanceof PermitGatedDataSource)) {
+                    DbPermitProperties permits = properties.getObject();
+                    return new PermitGatedDataSource(dataSource, permits.permits(), permits.acquireTimeout());
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    PinnedThreadMonitor pinnedThreadMonitor(VirtualThreadProperties properties) {
+        return new PinnedThreadMonitor(properties.pinnedThreshold());
+    }
+}
@@ -0,0 +1,9 @@
+package me.zhc1.pointsystem.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties("point.virtual-threads")
+public record VirtualThreadProperties(@DefaultValue("20ms") Duration pinnedThreshold) {}
@@ -0,0 +1,3 @@
+package me.zhc1.pointsystem.controller;
+
+public record BalanceResponse(int userId, long availablePoints) {}
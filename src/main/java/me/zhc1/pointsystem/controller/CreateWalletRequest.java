@@ -0,0 +1,11 @@
+package me.zhc1.pointsystem.controller;
+
+import java.util.List;
+
+public record CreateWalletRequest(String name, List<Integer> memberIds) {
+    public CreateWalletRequest {
+        if (memberIds == null) {
+            memberIds = List.of();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package me.zhc1.pointsystem.controller;
+
+import java.time.LocalDateTime;
+
+import me.zhc1.pointsystem.entity.PointType;
+
+// Requests without a type earn cash-like points
+public record EarnPointsRequest(long amount, LocalDateTime expiresAt, PointType pointType) {
+    public EarnPointsRequest {
+        if (pointType == null) {
+            pointType = PointType.CASH;
+        }
+    }
+}
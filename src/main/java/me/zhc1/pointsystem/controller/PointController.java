@@ -0,0 +1,144 @@
+package me.zhc1.pointsystem.controller;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import lombok.RequiredArgsConstructor;
+
+import me.zhc1.pointsystem.service.BulkEarnResult;
+import me.zhc1.pointsystem.service.CancelResult;
+import me.zhc1.pointsystem.service.Grant;
+import me.zhc1.pointsystem.service.LiabilityReport;
+import me.zhc1.pointsystem.service.PointService;
+import me.zhc1.pointsystem.service.UsageHistoryPage;
+import me.zhc1.pointsystem.service.WalletBalance;
+
+@RestController
+@RequestMapping("/api/points")
+@RequiredArgsConstructor
+public class PointController {
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
+    private final PointService pointService;
+
+    @GetMapping("/{userId}")
+    public BalanceResponse getAvailablePoints(@PathVariable int userId) {
+        return new BalanceResponse(userId, pointService.getAvailablePoints(userId));
+    }
+
+    @GetMapping("/liability")
+    public LiabilityReport getLiability(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOf) {
+        return pointService.getLiability(asOf != null ? asOf : LocalDate.now());
+    }
+
+    @GetMapping("/{userId}/types")
+    public TypeBalanceResponse getAvailablePointsByType(@PathVariable int userId) {
+        return new TypeBalanceResponse(userId, pointService.getAvailablePointsByType(userId));
+    }
+
+    // With async=true the grant is only queued, which is answered with 202 Accepted
+    @PostMapping("/{userId}/earnings")
+    public ResponseEntity<Void> earnPoints(
+            @PathVariable int userId,
+            @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            @RequestParam(defaultValue = "false") boolean async,
+            @RequestBody EarnPointsRequest request) {
+        if (async) {
+            pointService.earnPointsAsync(
+                    userId, request.amount(), request.expiresAt(), request.pointType(), idempotencyKey);
+            return ResponseEntity.accepted().build();
+        }
+
+        pointService.earnPoints(userId, request.amount(), request.expiresAt(), request.pointType(), idempotencyKey);
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/{userId}/usages")
+    public UsageResponse usePoints(
+            @PathVariable int userId,
+            @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            @RequestBody UsePointsRequest request) {
+        return UsageResponse.from(pointService.usePoints(userId, request.amount(), idempotencyKey));
+    }
+
+    @PostMapping("/{userId}/transfers")
+    public TransferResponse transferPoints(@PathVariable int userId, @RequestBody TransferPointsRequest request) {
+        return TransferResponse.from(pointService.transferPoints(userId, request.toUserId(), request.amount()));
+    }
+
+    @PostMapping("/wallets")
+    public WalletBalance createWallet(@RequestBody CreateWalletRequest request) {
+        int walletId = pointService.createWallet(request.name(), request.memberIds()).getWalletId();
+        return pointService.getWalletBalance(walletId);
+    }
+
+    @GetMapping("/wallets/{walletId}")
+    public WalletBalance getWalletBalance(@PathVariable int walletId) {
+        return pointService.getWalletBalance(walletId);
+    }
+
+    @PutMapping("/wallets/{walletId}/members/{userId}")
+    public ResponseEntity<Void> addWalletMember(@PathVariable int walletId, @PathVariable int userId) {
+        pointService.addWalletMember(walletId, userId);
+        return ResponseEntity.noContent().build();
+    }
+
+    @DeleteMapping("/wallets/{walletId}/members/{userId}")
+    public ResponseEntity<Void> removeWalletMember(@PathVariable int walletId, @PathVariable int userId) {
+        pointService.removeWalletMember(walletId, userId);
+        return ResponseEntity.noContent().build();
+    }
+
+    // The other wallet's members join this one and the other wallet is deleted
+    @PostMapping("/wallets/{walletId}/merges/{otherWalletId}")
+    public WalletBalance mergeWallets(@PathVariable int walletId, @PathVariable int otherWalletId) {
+        pointService.mergeWallets(walletId, otherWalletId);
+        return pointService.getWalletBalance(walletId);
+    }
+
+    @PostMapping("/wallets/{walletId}/usages")
+    public List<UsageResponse> useWalletPoints(@PathVariable int walletId, @RequestBody UsePointsRequest request) {
+        return pointService.useWalletPoints(walletId, request.amount()).stream()
+                .map(UsageResponse::from)
+                .toList();
+    }
+
+    @GetMapping("/{userId}/usages")
+    public UsageHistoryPage getUsageHistory(
+            @PathVariable int userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "false") boolean details,
+            @RequestParam(defaultValue = "false") boolean archived) {
+        return pointService.getUsageHistory(userId, cursor, size, details, archived);
+    }
+
+    @PostMapping("/usages/{usageId}/cancellation")
+    public CancelResult cancelUsage(@PathVariable int usageId) {
+        return pointService.cancelUsage(usageId);
+    }
+
+    @PostMapping("/usages/cancellations")
+    public CancelResult cancelUsages(@RequestBody List<Integer> usageIds) {
+        return pointService.cancelUsages(usageIds);
+    }
+
+    @PostMapping("/grants")
+    public BulkEarnResult earnPointsBulk(@RequestBody List<Grant> grants) {
+        return pointService.earnPointsBulk(grants);
+    }
+}
@@ -0,0 +1,3 @@
+package me.zhc1.pointsystem.controller;
+
+public record TransferPointsRequest(int toUserId, long amount) {}
@@ -0,0 +1,17 @@
+package me.zhc1.pointsystem.controller;
+
+import java.time.LocalDateTime;
+
+import me.zhc1.pointsystem.entity.PointTransfer;
+
+// usageId is the sender's usage, which shows up in the sender's history
+public record TransferResponse(int usageId, int fromUserId, int toUserId, long amount, LocalDateTime transferredAt) {
+    static TransferResponse from(PointTransfer transfer) {
+        return new TransferResponse(
+                transfer.getUsageId(),
+                transfer.getUserId(),
+                transfer.getToUserId(),
+                transfer.getAmount(),
+                transfer.getTransferredAt());
+    }
+}
@@ -0,0 +1,7 @@
+package me.zhc1.pointsystem.controller;
+
+import java.util.Map;
+
+import me.zhc1.pointsystem.entity.PointType;
+
+public record TypeBalanceResponse(int userId, Map<PointType, Long> availablePoints) {}
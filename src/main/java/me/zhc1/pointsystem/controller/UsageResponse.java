@@ -0,0 +1,15 @@
+package me.zhc1.pointsystem.controller;
+
+import java.time.LocalDateTime;
+
+import me.zhc1.pointsystem.entity.PointUsage;
+
+public record UsageResponse(int usageId, int userId, long amount, LocalDateTime usedAt) {
+    static UsageResponse from(PointUsage pointUsage) {
+        return new UsageResponse(
+                pointUsage.getUsageId(),
+                pointUsage.getUser().getUserId(),
+                pointUsage.getAmount(),
+                pointUsage.getUsedAt());
+    }
+}
@@ -0,0 +1,3 @@
+package me.zhc1.pointsystem.controller;
+
+public record UsePointsRequest(long amount) {}
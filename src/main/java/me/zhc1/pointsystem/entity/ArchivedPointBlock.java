@@ -0,0 +1,47 @@
+package me.zhc1.pointsystem.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Block moved out of point_blocks once nothing can change it any more: nothing remains in it and no usage that
+// could be canceled refers to it. Ids are kept, so ledger events still point at the right block.
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "point_blocks_archive", indexes = @Index(name = "idx_point_blocks_archive_user", columnList = "user_id"))
+public class ArchivedPointBlock {
+    @Id
+    @Column(name = "block_id")
+    private Integer blockId;
+
+    @Column(name = "user_id", nullable = false)
+    private int userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "point_type", nullable = false, length = 16)
+    private PointType pointType;
+
+    @Column(nullable = false)
+    private long amount;
+
+    @Column(name = "earned_at", nullable = false)
+    private LocalDateTime earnedAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+}
@@ -0,0 +1,45 @@
+package me.zhc1.pointsystem.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Usage moved out of point_usages after the retention window; it can still be read but no longer canceled
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(
+        name = "point_usages_archive",
+        indexes =
+                @Index(
+                        name = "idx_point_usages_archive_user_used_at",
+                        columnList = "user_id, used_at DESC, usage_id DESC"))
+public class ArchivedPointUsage {
+    @Id
+    @Column(name = "usage_id")
+    private Integer usageId;
+
+    @Column(name = "user_id", nullable = false)
+    private int userId;
+
+    @Column(nullable = false)
+    private long amount;
+
+    @Column(name = "used_at", nullable = false)
+    private LocalDateTime usedAt;
+
+    @Column(name = "canceled_at")
+    private LocalDateTime canceledAt;
+
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+}
@@ -0,0 +1,43 @@
+package me.zhc1.pointsystem.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// The block's expiry is copied along, so archived details read without the block, which may be archived later
+// or still be live. The user id lets a shard move find the rows like those of every other table.
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(
+        name = "point_usage_details_archive",
+        indexes = @Index(name = "idx_point_usage_details_archive_usage", columnList = "usage_id"))
+public class ArchivedPointUsageDetail {
+    @Id
+    @Column(name = "usage_detail_id")
+    private Integer usageDetailId;
+
+    @Column(name = "usage_id", nullable = false)
+    private int usageId;
+
+    @Column(name = "user_id", nullable = false)
+    private int userId;
+
+    @Column(name = "block_id", nullable = false)
+    private int blockId;
+
+    @Column(nullable = false)
+    private long amount;
+
+    @Column(name = "block_expires_at", nullable = false)
+    private LocalDateTime blockExpiresAt;
+}
@@ -0,0 +1,56 @@
+package me.zhc1.pointsystem.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Grant accepted by the asynchronous earn path and not applied yet. Rows are deleted in the transaction that
+// applies them; a row that cannot be applied on its own is kept with its error for inspection.
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "earn_outbox")
+public class EarnOutboxEntry {
+    @Id
+    @Column(name = "entry_id")
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long entryId;
+
+    @Column(name = "user_id", nullable = false)
+    private int userId;
+
+    @Column(nullable = false)
+    private long amount;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "point_type", nullable = false, length = 16)
+    private PointType pointType;
+
+    // Unique, so that a retried request is only queued once
+    @Column(name = "idempotency_key", length = 100, unique = true)
+    private String idempotencyKey;
+
+    @Column(name = "enqueued_at", nullable = false)
+    private LocalDateTime enqueuedAt;
+
+    @Column(name = "failed_at")
+    private LocalDateTime failedAt;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+}
@@ -0,0 +1,46 @@
+package me.zhc1.pointsystem.entity;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Live points of a user that expire on a given day. The primary key leads with the day,
+// so finding everyone with points expiring in a date range reads only the rows of those days.
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@IdClass(ExpiryBucket.Key.class)
+@Table(name = "expiry_buckets")
+public class ExpiryBucket {
+    @Id
+    @Column(name = "bucket_day")
+    private LocalDate bucketDay;
+
+    @Id
+    @Column(name = "user_id")
+    private int userId;
+
+    @Column(nullable = false)
+    private long points;
+
+    @Getter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private LocalDate bucketDay;
+        private int userId;
+    }
+}
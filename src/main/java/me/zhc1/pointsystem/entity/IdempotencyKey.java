@@ -0,0 +1,47 @@
+package me.zhc1.pointsystem.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Client-supplied request key of an applied earn or use, written in the same transaction as the change itself.
+// The request fields are kept so that a key reused for a different request can be told apart from a retry.
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "idempotency_keys", indexes = @Index(name = "idx_idempotency_keys_created_at", columnList = "created_at"))
+public class IdempotencyKey {
+    @Id
+    @Column(name = "idempotency_key", length = 100)
+    private String key;
+
+    @Column(name = "user_id", nullable = false)
+    private int userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", nullable = false, length = 16)
+    private PointEventType eventType;
+
+    @Column(nullable = false)
+    private long amount;
+
+    @Column(name = "block_id")
+    private Integer blockId;
+
+    @Column(name = "usage_id")
+    private Integer usageId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
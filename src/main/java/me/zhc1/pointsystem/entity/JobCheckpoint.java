@@ -0,0 +1,30 @@
+package me.zhc1.pointsystem.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Progress marker of a long-running batch job, written in the same transaction as the work it covers
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "job_checkpoints")
+public class JobCheckpoint {
+    @Id
+    @Column(name = "job_name")
+    private String jobName;
+
+    @Column(nullable = false)
+    private long position;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,59 @@
+package me.zhc1.pointsystem.entity;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Points earned, used and expired on a day, by the month the points were earned in. Every user's changes land
+// in one of a few slots, so concurrent writers of the same day and cohort do not all wait on a single row.
+// The primary key leads with the day, so the liability as of a day reads only the rows up to it.
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@IdClass(LiabilityRollup.Key.class)
+@Table(name = "liability_rollups")
+public class LiabilityRollup {
+    @Id
+    @Column(name = "rollup_day")
+    private LocalDate rollupDay;
+
+    @Id
+    @Column(name = "cohort_month")
+    private LocalDate cohortMonth;
+
+    @Id
+    @Column(name = "slot")
+    private int slot;
+
+    @Column(nullable = false)
+    private long earned;
+
+    // Negative on days where cancellations gave back more than was used
+    @Column(nullable = false)
+    private long used;
+
+    @Column(nullable = false)
+    private long expired;
+
+    @Getter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private LocalDate rollupDay;
+        private LocalDate cohortMonth;
+        private int slot;
+    }
+}
@@ -4,13 +4,19 @@ import java.time.LocalDateTime;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -19,11 +25,23 @@ import lombok.Setter;
 @Getter
 @Setter
 @NoArgsConstructor
-@Table(name = "point_blocks")
+@Table(
+        name = "point_blocks",
+        indexes = {
+            @Index(name = "idx_point_blocks_expires_at", columnList = "expires_at"),
+            // Serves the spend walk in priority then FEFO order, and the per-type balances. Neither H2 nor MySQL
+            // supports partial indexes, so remaining_amount is carried in the index to skip exhausted blocks
+            // without visiting their rows.
+            @Index(
+                    name = "idx_point_blocks_user_priority_expires_at",
+                    columnList = "user_id, spend_priority, expires_at, remaining_amount")
+        })
 public class PointBlock {
     @Id
     @Column(name = "block_id")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // A pooled sequence instead of IDENTITY keeps Hibernate JDBC batching available for block inserts
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "point_block_seq")
+    @SequenceGenerator(name = "point_block_seq", sequenceName = "point_blocks_seq", allocationSize = 50)
     private Integer blockId;
 
     @ManyToOne
@@ -41,4 +59,22 @@ public class PointBlock {
 
     @Column(name = "expires_at", nullable = false)
     private LocalDateTime expiresAt;
+
+    // Blocks earned without a type are cash-like, the only kind there was before types
+    @Enumerated(EnumType.STRING)
+    @Column(name = "point_type", nullable = false, length = 16)
+    private PointType pointType = PointType.CASH;
+
+    // The type's spend priority, which the spend index orders by; follows the type
+    @Setter(AccessLevel.NONE)
+    @Column(name = "spend_priority", nullable = false)
+    private int spendPriority = PointType.CASH.spendPriority();
+
+    @Version
+    private Long version;
+
+    public void setPointType(PointType pointType) {
+        this.pointType = pointType;
+        this.spendPriority = pointType.spendPriority();
+    }
 }
@@ -0,0 +1,13 @@
+package me.zhc1.pointsystem.entity;
+
+public enum PointEventType {
+    EARN,
+    USE,
+    EXPIRE,
+    REFUND,
+    // Correction appended by reconciliation when the ledger had drifted from the blocks
+    ADJUST,
+    // Both halves of a transfer: the sender's usage and the recipient's new blocks
+    TRANSFER_OUT,
+    TRANSFER_IN
+}
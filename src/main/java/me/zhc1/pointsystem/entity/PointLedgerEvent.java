@@ -0,0 +1,58 @@
+package me.zhc1.pointsystem.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Append-only history of every balance change. Rows are never updated or deleted.
+// References are plain columns rather than associations so that an append is a single insert.
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(
+        name = "point_ledger_events",
+        uniqueConstraints =
+                @UniqueConstraint(name = "uk_point_ledger_events_user_sequence", columnNames = {"user_id", "user_sequence"}))
+public class PointLedgerEvent {
+    @Id
+    @Column(name = "event_id")
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long eventId;
+
+    @Column(name = "user_id", nullable = false)
+    private int userId;
+
+    // Gapless per user, starting at 1
+    @Column(name = "user_sequence", nullable = false)
+    private long userSequence;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", nullable = false, length = 16)
+    private PointEventType eventType;
+
+    // Signed change of the balance
+    @Column(nullable = false)
+    private long amount;
+
+    @Column(name = "block_id")
+    private Integer blockId;
+
+    @Column(name = "usage_id")
+    private Integer usageId;
+
+    @Column(name = "occurred_at", nullable = false)
+    private LocalDateTime occurredAt;
+}
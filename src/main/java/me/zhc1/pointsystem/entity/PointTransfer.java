@@ -0,0 +1,38 @@
+package me.zhc1.pointsystem.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Points moved from one user to another. Keyed by the sender's usage, which is unique across shards and is never
+// canceled: the points already live on the recipient's blocks.
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "point_transfers")
+public class PointTransfer {
+    @Id
+    @Column(name = "usage_id")
+    private int usageId;
+
+    // The sender, named like everywhere else so the transfer moves along with the sender's bucket
+    @Column(name = "user_id", nullable = false)
+    private int userId;
+
+    @Column(name = "to_user_id", nullable = false)
+    private int toUserId;
+
+    @Column(nullable = false)
+    private long amount;
+
+    @Column(name = "transferred_at", nullable = false)
+    private LocalDateTime transferredAt;
+}
@@ -0,0 +1,37 @@
+package me.zhc1.pointsystem.entity;
+
+// A usage takes promotional points first, then partner points, then cash-like points, first expiring first within
+// each type. Types are stored by name; the priority is copied into every block's spend_priority, so the spend index
+// orders blocks by it. Changing a priority means migrating the stored values, while declaring a new constant or
+// reordering the constants does not.
+public enum PointType {
+    PROMOTION(0),
+    PARTNER(1),
+    CASH(2);
+
+    private static final PointType[] BY_SPEND_PRIORITY = new PointType[values().length];
+
+    static {
+        for (PointType type : values()) {
+            if (BY_SPEND_PRIORITY[type.spendPriority] != null) {
+                throw new IllegalStateException("Spend priority taken twice: " + type.spendPriority);
+            }
+            BY_SPEND_PRIORITY[type.spendPriority] = type;
+        }
+    }
+
+    private final int spendPriority;
+
+    PointType(int spendPriority) {
+        this.spendPriority = spendPriority;
+    }
+
+    public static PointType ofSpendPriority(int spendPriority) {
+        return BY_SPEND_PRIORITY[spendPriority];
+    }
+
+    // Lower is spent first
+    public int spendPriority() {
+        return spendPriority;
+    }
+}
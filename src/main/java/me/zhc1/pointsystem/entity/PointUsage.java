@@ -10,6 +10,7 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
@@ -23,7 +24,10 @@ import lombok.Setter;
 @Getter
 @Setter
 @NoArgsConstructor
-@Table(name = "point_usages")
+@Table(
+        name = "point_usages",
+        // Serves the keyset-paginated history, newest first
+        indexes = @Index(name = "idx_point_usages_user_used_at", columnList = "user_id, used_at DESC, usage_id DESC"))
 public class PointUsage {
     @Id
     @Column(name = "usage_id")
@@ -40,6 +44,10 @@ public class PointUsage {
     @Column(name = "used_at", nullable = false)
     private LocalDateTime usedAt;
 
+    // Set once when the usage is canceled and its points are returned to the original blocks
+    @Column(name = "canceled_at")
+    private LocalDateTime canceledAt;
+
     @OneToMany(mappedBy = "usage", cascade = CascadeType.ALL)
     private List<PointUsageDetail> usageDetails = new ArrayList<>();
 }
@@ -9,12 +9,16 @@ import jakarta.persistence.JoinColumn;
 import jakarta.persistence.MapsId;
 import jakarta.persistence.OneToOne;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
-// If the types and uses of points are divided, this table may require major changes.
+// Holds the total over all point types, so the balance stays a single-row read. Per-type balances are summed
+// from the live blocks instead, see PointBatchRepository.sumLivePointsByType.
+// Snapshot of the balance as of snapshotSequence. The current balance is the snapshot
+// plus the ledger events of the user that come after it.
 @Entity
 @Getter
 @Setter
@@ -35,4 +39,14 @@ public class RemainingPoint {
 
     @Column(name = "last_updated_at")
     private LocalDateTime lastUpdatedAt;
+
+    @Column(name = "snapshot_sequence", nullable = false)
+    private long snapshotSequence;
+
+    // Not part of the snapshot: balance reads compare against it to notice expired blocks, see ExpiryHintRepository
+    @Column(name = "next_expires_at")
+    private LocalDateTime nextExpiresAt;
+
+    @Version
+    private Long version;
 }
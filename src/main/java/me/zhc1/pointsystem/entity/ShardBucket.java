@@ -0,0 +1,30 @@
+package me.zhc1.pointsystem.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Bucket that was moved away from its default shard (bucket % shard count). Only read from shard 0.
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "shard_buckets")
+public class ShardBucket {
+    @Id
+    @Column(name = "bucket")
+    private int bucket;
+
+    @Column(nullable = false)
+    private int shard;
+
+    @Column(name = "moved_at", nullable = false)
+    private LocalDateTime movedAt;
+}
@@ -0,0 +1,34 @@
+package me.zhc1.pointsystem.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Pool of users, such as a family, that spends from all of its members' blocks. Only kept on shard 0, the registry;
+// the points stay with the members.
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "wallets")
+public class Wallet {
+    @Id
+    @Column(name = "wallet_id")
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer walletId;
+
+    @Column(nullable = false)
+    private String name;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
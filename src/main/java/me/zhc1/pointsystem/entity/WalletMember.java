@@ -0,0 +1,46 @@
+package me.zhc1.pointsystem.entity;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// A user may be a member of several wallets
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@IdClass(WalletMember.Key.class)
+@Table(name = "wallet_members", indexes = @Index(name = "idx_wallet_members_user_id", columnList = "user_id"))
+public class WalletMember {
+    @Id
+    @Column(name = "wallet_id")
+    private int walletId;
+
+    @Id
+    @Column(name = "user_id")
+    private int userId;
+
+    @Column(name = "joined_at", nullable = false)
+    private LocalDateTime joinedAt;
+
+    @Getter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private int walletId;
+        private int userId;
+    }
+}
@@ -0,0 +1,157 @@
+package me.zhc1.pointsystem.repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import lombok.RequiredArgsConstructor;
+
+// Moves rows from the hot tables into their archive tables with INSERT ... SELECT followed by DELETE, and reads
+// archived usage history in the same shape as the live one
+@Repository
+@RequiredArgsConstructor
+public class ArchiveRepository {
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    // Locked, so that a cancellation either finishes before the usages move or no longer finds them
+    public List<Integer> lockArchivableUsages(int afterUsageId, LocalDateTime usedBefore, int limit) {
+        return jdbcTemplate.queryForList(
+                """
+                SELECT usage_id
+                FROM point_usages
+                WHERE usage_id > :afterUsageId AND used_at < :usedBefore
+                ORDER BY usage_id
+                LIMIT :limit
+                FOR UPDATE
+                """,
+                new MapSqlParameterSource()
+                        .addValue("afterUsageId", afterUsageId)
+                        .addValue("usedBefore", usedBefore)
+                        .addValue("limit", limit),
+                Integer.class);
+    }
+
+    public void archiveUsages(Collection<Integer> usageIds, LocalDateTime now) {
+        MapSqlParameterSource params =
+                new MapSqlParameterSource().addValue("usageIds", usageIds).addValue("now", now);
+        jdbcTemplate.update(
+                """
+                INSERT INTO point_usage_details_archive
+                    (usage_detail_id, usage_id, user_id, block_id, amount, block_expires_at)
+                SELECT d.usage_detail_id, d.usage_id, u.user_id, d.block_id, d.amount, b.expires_at
+                FROM point_usage_details d
+                JOIN point_usages u ON u.usage_id = d.usage_id
+                JOIN point_blocks b ON b.block_id = d.block_id
+                WHERE d.usage_id IN (:usageIds)
+                """,
+                params);
+        jdbcTemplate.update(
+                """
+                INSERT INTO point_usages_archive (usage_id, user_id, amount, used_at, canceled_at, archived_at)
+                SELECT usage_id, user_id, amount, used_at, canceled_at, :now
+                FROM point_usages
+                WHERE usage_id IN (:usageIds)
+                """,
+                params);
+        jdbcTemplate.update("DELETE FROM point_usage_details WHERE usage_id IN (:usageIds)", params);
+        jdbcTemplate.update("DELETE FROM point_usages WHERE usage_id IN (:usageIds)", params);
+    }
+
+    // Blocks with nothing left that no remaining usage refers to: no spend, expiry or cancellation can touch them.
+    // Blocks that expired with points left wait for the expiration job to zero them.
+    public List<Integer> lockArchivableBlocks(int afterBlockId, LocalDateTime earnedBefore, int limit) {
+        return jdbcTemplate.queryForList(
+                """
+                SELECT b.block_id
+                FROM point_blocks b
+                WHERE b.block_id > :afterBlockId AND b.earned_at < :earnedBefore AND b.remaining_amount = 0
+                  AND NOT EXISTS (SELECT 1 FROM point_usage_details d WHERE d.block_id = b.block_id)
+                ORDER BY b.block_id
+                LIMIT :limit
+                FOR UPDATE
+                """,
+                new MapSqlParameterSource()
+                        .addValue("afterBlockId", afterBlockId)
+                        .addValue("earnedBefore", earnedBefore)
+                        .addValue("limit", limit),
+                Integer.class);
+    }
+
+    public void archiveBlocks(Collection<Integer> blockIds, LocalDateTime now) {
+        MapSqlParameterSource params =
+                new MapSqlParameterSource().addValue("blockIds", blockIds).addValue("now", now);
+        jdbcTemplate.update(
+                """
+                INSERT INTO point_blocks_archive
+                    (block_id, user_id, point_type, amount, earned_at, expires_at, archived_at)
+                SELECT block_id, user_id, point_type, amount, earned_at, expires_at, :now
+                FROM point_blocks
+                WHERE block_id IN (:blockIds)
+                """,
+                params);
+        jdbcTemplate.update("DELETE FROM point_blocks WHERE block_id IN (:blockIds)", params);
+    }
+
+    // Counterpart of PointUsageRepository.findHistory
+    public List<UsageSummary> findHistory(int userId, int limit) {
+        return jdbcTemplate.query(
+                """
+                SELECT usage_id, amount, used_at, canceled_at
+                FROM point_usages_archive
+                WHERE user_id = :userId
+                ORDER BY used_at DESC, usage_id DESC
+                LIMIT :limit
+                """,
+                new MapSqlParameterSource().addValue("userId", userId).addValue("limit", limit),
+                ArchiveRepository::mapUsage);
+    }
+
+    // Counterpart of PointUsageRepository.findHistoryBefore
+    public List<UsageSummary> findHistoryBefore(int userId, LocalDateTime beforeUsedAt, int beforeUsageId, int limit) {
+        return jdbcTemplate.query(
+                """
+                SELECT usage_id, amount, used_at, canceled_at
+                FROM point_usages_archive
+                WHERE user_id = :userId
+                  AND (used_at < :beforeUsedAt OR (used_at = :beforeUsedAt AND usage_id < :beforeUsageId))
+                ORDER BY used_at DESC, usage_id DESC
+                LIMIT :limit
+                """,
+                new MapSqlParameterSource()
+                        .addValue("userId", userId)
+                        .addValue("beforeUsedAt", beforeUsedAt)
+                        .addValue("beforeUsageId", beforeUsageId)
+                        .addValue("limit", limit),
+                ArchiveRepository::mapUsage);
+    }
+
+    public List<UsageDetailSummary> findDetails(Collection<Integer> usageIds) {
+        return jdbcTemplate.query(
+                """
+                SELECT usage_id, block_id, amount, block_expires_at
+                FROM point_usage_details_archive
+                WHERE usage_id IN (:usageIds)
+                ORDER BY usage_id, block_id
+                """,
+                new MapSqlParameterSource("usageIds", usageIds),
+                (rs, rowNum) -> new UsageDetailSummary(
+                        rs.getInt("usage_id"),
+                        rs.getInt("block_id"),
+                        rs.getLong("amount"),
+                        rs.getObject("block_expires_at", LocalDateTime.class)));
+    }
+
+    private static UsageSummary mapUsage(ResultSet rs, int rowNum) throws SQLException {
+        return new UsageSummary(
+                rs.getInt("usage_id"),
+                rs.getLong("amount"),
+                rs.getObject("used_at", LocalDateTime.class),
+                rs.getObject("canceled_at", LocalDateTime.class));
+    }
+}
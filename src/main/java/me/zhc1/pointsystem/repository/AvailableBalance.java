@@ -0,0 +1,11 @@
+package me.zhc1.pointsystem.repository;
+
+import java.time.LocalDateTime;
+
+// nextExpiresAt is a lower bound of the earliest expiry among the user's live blocks, null when nothing can expire
+public record AvailableBalance(long points, LocalDateTime nextExpiresAt) {
+    // Whether a block may have expired since the balance was read
+    public boolean expiryDue(LocalDateTime now) {
+        return nextExpiresAt != null && !now.isBefore(nextExpiresAt);
+    }
+}
@@ -0,0 +1,8 @@
+package me.zhc1.pointsystem.repository;
+
+// A user whose ledger balance differs from what their blocks hold
+public record BalanceMismatch(int userId, long ledgerPoints, long blockPoints) {
+    public long drift() {
+        return ledgerPoints - blockPoints;
+    }
+}
@@ -0,0 +1,4 @@
+package me.zhc1.pointsystem.repository;
+
+// Takes amount off a block that held remainingBefore when the spend was planned
+public record BlockSpend(int blockId, long amount, long remainingBefore) {}
@@ -0,0 +1,3 @@
+package me.zhc1.pointsystem.repository;
+
+public record CancelableUsage(int usageId, int userId) {}
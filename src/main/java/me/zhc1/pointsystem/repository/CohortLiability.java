@@ -0,0 +1,13 @@
+package me.zhc1.pointsystem.repository;
+
+import java.time.LocalDate;
+
+public record CohortLiability(LocalDate cohortMonth, long earned, long used, long expired) {
+    public long outstanding() {
+        return earned - used - expired;
+    }
+
+    public CohortLiability plus(CohortLiability other) {
+        return new CohortLiability(cohortMonth, earned + other.earned, used + other.used, expired + other.expired);
+    }
+}
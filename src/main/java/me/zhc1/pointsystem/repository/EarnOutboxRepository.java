@@ -0,0 +1,90 @@
+package me.zhc1.pointsystem.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import lombok.RequiredArgsConstructor;
+
+import me.zhc1.pointsystem.entity.PointType;
+
+@Repository
+@RequiredArgsConstructor
+public class EarnOutboxRepository {
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    // Throws DuplicateKeyException if a grant with the same idempotency key is already queued
+    public void append(
+            int userId,
+            long amount,
+            LocalDateTime expiresAt,
+            PointType pointType,
+            String idempotencyKey,
+            LocalDateTime now) {
+        jdbcTemplate.update(
+                """
+                INSERT INTO earn_outbox (user_id, amount, expires_at, point_type, idempotency_key, enqueued_at)
+                VALUES (:userId, :amount, :expiresAt, :pointType, :idempotencyKey, :now)
+                """,
+                new MapSqlParameterSource()
+                        .addValue("userId", userId)
+                        .addValue("amount", amount)
+                        .addValue("expiresAt", expiresAt)
+                        .addValue("pointType", pointType.name())
+                        .addValue("idempotencyKey", idempotencyKey)
+                        .addValue("now", now));
+    }
+
+    public boolean isQueued(String idempotencyKey) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) > 0 FROM earn_outbox WHERE idempotency_key = :idempotencyKey",
+                new MapSqlParameterSource("idempotencyKey", idempotencyKey),
+                Boolean.class));
+    }
+
+    // Oldest pending grants first; locked so that a second consumer waits instead of applying them twice
+    public List<QueuedGrant> lockPending(int limit) {
+        return jdbcTemplate.query(
+                """
+                SELECT entry_id, user_id, amount, expires_at, point_type, idempotency_key, enqueued_at
+                FROM earn_outbox
+                WHERE failed_at IS NULL
+                ORDER BY entry_id
+                LIMIT :limit
+                FOR UPDATE
+                """,
+                new MapSqlParameterSource("limit", limit),
+                (rs, rowNum) -> new QueuedGrant(
+                        rs.getLong("entry_id"),
+                        rs.getInt("user_id"),
+                        rs.getLong("amount"),
+                        rs.getObject("expires_at", LocalDateTime.class),
+                        PointType.valueOf(rs.getString("point_type")),
+                        rs.getString("idempotency_key"),
+                        rs.getObject("enqueued_at", LocalDateTime.class)));
+    }
+
+    public int delete(Collection<Long> entryIds) {
+        return jdbcTemplate.update(
+                "DELETE FROM earn_outbox WHERE entry_id IN (:entryIds)",
+                new MapSqlParameterSource("entryIds", entryIds));
+    }
+
+    public void markFailed(long entryId, String error, LocalDateTime now) {
+        jdbcTemplate.update(
+                "UPDATE earn_outbox SET failed_at = :now, last_error = :error WHERE entry_id = :entryId",
+                new MapSqlParameterSource()
+                        .addValue("entryId", entryId)
+                        .addValue("error", error == null ? null : error.substring(0, Math.min(error.length(), 500)))
+                        .addValue("now", now));
+    }
+
+    public long countPending() {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM earn_outbox WHERE failed_at IS NULL", new MapSqlParameterSource(), Long.class);
+    }
+}
@@ -0,0 +1,6 @@
+package me.zhc1.pointsystem.repository;
+
+import java.time.LocalDateTime;
+
+public record ExpiringBlock(
+        int blockId, int userId, long remainingAmount, LocalDateTime earnedAt, LocalDateTime expiresAt) {}
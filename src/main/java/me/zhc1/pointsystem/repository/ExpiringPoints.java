@@ -0,0 +1,5 @@
+package me.zhc1.pointsystem.repository;
+
+import java.time.LocalDate;
+
+public record ExpiringPoints(int userId, long points, LocalDate firstExpiryDay) {}
@@ -0,0 +1,11 @@
+package me.zhc1.pointsystem.repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Points added to (or, when negative, taken from) the bucket of the day a block expires
+public record ExpiryBucketChange(int userId, LocalDate day, long points) {
+    public static ExpiryBucketChange of(int userId, LocalDateTime expiresAt, long points) {
+        return new ExpiryBucketChange(userId, expiresAt.toLocalDate(), points);
+    }
+}
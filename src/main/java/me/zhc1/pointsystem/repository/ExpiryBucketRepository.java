@@ -0,0 +1,101 @@
+package me.zhc1.pointsystem.repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import lombok.RequiredArgsConstructor;
+
+// Maintains expiry_buckets, the live points of every user per expiry day, alongside every change to the blocks:
+// earning adds to the day a block expires, spending and expiring take from it.
+@Repository
+@RequiredArgsConstructor
+public class ExpiryBucketRepository {
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public void apply(int userId, LocalDateTime expiresAt, long points) {
+        applyAll(List.of(ExpiryBucketChange.of(userId, expiresAt, points)));
+    }
+
+    // Changes to the same bucket are merged first, so each bucket is written once
+    public void applyAll(Collection<ExpiryBucketChange> changes) {
+        Map<BucketKey, Long> merged = new LinkedHashMap<>();
+        for (ExpiryBucketChange change : changes) {
+            merged.merge(new BucketKey(change.userId(), change.day()), change.points(), Long::sum);
+        }
+        merged.values().removeIf(points -> points == 0);
+        if (merged.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(
+                """
+                INSERT INTO expiry_buckets (bucket_day, user_id, points)
+                VALUES (:day, :userId, :points)
+                ON DUPLICATE KEY UPDATE points = points + :points
+                """,
+                merged.entrySet().stream()
+                        .map(entry -> new MapSqlParameterSource()
+                                .addValue("day", entry.getKey().day())
+                                .addValue("userId", entry.getKey().userId())
+                                .addValue("points", entry.getValue()))
+                        .toArray(SqlParameterSource[]::new));
+    }
+
+    // Users with live points expiring between the two days, inclusive, in user id order after the given one.
+    // Every day is read as its own key range of the primary key and the days are merged per user, so a page costs
+    // a few index range scans however many users the window holds.
+    public List<ExpiringPoints> findExpiring(LocalDate from, LocalDate to, int afterUserId, int limit) {
+        Map<Integer, ExpiringPoints> merged = new TreeMap<>();
+        // A full page of one day may leave out its users after the last one read, so the merge stops there
+        int lastComplete = Integer.MAX_VALUE;
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            LocalDate bucketDay = day;
+            List<ExpiringPoints> page = jdbcTemplate.query(
+                    """
+                    SELECT user_id, points
+                    FROM expiry_buckets
+                    WHERE bucket_day = :day AND user_id > :afterUserId AND points > 0
+                    ORDER BY user_id
+                    LIMIT :limit
+                    """,
+                    new MapSqlParameterSource()
+                            .addValue("day", bucketDay)
+                            .addValue("afterUserId", afterUserId)
+                            .addValue("limit", limit),
+                    (rs, rowNum) -> new ExpiringPoints(rs.getInt("user_id"), rs.getLong("points"), bucketDay));
+            if (page.size() == limit) {
+                lastComplete = Math.min(lastComplete, page.getLast().userId());
+            }
+            // Days are read in order, so the first day seen for a user is its first expiry day
+            for (ExpiringPoints points : page) {
+                merged.merge(points.userId(), points, (first, later) -> new ExpiringPoints(
+                        first.userId(), first.points() + later.points(), first.firstExpiryDay()));
+            }
+        }
+
+        int cutOff = lastComplete;
+        return merged.values().stream()
+                .takeWhile(points -> points.userId() <= cutOff)
+                .limit(limit)
+                .toList();
+    }
+
+    // Buckets of past days are of no use once their blocks have expired
+    public int deleteBefore(LocalDate day, int limit) {
+        return jdbcTemplate.update(
+                "DELETE FROM expiry_buckets WHERE bucket_day < :day LIMIT :limit",
+                new MapSqlParameterSource().addValue("day", day).addValue("limit", limit));
+    }
+
+    private record BucketKey(int userId, LocalDate day) {}
+}
@@ -0,0 +1,57 @@
+package me.zhc1.pointsystem.repository;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import lombok.RequiredArgsConstructor;
+
+// Maintains remaining_points.next_expires_at. Writers that add points only ever lower it, so it stays
+// a lower bound of the earliest live expiry without reading the blocks; only lazy expiration recomputes it.
+// Neither statement touches the snapshot columns or the version, so they never conflict with snapshot folding.
+@Repository
+@RequiredArgsConstructor
+public class ExpiryHintRepository {
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public void lowerNextExpiry(int userId, LocalDateTime expiresAt) {
+        lowerNextExpiries(Map.of(userId, expiresAt));
+    }
+
+    public void lowerNextExpiries(Map<Integer, LocalDateTime> expiresAtByUserId) {
+        if (expiresAtByUserId.isEmpty()) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.batchUpdate(
+                """
+                INSERT INTO remaining_points
+                    (user_id, total_remaining_points, last_updated_at, snapshot_sequence, version, next_expires_at)
+                VALUES (:userId, 0, :now, 0, 0, :expiresAt)
+                ON DUPLICATE KEY UPDATE next_expires_at = LEAST(COALESCE(next_expires_at, :expiresAt), :expiresAt)
+                """,
+                expiresAtByUserId.entrySet().stream()
+                        .map(entry -> new MapSqlParameterSource()
+                                .addValue("userId", entry.getKey())
+                                .addValue("expiresAt", entry.getValue())
+                                .addValue("now", now))
+                        .toArray(SqlParameterSource[]::new));
+    }
+
+    // Call after the due blocks of the user have been expired, so every live block lies in the future
+    public void resetNextExpiry(int userId) {
+        jdbcTemplate.update(
+                """
+                UPDATE remaining_points
+                SET next_expires_at =
+                    (SELECT MIN(expires_at) FROM point_blocks WHERE user_id = :userId AND remaining_amount > 0)
+                WHERE user_id = :userId
+                """,
+                new MapSqlParameterSource("userId", userId));
+    }
+}
@@ -0,0 +1,71 @@
+package me.zhc1.pointsystem.repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import lombok.RequiredArgsConstructor;
+
+import me.zhc1.pointsystem.entity.PointEventType;
+
+@Repository
+@RequiredArgsConstructor
+public class IdempotencyKeyRepository {
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public Optional<IdempotentOutcome> find(String key) {
+        return jdbcTemplate
+                .query(
+                        """
+                        SELECT idempotency_key, user_id, event_type, amount, block_id, usage_id, created_at
+                        FROM idempotency_keys
+                        WHERE idempotency_key = :key
+                        """,
+                        new MapSqlParameterSource("key", key),
+                        (rs, rowNum) -> new IdempotentOutcome(
+                                rs.getString("idempotency_key"),
+                                rs.getInt("user_id"),
+                                PointEventType.valueOf(rs.getString("event_type")),
+                                rs.getLong("amount"),
+                                rs.getObject("block_id", Integer.class),
+                                rs.getObject("usage_id", Integer.class),
+                                rs.getObject("created_at", LocalDateTime.class)))
+                .stream()
+                .findFirst();
+    }
+
+    // A plain insert, so that a concurrent request with the same key fails on the primary key
+    // and is retried, finding the key committed by the winner
+    public void insert(IdempotentOutcome outcome) {
+        try {
+            jdbcTemplate.update(
+                    """
+                    INSERT INTO idempotency_keys (idempotency_key, user_id, event_type, amount, block_id, usage_id, created_at)
+                    VALUES (:key, :userId, :eventType, :amount, :blockId, :usageId, :createdAt)
+                    """,
+                    new MapSqlParameterSource()
+                            .addValue("key", outcome.key())
+                            .addValue("userId", outcome.userId())
+                            .addValue("eventType", outcome.eventType().name())
+                            .addValue("amount", outcome.amount())
+                            .addValue("blockId", outcome.blockId())
+                            .addValue("usageId", outcome.usageId())
+                            .addValue("createdAt", outcome.createdAt()));
+        } catch (DuplicateKeyException e) {
+            throw new OptimisticLockingFailureException("Concurrent request with idempotency key: " + outcome.key(), e);
+        }
+    }
+
+    public int deleteCreatedBefore(LocalDateTime createdBefore, int limit) {
+        return jdbcTemplate.update(
+                "DELETE FROM idempotency_keys WHERE created_at < :createdBefore LIMIT :limit",
+                new MapSqlParameterSource()
+                        .addValue("createdBefore", createdBefore)
+                        .addValue("limit", limit));
+    }
+}
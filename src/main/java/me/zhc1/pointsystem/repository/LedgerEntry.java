@@ -0,0 +1,8 @@
+package me.zhc1.pointsystem.repository;
+
+import java.time.LocalDateTime;
+
+import me.zhc1.pointsystem.entity.PointEventType;
+
+public record LedgerEntry(
+        int userId, PointEventType eventType, long amount, Integer blockId, Integer usageId, LocalDateTime occurredAt) {}
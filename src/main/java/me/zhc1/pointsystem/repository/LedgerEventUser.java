@@ -0,0 +1,4 @@
+package me.zhc1.pointsystem.repository;
+
+// The user a ledger event was appended for
+public record LedgerEventUser(long eventId, int userId) {}
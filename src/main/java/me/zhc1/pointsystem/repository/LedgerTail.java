@@ -0,0 +1,4 @@
+package me.zhc1.pointsystem.repository;
+
+// Sum of the events of a user after snapshot fromSequence, up to and including lastSequence
+public record LedgerTail(int userId, long amount, long fromSequence, long lastSequence) {}
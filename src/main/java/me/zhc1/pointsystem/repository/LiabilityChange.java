@@ -0,0 +1,31 @@
+package me.zhc1.pointsystem.repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Points a block change adds to the rollup of the day it happens, booked against the month the block was earned in
+public record LiabilityChange(int userId, LocalDate day, LocalDate cohortMonth, long earned, long used, long expired) {
+    public static LiabilityChange earned(int userId, LocalDateTime earnedAt, long points) {
+        return new LiabilityChange(userId, earnedAt.toLocalDate(), cohortOf(earnedAt.toLocalDate()), points, 0, 0);
+    }
+
+    // Negative for points a cancellation gives back
+    public static LiabilityChange used(int userId, LocalDateTime at, LocalDate earnedOn, long points) {
+        return new LiabilityChange(userId, at.toLocalDate(), cohortOf(earnedOn), 0, points, 0);
+    }
+
+    public static LiabilityChange expired(int userId, LocalDateTime at, LocalDate earnedOn, long points) {
+        return new LiabilityChange(userId, at.toLocalDate(), cohortOf(earnedOn), 0, 0, points);
+    }
+
+    // A reconciliation adjustment, booked against the month it is made in: points added count as earned and
+    // points taken away as expired, since neither was spent
+    public static LiabilityChange adjusted(int userId, LocalDateTime at, long points) {
+        LocalDate day = at.toLocalDate();
+        return new LiabilityChange(userId, day, cohortOf(day), Math.max(points, 0), 0, Math.max(-points, 0));
+    }
+
+    public static LocalDate cohortOf(LocalDate earnedOn) {
+        return earnedOn.withDayOfMonth(1);
+    }
+}
@@ -0,0 +1,247 @@
+package me.zhc1.pointsystem.repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import me.zhc1.pointsystem.config.LiabilityProperties;
+
+// Maintains liability_rollups alongside every change to the blocks: earning, spending, expiring and canceling
+// each add their amounts in the same transaction. A rollup slot can also be rebuilt from the blocks and usages.
+@Repository
+public class LiabilityRepository {
+    // Live and archived rows alike, since a usage may outlive its blocks in the hot tables and the other way round
+    private static final String ALL_BLOCKS =
+            """
+            (SELECT block_id, earned_at, expires_at FROM point_blocks
+             UNION ALL
+             SELECT block_id, earned_at, expires_at FROM point_blocks_archive)
+            """;
+    private static final String ALL_USAGE_DETAILS =
+            """
+            (SELECT u.user_id, u.used_at, u.canceled_at, d.block_id, d.amount
+             FROM point_usage_details d JOIN point_usages u ON u.usage_id = d.usage_id
+             UNION ALL
+             SELECT u.user_id, u.used_at, u.canceled_at, d.block_id, d.amount
+             FROM point_usage_details_archive d JOIN point_usages_archive u ON u.usage_id = d.usage_id)
+            """;
+
+    private static final Comparator<RollupKey> KEY_ORDER = Comparator.comparing(RollupKey::day)
+            .thenComparing(RollupKey::cohortMonth)
+            .thenComparingInt(RollupKey::slot);
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final int slots;
+
+    public LiabilityRepository(NamedParameterJdbcTemplate jdbcTemplate, LiabilityProperties properties) {
+        if (properties.slots() <= 0) {
+            throw new IllegalArgumentException("Slots must be positive");
+        }
+
+        this.jdbcTemplate = jdbcTemplate;
+        this.slots = properties.slots();
+    }
+
+    public int slots() {
+        return slots;
+    }
+
+    public void apply(LiabilityChange change) {
+        applyAll(List.of(change));
+    }
+
+    // Changes to the same rollup are merged first, so each rollup is written once
+    public void applyAll(Collection<LiabilityChange> changes) {
+        Map<RollupKey, Totals> merged = new LinkedHashMap<>();
+        for (LiabilityChange change : changes) {
+            merged.merge(
+                    new RollupKey(change.day(), change.cohortMonth(), Math.floorMod(change.userId(), slots)),
+                    new Totals(change.earned(), change.used(), change.expired()),
+                    Totals::plus);
+        }
+        upsert(merged);
+    }
+
+    // Sums every rollup up to the day: what was earned in each cohort by then, and what of it was used or expired
+    public List<CohortLiability> findCohorts(LocalDate asOf) {
+        return jdbcTemplate.query(
+                """
+                SELECT cohort_month, SUM(earned) AS earned, SUM(used) AS used, SUM(expired) AS expired
+                FROM liability_rollups
+                WHERE rollup_day <= :asOf
+                GROUP BY cohort_month
+                ORDER BY cohort_month
+                """,
+                new MapSqlParameterSource("asOf", asOf),
+                (rs, rowNum) -> new CohortLiability(
+                        rs.getObject("cohort_month", LocalDate.class),
+                        rs.getLong("earned"),
+                        rs.getLong("used"),
+                        rs.getLong("expired")));
+    }
+
+    // Rollups of slots beyond the configured count, left over from a larger setting
+    public int deleteSlotsFrom(int slot) {
+        return jdbcTemplate.update(
+                "DELETE FROM liability_rollups WHERE slot >= :slot", new MapSqlParameterSource("slot", slot));
+    }
+
+    // Brings the rollups of one slot in line with totals computed from the blocks, usages and expirations of its
+    // users. Points given back by a cancellation after their block expired count as used back and expired at once.
+    // The rollups are corrected by adding the difference rather than overwritten, so when the sources and rollups
+    // are read from one snapshot (repeatable read) a write committing meanwhile is neither lost nor counted twice:
+    // it is in neither read, and its own delta lands on top of the correction.
+    public int rebuildSlot(int slot) {
+        MapSqlParameterSource params = new MapSqlParameterSource().addValue("slot", slot).addValue("slots", slots);
+
+        Map<RollupKey, Totals> rebuilt = new LinkedHashMap<>();
+        jdbcTemplate.query(
+                """
+                SELECT CAST(earned_at AS DATE) AS rollup_day, CAST(earned_at AS DATE) AS earned_on,
+                       SUM(amount) AS points
+                FROM (SELECT user_id, amount, earned_at FROM point_blocks
+                      UNION ALL
+                      SELECT user_id, amount, earned_at FROM point_blocks_archive) b
+                WHERE MOD(b.user_id, :slots) = :slot
+                GROUP BY CAST(earned_at AS DATE)
+                """,
+                params,
+                rs -> {
+                    rebuilt.merge(keyOf(rs, slot), new Totals(rs.getLong("points"), 0, 0), Totals::plus);
+                });
+        jdbcTemplate.query(
+                """
+                SELECT CAST(x.used_at AS DATE) AS rollup_day, CAST(b.earned_at AS DATE) AS earned_on,
+                       SUM(x.amount) AS points
+                FROM %s x
+                JOIN %s b ON b.block_id = x.block_id
+                WHERE MOD(x.user_id, :slots) = :slot
+                GROUP BY CAST(x.used_at AS DATE), CAST(b.earned_at AS DATE)
+                """
+                        .formatted(ALL_USAGE_DETAILS, ALL_BLOCKS),
+                params,
+                rs -> {
+                    rebuilt.merge(keyOf(rs, slot), new Totals(0, rs.getLong("points"), 0), Totals::plus);
+                });
+        jdbcTemplate.query(
+                """
+                SELECT CAST(x.canceled_at AS DATE) AS rollup_day, CAST(b.earned_at AS DATE) AS earned_on,
+                       SUM(x.amount) AS points,
+                       SUM(CASE WHEN b.expires_at <= x.canceled_at THEN x.amount ELSE 0 END) AS expired
+                FROM %s x
+                JOIN %s b ON b.block_id = x.block_id
+                WHERE x.canceled_at IS NOT NULL AND MOD(x.user_id, :slots) = :slot
+                GROUP BY CAST(x.canceled_at AS DATE), CAST(b.earned_at AS DATE)
+                """
+                        .formatted(ALL_USAGE_DETAILS, ALL_BLOCKS),
+                params,
+                rs -> {
+                    rebuilt.merge(
+                            keyOf(rs, slot),
+                            new Totals(0, -rs.getLong("points"), rs.getLong("expired")),
+                            Totals::plus);
+                });
+        jdbcTemplate.query(
+                """
+                SELECT CAST(e.occurred_at AS DATE) AS rollup_day, CAST(b.earned_at AS DATE) AS earned_on,
+                       -SUM(e.amount) AS points
+                FROM point_ledger_events e
+                JOIN %s b ON b.block_id = e.block_id
+                WHERE e.event_type = 'EXPIRE' AND e.block_id IS NOT NULL AND MOD(e.user_id, :slots) = :slot
+                GROUP BY CAST(e.occurred_at AS DATE), CAST(b.earned_at AS DATE)
+                """
+                        .formatted(ALL_BLOCKS),
+                params,
+                rs -> {
+                    rebuilt.merge(keyOf(rs, slot), new Totals(0, 0, rs.getLong("points")), Totals::plus);
+                });
+        // Reconciliation adjustments, booked as LiabilityChange.adjusted does
+        jdbcTemplate.query(
+                """
+                SELECT CAST(occurred_at AS DATE) AS rollup_day, CAST(occurred_at AS DATE) AS earned_on,
+                       SUM(CASE WHEN amount > 0 THEN amount ELSE 0 END) AS earned,
+                       SUM(CASE WHEN amount < 0 THEN -amount ELSE 0 END) AS expired
+                FROM point_ledger_events
+                WHERE event_type = 'ADJUST' AND MOD(user_id, :slots) = :slot
+                GROUP BY CAST(occurred_at AS DATE)
+                """,
+                params,
+                rs -> {
+                    rebuilt.merge(
+                            keyOf(rs, slot),
+                            new Totals(rs.getLong("earned"), 0, rs.getLong("expired")),
+                            Totals::plus);
+                });
+
+        int rollups = rebuilt.size();
+        jdbcTemplate.query(
+                "SELECT rollup_day, cohort_month, earned, used, expired FROM liability_rollups WHERE slot = :slot",
+                params,
+                rs -> {
+                    rebuilt.merge(
+                            new RollupKey(
+                                    rs.getObject("rollup_day", LocalDate.class),
+                                    rs.getObject("cohort_month", LocalDate.class),
+                                    slot),
+                            new Totals(-rs.getLong("earned"), -rs.getLong("used"), -rs.getLong("expired")),
+                            Totals::plus);
+                });
+
+        upsert(rebuilt);
+        return rollups;
+    }
+
+    // Written in key order, so transactions of different users lock the rollups they share in the same order
+    private void upsert(Map<RollupKey, Totals> rollups) {
+        rollups.values().removeIf(Totals::isZero);
+        if (rollups.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(
+                """
+                INSERT INTO liability_rollups (rollup_day, cohort_month, slot, earned, used, expired)
+                VALUES (:day, :cohortMonth, :slot, :earned, :used, :expired)
+                ON DUPLICATE KEY UPDATE earned = earned + :earned, used = used + :used, expired = expired + :expired
+                """,
+                rollups.entrySet().stream()
+                        .sorted(Map.Entry.comparingByKey(KEY_ORDER))
+                        .map(entry -> new MapSqlParameterSource()
+                                .addValue("day", entry.getKey().day())
+                                .addValue("cohortMonth", entry.getKey().cohortMonth())
+                                .addValue("slot", entry.getKey().slot())
+                                .addValue("earned", entry.getValue().earned())
+                                .addValue("used", entry.getValue().used())
+                                .addValue("expired", entry.getValue().expired()))
+                        .toArray(SqlParameterSource[]::new));
+    }
+
+    private static RollupKey keyOf(ResultSet rs, int slot) throws SQLException {
+        return new RollupKey(
+                rs.getObject("rollup_day", LocalDate.class),
+                LiabilityChange.cohortOf(rs.getObject("earned_on", LocalDate.class)),
+                slot);
+    }
+
+    private record RollupKey(LocalDate day, LocalDate cohortMonth, int slot) {}
+
+    private record Totals(long earned, long used, long expired) {
+        private Totals plus(Totals other) {
+            return new Totals(earned + other.earned, used + other.used, expired + other.expired);
+        }
+
+        private boolean isZero() {
+            return earned == 0 && used == 0 && expired == 0;
+        }
+    }
+}
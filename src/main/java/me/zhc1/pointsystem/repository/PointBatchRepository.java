@@ -0,0 +1,191 @@
+package me.zhc1.pointsystem.repository;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import lombok.RequiredArgsConstructor;
+
+import me.zhc1.pointsystem.entity.PointType;
+
+// Set-based statements for batch jobs, where loading and saving entities one by one does not scale
+@Repository
+@RequiredArgsConstructor
+public class PointBatchRepository {
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public List<ExpiringBlock> lockExpiringBlocks(int afterBlockId, LocalDateTime now, int limit) {
+        return jdbcTemplate.query(
+                """
+                SELECT block_id, user_id, remaining_amount, earned_at, expires_at
+                FROM point_blocks
+                WHERE block_id > :afterBlockId AND expires_at <= :now AND remaining_amount > 0
+                ORDER BY block_id
+                LIMIT :limit
+                FOR UPDATE
+                """,
+                new MapSqlParameterSource()
+                        .addValue("afterBlockId", afterBlockId)
+                        .addValue("now", now)
+                        .addValue("limit", limit),
+                (rs, rowNum) -> new ExpiringBlock(
+                        rs.getInt("block_id"),
+                        rs.getInt("user_id"),
+                        rs.getLong("remaining_amount"),
+                        rs.getObject("earned_at", LocalDateTime.class),
+                        rs.getObject("expires_at", LocalDateTime.class)));
+    }
+
+    public List<ExpiringBlock> lockExpiredBlocksOfUser(int userId, LocalDateTime now) {
+        return jdbcTemplate.query(
+                """
+                SELECT block_id, user_id, remaining_amount, earned_at, expires_at
+                FROM point_blocks
+                WHERE user_id = :userId AND expires_at <= :now AND remaining_amount > 0
+                ORDER BY block_id
+                FOR UPDATE
+                """,
+                new MapSqlParameterSource().addValue("userId", userId).addValue("now", now),
+                (rs, rowNum) -> new ExpiringBlock(
+                        rs.getInt("block_id"),
+                        rs.getInt("user_id"),
+                        rs.getLong("remaining_amount"),
+                        rs.getObject("earned_at", LocalDateTime.class),
+                        rs.getObject("expires_at", LocalDateTime.class)));
+    }
+
+    // Blocks are expired both by the background sweep and lazily by their owner, so each update only applies
+    // if the block still holds what was read. Otherwise the other side got there first and the caller retries.
+    public void expireBlocks(List<ExpiringBlock> blocks) {
+        int[] counts = jdbcTemplate.batchUpdate(
+                """
+                UPDATE point_blocks
+                SET remaining_amount = 0, version = version + 1
+                WHERE block_id = :blockId AND remaining_amount = :remainingAmount
+                """,
+                blocks.stream()
+                        .map(block -> new MapSqlParameterSource()
+                                .addValue("blockId", block.blockId())
+                                .addValue("remainingAmount", block.remainingAmount()))
+                        .toArray(SqlParameterSource[]::new));
+        if (Arrays.stream(counts).anyMatch(count -> count == 0)) {
+            throw new OptimisticLockingFailureException("Blocks were changed while expiring them");
+        }
+    }
+
+    // Live blocks of a user in the order they are spent
+    public void streamLiveBlocks(int userId, LocalDateTime now, RowCallbackHandler handler) {
+        jdbcTemplate.query(
+                """
+                SELECT block_id, point_type, earned_at, expires_at, remaining_amount
+                FROM point_blocks
+                WHERE user_id = :userId AND expires_at > :now AND remaining_amount > 0
+                ORDER BY spend_priority, expires_at, block_id
+                """,
+                new MapSqlParameterSource().addValue("userId", userId).addValue("now", now),
+                handler);
+    }
+
+    // Read from the spend index alone; types the user holds no live points of are left out
+    public Map<PointType, Long> sumLivePointsByType(int userId, LocalDateTime now) {
+        Map<PointType, Long> points = new EnumMap<>(PointType.class);
+        jdbcTemplate.query(
+                """
+                SELECT spend_priority, SUM(remaining_amount) AS points
+                FROM point_blocks
+                WHERE user_id = :userId AND expires_at > :now AND remaining_amount > 0
+                GROUP BY spend_priority
+                """,
+                new MapSqlParameterSource().addValue("userId", userId).addValue("now", now),
+                rs -> {
+                    points.put(PointType.ofSpendPriority(rs.getInt("spend_priority")), rs.getLong("points"));
+                });
+        return points;
+    }
+
+    // Spends planned from memory only apply to blocks that still hold what the plan saw
+    public void spendBlocks(List<BlockSpend> spends) {
+        int[] counts = jdbcTemplate.batchUpdate(
+                """
+                UPDATE point_blocks
+                SET remaining_amount = remaining_amount - :amount, version = version + 1
+                WHERE block_id = :blockId AND remaining_amount = :remainingBefore
+                """,
+                spends.stream()
+                        .map(spend -> new MapSqlParameterSource()
+                                .addValue("blockId", spend.blockId())
+                                .addValue("amount", spend.amount())
+                                .addValue("remainingBefore", spend.remainingBefore()))
+                        .toArray(SqlParameterSource[]::new));
+        if (Arrays.stream(counts).anyMatch(count -> count == 0)) {
+            throw new OptimisticLockingFailureException("Blocks were changed since the spend was planned");
+        }
+    }
+
+    // Transfers are left out: their points already belong to the recipient
+    public List<CancelableUsage> lockUncanceledUsages(Collection<Integer> usageIds) {
+        return jdbcTemplate.query(
+                """
+                SELECT u.usage_id, u.user_id
+                FROM point_usages u
+                WHERE u.usage_id IN (:usageIds) AND u.canceled_at IS NULL
+                  AND NOT EXISTS (SELECT 1 FROM point_transfers t WHERE t.usage_id = u.usage_id)
+                ORDER BY u.usage_id
+                FOR UPDATE
+                """,
+                Map.of("usageIds", usageIds),
+                (rs, rowNum) -> new CancelableUsage(rs.getInt("usage_id"), rs.getInt("user_id")));
+    }
+
+    public List<UsageRestore> findUsageRestores(Collection<Integer> usageIds) {
+        return jdbcTemplate.query(
+                """
+                SELECT d.usage_id, d.block_id, d.amount, b.earned_at, b.expires_at
+                FROM point_usage_details d
+                JOIN point_blocks b ON b.block_id = d.block_id
+                WHERE d.usage_id IN (:usageIds)
+                ORDER BY d.usage_id, d.block_id
+                """,
+                Map.of("usageIds", usageIds),
+                (rs, rowNum) -> new UsageRestore(
+                        rs.getInt("usage_id"),
+                        rs.getInt("block_id"),
+                        rs.getLong("amount"),
+                        rs.getObject("earned_at", LocalDateTime.class),
+                        rs.getObject("expires_at", LocalDateTime.class)));
+    }
+
+    public int cancelUsages(Collection<Integer> usageIds, LocalDateTime canceledAt) {
+        return jdbcTemplate.update(
+                "UPDATE point_usages SET canceled_at = :canceledAt WHERE usage_id IN (:usageIds) AND canceled_at IS NULL",
+                new MapSqlParameterSource()
+                        .addValue("usageIds", usageIds)
+                        .addValue("canceledAt", canceledAt));
+    }
+
+    // Adds the amounts back in one batch. The increment needs no prior read, and the version bump
+    // makes concurrent spenders holding the old block state fail their version check and retry.
+    public void restoreBlocks(Map<Integer, Long> amountsByBlockId) {
+        jdbcTemplate.batchUpdate(
+                """
+                UPDATE point_blocks
+                SET remaining_amount = remaining_amount + :amount, version = version + 1
+                WHERE block_id = :blockId
+                """,
+                amountsByBlockId.entrySet().stream()
+                        .map(entry -> new MapSqlParameterSource()
+                                .addValue("blockId", entry.getKey())
+                                .addValue("amount", entry.getValue()))
+                        .toArray(SqlParameterSource[]::new));
+    }
+}
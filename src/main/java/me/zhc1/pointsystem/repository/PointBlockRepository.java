@@ -1,8 +1,10 @@
 package me.zhc1.pointsystem.repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -11,10 +13,62 @@ import me.zhc1.pointsystem.entity.PointBlock;
 import me.zhc1.pointsystem.entity.User;
 
 public interface PointBlockRepository extends JpaRepository<PointBlock, Integer> {
-    List<PointBlock> findByUserAndExpiresAtGreaterThanOrderByExpiresAtAsc(User user, LocalDateTime now);
+    @Query(
+            """
+            SELECT pb FROM PointBlock pb
+            WHERE pb.user = :user AND pb.remainingAmount > 0 AND pb.expiresAt > :now
+            ORDER BY pb.spendPriority, pb.expiresAt, pb.blockId
+            """)
+    List<PointBlock> findSpendableBlocks(@Param("user") User user, @Param("now") LocalDateTime now, Limit limit);
 
-    @Query("SELECT SUM(pb.remainingAmount) FROM PointBlock pb WHERE pb.user = :user AND pb.expiresAt > :now")
-    long sumRemainingAmountForUser(@Param("user") User user, @Param("now") LocalDateTime now);
+    // Keyset continuation of findSpendableBlocks after the last block of the previous page
+    @Query(
+            """
+            SELECT pb FROM PointBlock pb
+            WHERE pb.user = :user AND pb.remainingAmount > 0 AND pb.expiresAt > :now
+              AND (pb.spendPriority > :afterPriority
+                OR (pb.spendPriority = :afterPriority
+                  AND (pb.expiresAt > :afterExpiresAt
+                    OR (pb.expiresAt = :afterExpiresAt AND pb.blockId > :afterBlockId))))
+            ORDER BY pb.spendPriority, pb.expiresAt, pb.blockId
+            """)
+    List<PointBlock> findSpendableBlocksAfter(
+            @Param("user") User user,
+            @Param("now") LocalDateTime now,
+            @Param("afterPriority") int afterPriority,
+            @Param("afterExpiresAt") LocalDateTime afterExpiresAt,
+            @Param("afterBlockId") int afterBlockId,
+            Limit limit);
+
+    // findSpendableBlocks over the blocks of several users at once, as if they were one user's
+    @Query(
+            """
+            SELECT pb FROM PointBlock pb
+            WHERE pb.user.userId IN :userIds AND pb.remainingAmount > 0 AND pb.expiresAt > :now
+            ORDER BY pb.spendPriority, pb.expiresAt, pb.blockId
+            """)
+    List<PointBlock> findSpendableBlocksOfUsers(
+            @Param("userIds") Collection<Integer> userIds, @Param("now") LocalDateTime now, Limit limit);
 
-    List<PointBlock> findByExpiresAtLessThanEqual(LocalDateTime now);
+    @Query(
+            """
+            SELECT pb FROM PointBlock pb
+            WHERE pb.user.userId IN :userIds AND pb.remainingAmount > 0 AND pb.expiresAt > :now
+              AND (pb.spendPriority > :afterPriority
+                OR (pb.spendPriority = :afterPriority
+                  AND (pb.expiresAt > :afterExpiresAt
+                    OR (pb.expiresAt = :afterExpiresAt AND pb.blockId > :afterBlockId))))
+            ORDER BY pb.spendPriority, pb.expiresAt, pb.blockId
+            """)
+    List<PointBlock> findSpendableBlocksOfUsersAfter(
+            @Param("userIds") Collection<Integer> userIds,
+            @Param("now") LocalDateTime now,
+            @Param("afterPriority") int afterPriority,
+            @Param("afterExpiresAt") LocalDateTime afterExpiresAt,
+            @Param("afterBlockId") int afterBlockId,
+            Limit limit);
+
+    @Query(
+            "SELECT COALESCE(SUM(pb.remainingAmount), 0) FROM PointBlock pb WHERE pb.user = :user AND pb.expiresAt > :now")
+    long sumRemainingAmountForUser(@Param("user") User user, @Param("now") LocalDateTime now);
 }
@@ -0,0 +1,167 @@
+package me.zhc1.pointsystem.repository;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import lombok.RequiredArgsConstructor;
+
+@Repository
+@RequiredArgsConstructor
+public class PointLedgerRepository {
+    // The next sequence number is taken from the (user_id, user_sequence) unique index inside the insert itself,
+    // so an append is one statement. Two writers racing for the same number collide on that index.
+    private static final String APPEND_SQL =
+            """
+            INSERT INTO point_ledger_events (user_id, user_sequence, event_type, amount, block_id, usage_id, occurred_at)
+            SELECT :userId, COALESCE(MAX(user_sequence), 0) + 1, :eventType, :amount, :blockId, :usageId, :occurredAt
+            FROM point_ledger_events
+            WHERE user_id = :userId
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public void append(LedgerEntry entry) {
+        try {
+            jdbcTemplate.update(APPEND_SQL, parameters(entry));
+        } catch (DuplicateKeyException e) {
+            throw new OptimisticLockingFailureException("Concurrent ledger append for user id: " + entry.userId(), e);
+        }
+    }
+
+    public void appendAll(List<LedgerEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(
+                    APPEND_SQL,
+                    entries.stream().map(PointLedgerRepository::parameters).toArray(SqlParameterSource[]::new));
+        } catch (DuplicateKeyException e) {
+            throw new OptimisticLockingFailureException("Concurrent ledger append", e);
+        }
+    }
+
+    // Events after the given one in event id order, read from the primary key alone
+    public List<LedgerEventUser> findEventUsers(long afterEventId, int limit) {
+        return jdbcTemplate.query(
+                """
+                SELECT event_id, user_id
+                FROM point_ledger_events
+                WHERE event_id > :afterEventId
+                ORDER BY event_id
+                LIMIT :limit
+                """,
+                new MapSqlParameterSource().addValue("afterEventId", afterEventId).addValue("limit", limit),
+                (rs, rowNum) -> new LedgerEventUser(rs.getLong("event_id"), rs.getInt("user_id")));
+    }
+
+    // Tails of the given users, each read from the (user_id, user_sequence) index after its snapshot; users whose
+    // snapshot is already current are left out
+    public List<LedgerTail> findTails(Collection<Integer> userIds) {
+        return jdbcTemplate.query(
+                """
+                SELECT e.user_id,
+                       COALESCE(rp.snapshot_sequence, 0) AS from_sequence,
+                       SUM(e.amount) AS amount,
+                       MAX(e.user_sequence) AS last_sequence
+                FROM point_ledger_events e
+                LEFT JOIN remaining_points rp ON rp.user_id = e.user_id
+                WHERE e.user_id IN (:userIds) AND e.user_sequence > COALESCE(rp.snapshot_sequence, 0)
+                GROUP BY e.user_id, rp.snapshot_sequence
+                ORDER BY e.user_id
+                """,
+                new MapSqlParameterSource("userIds", userIds),
+                (rs, rowNum) -> new LedgerTail(
+                        rs.getInt("user_id"),
+                        rs.getLong("amount"),
+                        rs.getLong("from_sequence"),
+                        rs.getLong("last_sequence")));
+    }
+
+    // Moves each snapshot forward by its tail. A snapshot that was moved by someone else since
+    // the tail was read is left alone and picked up again by the next run.
+    public int foldTails(List<LedgerTail> tails, LocalDateTime now) {
+        jdbcTemplate.batchUpdate(
+                """
+                INSERT INTO remaining_points (user_id, total_remaining_points, last_updated_at, snapshot_sequence, version)
+                VALUES (:userId, 0, :now, 0, 0)
+                ON DUPLICATE KEY UPDATE last_updated_at = last_updated_at
+                """,
+                tails.stream()
+                        .filter(tail -> tail.fromSequence() == 0)
+                        .map(tail -> new MapSqlParameterSource()
+                                .addValue("userId", tail.userId())
+                                .addValue("now", now))
+                        .toArray(SqlParameterSource[]::new));
+
+        int[] counts = jdbcTemplate.batchUpdate(
+                """
+                UPDATE remaining_points
+                SET total_remaining_points = total_remaining_points + :amount,
+                    last_updated_at = :now,
+                    snapshot_sequence = :lastSequence,
+                    version = version + 1
+                WHERE user_id = :userId AND snapshot_sequence = :fromSequence
+                """,
+                tails.stream()
+                        .map(tail -> new MapSqlParameterSource()
+                                .addValue("userId", tail.userId())
+                                .addValue("amount", tail.amount())
+                                .addValue("fromSequence", tail.fromSequence())
+                                .addValue("lastSequence", tail.lastSequence())
+                                .addValue("now", now))
+                        .toArray(SqlParameterSource[]::new));
+        return (int) Arrays.stream(counts).filter(count -> count > 0).count();
+    }
+
+    public void streamEvents(int userId, RowCallbackHandler handler) {
+        jdbcTemplate.query(
+                """
+                SELECT user_sequence, event_type, amount
+                FROM point_ledger_events
+                WHERE user_id = :userId
+                ORDER BY user_sequence
+                """,
+                new MapSqlParameterSource("userId", userId),
+                handler);
+    }
+
+    public void replaceSnapshot(int userId, long balance, long lastSequence, LocalDateTime now) {
+        jdbcTemplate.update(
+                """
+                INSERT INTO remaining_points (user_id, total_remaining_points, last_updated_at, snapshot_sequence, version)
+                VALUES (:userId, :balance, :now, :lastSequence, 0)
+                ON DUPLICATE KEY UPDATE
+                    total_remaining_points = :balance,
+                    last_updated_at = :now,
+                    snapshot_sequence = :lastSequence,
+                    version = version + 1
+                """,
+                new MapSqlParameterSource()
+                        .addValue("userId", userId)
+                        .addValue("balance", balance)
+                        .addValue("lastSequence", lastSequence)
+                        .addValue("now", now));
+    }
+
+    private static SqlParameterSource parameters(LedgerEntry entry) {
+        return new MapSqlParameterSource()
+                .addValue("userId", entry.userId())
+                .addValue("eventType", entry.eventType().name())
+                .addValue("amount", entry.amount())
+                .addValue("blockId", entry.blockId())
+                .addValue("usageId", entry.usageId())
+                .addValue("occurredAt", entry.occurredAt());
+    }
+}
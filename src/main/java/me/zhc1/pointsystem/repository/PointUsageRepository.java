@@ -1,12 +1,49 @@
 package me.zhc1.pointsystem.repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import me.zhc1.pointsystem.entity.PointUsage;
-import me.zhc1.pointsystem.entity.User;
 
 public interface PointUsageRepository extends JpaRepository<PointUsage, Integer> {
-    List<PointUsage> findByUserOrderByUsedAtDesc(User user);
+    // History pages are read as projections, so neither the user nor the details are loaded along
+    @Query(
+            """
+            SELECT new me.zhc1.pointsystem.repository.UsageSummary(pu.usageId, pu.amount, pu.usedAt, pu.canceledAt)
+            FROM PointUsage pu
+            WHERE pu.user.userId = :userId
+            ORDER BY pu.usedAt DESC, pu.usageId DESC
+            """)
+    List<UsageSummary> findHistory(@Param("userId") int userId, Limit limit);
+
+    // Keyset continuation of findHistory before the last usage of the previous page
+    @Query(
+            """
+            SELECT new me.zhc1.pointsystem.repository.UsageSummary(pu.usageId, pu.amount, pu.usedAt, pu.canceledAt)
+            FROM PointUsage pu
+            WHERE pu.user.userId = :userId
+              AND (pu.usedAt < :beforeUsedAt OR (pu.usedAt = :beforeUsedAt AND pu.usageId < :beforeUsageId))
+            ORDER BY pu.usedAt DESC, pu.usageId DESC
+            """)
+    List<UsageSummary> findHistoryBefore(
+            @Param("userId") int userId,
+            @Param("beforeUsedAt") LocalDateTime beforeUsedAt,
+            @Param("beforeUsageId") int beforeUsageId,
+            Limit limit);
+
+    @Query(
+            """
+            SELECT new me.zhc1.pointsystem.repository.UsageDetailSummary(
+                pud.usage.usageId, pud.block.blockId, pud.amount, pud.block.expiresAt)
+            FROM PointUsageDetail pud
+            WHERE pud.usage.usageId IN :usageIds
+            ORDER BY pud.usage.usageId, pud.block.blockId
+            """)
+    List<UsageDetailSummary> findDetails(@Param("usageIds") Collection<Integer> usageIds);
 }
@@ -0,0 +1,14 @@
+package me.zhc1.pointsystem.repository;
+
+import java.time.LocalDateTime;
+
+import me.zhc1.pointsystem.entity.PointType;
+
+public record QueuedGrant(
+        long entryId,
+        int userId,
+        long amount,
+        LocalDateTime expiresAt,
+        PointType pointType,
+        String idempotencyKey,
+        LocalDateTime enqueuedAt) {}
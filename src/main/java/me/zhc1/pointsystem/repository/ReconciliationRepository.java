@@ -0,0 +1,51 @@
+package me.zhc1.pointsystem.repository;
+
+import java.util.List;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import lombok.RequiredArgsConstructor;
+
+@Repository
+@RequiredArgsConstructor
+public class ReconciliationRepository {
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    // Compares snapshot plus ledger tail against the remaining amounts of all blocks, expired or not, for the users
+    // in (fromUserId, toUserId]. Both sides are aggregated per user over the range in one statement, which reads
+    // a consistent state, so a commit in between cannot show up as drift.
+    public List<BalanceMismatch> findMismatches(int fromUserId, int toUserId) {
+        return jdbcTemplate.query(
+                """
+                SELECT user_id, ledger_points, block_points FROM (
+                    SELECT u.user_id,
+                           COALESCE(rp.total_remaining_points, 0) + COALESCE(t.tail_points, 0) AS ledger_points,
+                           COALESCE(b.block_points, 0) AS block_points
+                    FROM users u
+                    LEFT JOIN remaining_points rp ON rp.user_id = u.user_id
+                    LEFT JOIN (
+                        SELECT e.user_id, SUM(e.amount) AS tail_points
+                        FROM point_ledger_events e
+                        LEFT JOIN remaining_points s ON s.user_id = e.user_id
+                        WHERE e.user_id > :fromUserId AND e.user_id <= :toUserId
+                          AND e.user_sequence > COALESCE(s.snapshot_sequence, 0)
+                        GROUP BY e.user_id
+                    ) t ON t.user_id = u.user_id
+                    LEFT JOIN (
+                        SELECT user_id, SUM(remaining_amount) AS block_points
+                        FROM point_blocks
+                        WHERE user_id > :fromUserId AND user_id <= :toUserId
+                        GROUP BY user_id
+                    ) b ON b.user_id = u.user_id
+                    WHERE u.user_id > :fromUserId AND u.user_id <= :toUserId
+                ) balances
+                WHERE ledger_points <> block_points
+                ORDER BY user_id
+                """,
+                new MapSqlParameterSource().addValue("fromUserId", fromUserId).addValue("toUserId", toUserId),
+                (rs, rowNum) -> new BalanceMismatch(
+                        rs.getInt("user_id"), rs.getLong("ledger_points"), rs.getLong("block_points")));
+    }
+}
@@ -3,9 +3,35 @@ package me.zhc1.pointsystem.repository;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import me.zhc1.pointsystem.entity.RemainingPoint;
 
 public interface RemainingPointRepository extends JpaRepository<RemainingPoint, Integer> {
     Optional<RemainingPoint> findByUserId(int userId);
+
+    // Snapshot plus the ledger events after it. Empty if the user does not exist.
+    @Query(
+            """
+            SELECT COALESCE(rp.totalRemainingPoints, 0) + COALESCE(
+                (SELECT SUM(e.amount) FROM PointLedgerEvent e
+                 WHERE e.userId = u.userId AND e.userSequence > COALESCE(rp.snapshotSequence, 0)), 0)
+            FROM User u LEFT JOIN RemainingPoint rp ON rp.userId = u.userId
+            WHERE u.userId = :userId
+            """)
+    Optional<Long> findAvailablePoints(@Param("userId") int userId);
+
+    // findAvailablePoints together with the user's next expiry
+    @Query(
+            """
+            SELECT new me.zhc1.pointsystem.repository.AvailableBalance(
+                COALESCE(rp.totalRemainingPoints, 0) + COALESCE(
+                    (SELECT SUM(e.amount) FROM PointLedgerEvent e
+                     WHERE e.userId = u.userId AND e.userSequence > COALESCE(rp.snapshotSequence, 0)), 0),
+                rp.nextExpiresAt)
+            FROM User u LEFT JOIN RemainingPoint rp ON rp.userId = u.userId
+            WHERE u.userId = :userId
+            """)
+    Optional<AvailableBalance> findAvailableBalance(@Param("userId") int userId);
 }
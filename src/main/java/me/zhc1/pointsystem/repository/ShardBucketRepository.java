@@ -0,0 +1,7 @@
+package me.zhc1.pointsystem.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import me.zhc1.pointsystem.entity.ShardBucket;
+
+public interface ShardBucketRepository extends JpaRepository<ShardBucket, Integer> {}
@@ -0,0 +1,5 @@
+package me.zhc1.pointsystem.repository;
+
+import java.time.LocalDateTime;
+
+public record UsageDetailSummary(int usageId, int blockId, long amount, LocalDateTime blockExpiresAt) {}
@@ -0,0 +1,6 @@
+package me.zhc1.pointsystem.repository;
+
+import java.time.LocalDateTime;
+
+// One usage detail to be given back to its block
+public record UsageRestore(int usageId, int blockId, long amount, LocalDateTime earnedAt, LocalDateTime expiresAt) {}
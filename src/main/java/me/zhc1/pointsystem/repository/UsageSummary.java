@@ -0,0 +1,5 @@
+package me.zhc1.pointsystem.repository;
+
+import java.time.LocalDateTime;
+
+public record UsageSummary(int usageId, long amount, LocalDateTime usedAt, LocalDateTime canceledAt) {}
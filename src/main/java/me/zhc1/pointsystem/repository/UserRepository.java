@@ -1,11 +1,31 @@
 package me.zhc1.pointsystem.repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import me.zhc1.pointsystem.entity.User;
 
 public interface UserRepository extends JpaRepository<User, Integer> {
     Optional<User> findByUsername(String username);
+
+    // Usernames that are not registered are left out
+    @Query(
+            """
+            SELECT new me.zhc1.pointsystem.repository.UserIdentity(u.username, u.userId)
+            FROM User u
+            WHERE u.username IN :usernames
+            """)
+    List<UserIdentity> findIdentities(@Param("usernames") Collection<String> usernames);
+
+    @Query("SELECT u.userId FROM User u WHERE u.userId > :afterUserId ORDER BY u.userId")
+    List<Integer> findUserIdsAfter(@Param("afterUserId") int afterUserId, Limit limit);
+
+    @Query("SELECT COALESCE(MAX(u.userId), 0) FROM User u")
+    int findMaxUserId();
 }
@@ -0,0 +1,17 @@
+package me.zhc1.pointsystem.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import me.zhc1.pointsystem.entity.WalletMember;
+
+public interface WalletMemberRepository extends JpaRepository<WalletMember, WalletMember.Key> {
+    // In ascending order, the order their locks are taken in
+    @Query("SELECT m.userId FROM WalletMember m WHERE m.walletId = :walletId ORDER BY m.userId")
+    List<Integer> findUserIds(@Param("walletId") int walletId);
+
+    List<WalletMember> findByWalletId(int walletId);
+}
@@ -0,0 +1,143 @@
+package me.zhc1.pointsystem.service;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntFunction;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import me.zhc1.pointsystem.config.BalanceCacheProperties;
+import me.zhc1.pointsystem.repository.AvailableBalance;
+
+// In-process cache of available balances keyed by user id, each valid until the user's next expiry.
+// Writers never publish values: they only evict, and only once their transaction has finished.
+// While a writer is committing, readers of the same stripe bypass the cache, and a reader that loaded
+// a value before the commit drops it again if a writer completed in between.
+@Component
+public class BalanceCache implements MeterBinder {
+    private final boolean enabled;
+    private final Cache<Integer, AvailableBalance> cache;
+    private final AtomicIntegerArray committingWriters;
+    private final AtomicLongArray completedWrites;
+
+    public BalanceCache(BalanceCacheProperties properties) {
+        if (properties.invalidationStripes() <= 0) {
+            throw new IllegalArgumentException("Invalidation stripes must be positive");
+        }
+
+        this.enabled = properties.enabled();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.maximumSize())
+                .expireAfterWrite(properties.ttl())
+                .recordStats()
+                .build();
+        this.committingWriters = new AtomicIntegerArray(properties.invalidationStripes());
+        this.completedWrites = new AtomicLongArray(properties.invalidationStripes());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "balances");
+    }
+
+    public AvailableBalance get(int userId, IntFunction<AvailableBalance> loader) {
+        if (!enabled) {
+            return loader.apply(userId);
+        }
+
+        int stripe = stripe(userId);
+        if (committingWriters.get(stripe) == 0) {
+            AvailableBalance cached = cache.getIfPresent(userId);
+            // A cached balance is only good until the next block of the user expires
+            if (cached != null && !cached.expiryDue(LocalDateTime.now())) {
+                return cached;
+            }
+        }
+
+        long writesBeforeLoad = completedWrites.get(stripe);
+        AvailableBalance balance = loader.apply(userId);
+        if (committingWriters.get(stripe) == 0 && completedWrites.get(stripe) == writesBeforeLoad) {
+            cache.put(userId, balance);
+            // A writer may have completed between the check and the put
+            if (completedWrites.get(stripe) != writesBeforeLoad) {
+                cache.invalidate(userId);
+            }
+        }
+        return balance;
+    }
+
+    // Evicts the user's balance once the current transaction completes, or right away without one
+    public void evictAfterCommit(int userId) {
+        if (!enabled) {
+            return;
+        }
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict(userId);
+            return;
+        }
+
+        PendingEvictions pending = (PendingEvictions) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new PendingEvictions();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.userIds.add(userId);
+    }
+
+    public void evict(int userId) {
+        int stripe = stripe(userId);
+        completedWrites.incrementAndGet(stripe);
+        cache.invalidate(userId);
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    private int stripe(int userId) {
+        return Math.floorMod(userId, committingWriters.length());
+    }
+
+    private class PendingEvictions implements TransactionSynchronization {
+        private final Set<Integer> userIds = new HashSet<>();
+        private boolean fenced;
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            for (int userId : userIds) {
+                committingWriters.incrementAndGet(stripe(userId));
+            }
+            fenced = true;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(BalanceCache.this);
+            for (int userId : userIds) {
+                evict(userId);
+                if (fenced) {
+                    committingWriters.decrementAndGet(stripe(userId));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package me.zhc1.pointsystem.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+import me.zhc1.pointsystem.config.ReconciliationProperties;
+import me.zhc1.pointsystem.entity.PointEventType;
+import me.zhc1.pointsystem.repository.BalanceMismatch;
+import me.zhc1.pointsystem.repository.LedgerEntry;
+import me.zhc1.pointsystem.repository.LiabilityChange;
+import me.zhc1.pointsystem.repository.LiabilityRepository;
+import me.zhc1.pointsystem.repository.ReconciliationRepository;
+import me.zhc1.pointsystem.repository.UserRepository;
+
+// Verifies that every balance agrees with the blocks behind it. Expiring a block zeroes it together with an EXPIRE
+// event, so the snapshot plus ledger tail of a user always equals the remaining amounts of all their blocks.
+// The user id space of each shard is cut into partitions, each checked by one aggregate statement without locks.
+// Partitions run a few at a time on virtual threads and are started at a fixed rate, which bounds the load the job
+// adds to each database so that it can run next to regular traffic. Auto-repair trusts the blocks, which are what
+// spends draw from, and appends an ADJUST event so that the correction stays visible in the ledger; the liability
+// rollups take the same correction in the same transaction, so the liability report follows the ledger.
+@Slf4j
+@Component
+public class BalanceReconciliationJob {
+    private final ReconciliationRepository reconciliationRepository;
+    private final UserRepository userRepository;
+    private final PointLedger pointLedger;
+    private final LiabilityRepository liabilityRepository;
+    private final PointConcurrencyGuard concurrencyGuard;
+    private final ShardRouter shardRouter;
+    private final int partitionSize;
+    private final int parallelism;
+    private final long partitionIntervalNanos;
+    private final boolean autoRepair;
+    private final int reportLimit;
+
+    public BalanceReconciliationJob(
+            ReconciliationRepository reconciliationRepository,
+            UserRepository userRepository,
+            PointLedger pointLedger,
+            LiabilityRepository liabilityRepository,
+            PointConcurrencyGuard concurrencyGuard,
+            ShardRouter shardRouter,
+            ReconciliationProperties properties) {
+        if (properties.partitionSize() <= 0) {
+            throw new IllegalArgumentException("Partition size must be positive");
+        }
+        if (properties.parallelism() <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        if (properties.partitionsPerSecond() <= 0) {
+            throw new IllegalArgumentException("Partitions per second must be positive");
+        }
+        if (properties.reportLimit() < 0) {
+            throw new IllegalArgumentException("Report limit must not be negative");
+        }
+
+        this.reconciliationRepository = reconciliationRepository;
+        this.userRepository = userRepository;
+        this.pointLedger = pointLedger;
+        this.liabilityRepository = liabilityRepository;
+        this.concurrencyGuard = concurrencyGuard;
+        this.shardRouter = shardRouter;
+        this.partitionSize = properties.partitionSize();
+        this.parallelism = properties.parallelism();
+        this.partitionIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / properties.partitionsPerSecond());
+        this.autoRepair = properties.autoRepair();
+        this.reportLimit = properties.reportLimit();
+    }
+
+    @Scheduled(cron = "${point.reconciliation.cron}")
+    public ReconciliationReport run() {
+        return run(autoRepair);
+    }
+
+    public ReconciliationReport run(boolean repair) {
+        long startedAt = System.nanoTime();
+
+        long partitions = 0;
+        long mismatches = 0;
+        long repaired = 0;
+        List<BalanceMismatch> reported = new ArrayList<>();
+        for (ShardReport shardReport : shardRouter.onEachShard(shard -> checkShard(shard, repair))) {
+            partitions += shardReport.partitions();
+            mismatches += shardReport.mismatches().size();
+            repaired += shardReport.repaired();
+            for (BalanceMismatch mismatch : shardReport.mismatches()) {
+                if (reported.size() == reportLimit) {
+                    break;
+                }
+                reported.add(mismatch);
+            }
+        }
+
+        ReconciliationReport report = new ReconciliationReport(
+                partitions, mismatches, repaired, reported, Duration.ofNanos(System.nanoTime() - startedAt));
+        for (BalanceMismatch mismatch : reported) {
+            log.warn(
+                    "Balance of user id {} is {} in the ledger but {} in its blocks",
+                    mismatch.userId(),
+                    mismatch.ledgerPoints(),
+                    mismatch.blockPoints());
+        }
+        log.info(
+                "Reconciled balances in {} partitions, found {} mismatches and repaired {}, took {} ms",
+                report.partitions(),
+                report.mismatches(),
+                report.repaired(),
+                report.elapsed().toMillis());
+        return report;
+    }
+
+    private ShardReport checkShard(int shard, boolean repair) {
+        int maxUserId = userRepository.findMaxUserId();
+        Semaphore running = new Semaphore(parallelism);
+        Pacer pacer = new Pacer(partitionIntervalNanos);
+
+        List<Future<List<BalanceMismatch>>> futures = new ArrayList<>();
+        List<BalanceMismatch> mismatches = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long from = 0; from < maxUserId; from += partitionSize) {
+                int fromUserId = (int) from;
+                int toUserId = (int) Math.min(from + partitionSize, maxUserId);
+                running.acquire();
+                pacer.await();
+                futures.add(executor.submit(() -> {
+                    try {
+                        return shardRouter.onShard(
+                                shard, () -> reconciliationRepository.findMismatches(fromUserId, toUserId));
+                    } finally {
+                        running.release();
+                    }
+                }));
+            }
+
+            for (Future<List<BalanceMismatch>> future : futures) {
+                mismatches.addAll(future.get());
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Reconciliation of shard %s failed".formatted(shard), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reconciling balances", e);
+        }
+
+        int repaired = 0;
+        if (repair) {
+            for (BalanceMismatch mismatch : mismatches) {
+                if (repair(mismatch.userId())) {
+                    repaired++;
+                }
+            }
+        }
+        return new ShardReport(futures.size(), mismatches, repaired);
+    }
+
+    // Checked again under the user's lock, so only drift that is still there is corrected
+    private boolean repair(int userId) {
+        return concurrencyGuard.execute(userId, () -> {
+            List<BalanceMismatch> current = reconciliationRepository.findMismatches(userId - 1, userId);
+            if (current.isEmpty()) {
+                return false;
+            }
+
+            BalanceMismatch mismatch = current.getFirst();
+            LocalDateTime now = LocalDateTime.now();
+            pointLedger.append(new LedgerEntry(userId, PointEventType.ADJUST, -mismatch.drift(), null, null, now));
+            liabilityRepository.apply(LiabilityChange.adjusted(userId, now, -mismatch.drift()));
+            log.warn("Adjusted the ledger of user id {} by {} to match its blocks", userId, -mismatch.drift());
+            return true;
+        });
+    }
+
+    // Spaces partition starts evenly; a start delayed by the parallelism bound does not let the next ones burst
+    private static final class Pacer {
+        private final long intervalNanos;
+        private long nextStartNanos = System.nanoTime();
+
+        private Pacer(long intervalNanos) {
+            this.intervalNanos = intervalNanos;
+        }
+
+        private void await() throws InterruptedException {
+            long waitNanos = nextStartNanos - System.nanoTime();
+            if (waitNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+            nextStartNanos = Math.max(nextStartNanos, System.nanoTime()) + intervalNanos;
+        }
+    }
+
+    private record ShardReport(int partitions, List<BalanceMismatch> mismatches, int repaired) {}
+
+    public record ReconciliationReport(
+            long partitions, long mismatches, long repaired, List<BalanceMismatch> reported, Duration elapsed) {}
+}
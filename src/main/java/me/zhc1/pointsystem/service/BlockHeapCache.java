@@ -0,0 +1,119 @@
+package me.zhc1.pointsystem.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import me.zhc1.pointsystem.config.BlockHeapProperties;
+import me.zhc1.pointsystem.entity.PointType;
+import me.zhc1.pointsystem.service.FefoBlockHeap.SpendPlan;
+
+// Live blocks of recently active users, so that spends are planned in memory instead of by walking block rows.
+// A heap is loaded inside the spending transaction under the user's lock and changed only after a write commits;
+// a rolled back write drops the heap, and so does anything that changes blocks in other ways (cancellation).
+// A stale heap cannot overspend: block updates only apply if the block still holds what the plan saw.
+@Component
+public class BlockHeapCache implements MeterBinder {
+    private final boolean enabled;
+    private final Cache<Integer, FefoBlockHeap> cache;
+
+    public BlockHeapCache(BlockHeapProperties properties) {
+        this.enabled = properties.enabled();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(properties.maximumMemory().toBytes())
+                .weigher((Integer userId, FefoBlockHeap heap) -> heap.weight())
+                .expireAfterAccess(properties.idleTimeout())
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "block-heaps");
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    FefoBlockHeap get(int userId, IntFunction<FefoBlockHeap> loader) {
+        return cache.get(userId, loader::apply);
+    }
+
+    void evict(int userId) {
+        cache.invalidate(userId);
+    }
+
+    void spentAfterCommit(int userId, SpendPlan plan) {
+        afterCommit(userId, heap -> heap.apply(plan));
+    }
+
+    void earnedAfterCommit(
+            int userId, int blockId, PointType type, LocalDate earnedOn, LocalDateTime expiresAt, long amount) {
+        afterCommit(userId, heap -> heap.insert(blockId, type, earnedOn, expiresAt, amount));
+    }
+
+    // For changes the heap cannot follow in place
+    public void evictAfterCompletion(int userId) {
+        if (!enabled) {
+            return;
+        }
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict(userId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                evict(userId);
+            }
+        });
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    private void afterCommit(int userId, Consumer<FefoBlockHeap> change) {
+        if (!enabled) {
+            return;
+        }
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(userId, change);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    apply(userId, change);
+                } else {
+                    evict(userId);
+                }
+            }
+        });
+    }
+
+    // Only heaps that are loaded are kept up to date; the put re-weighs a heap that grew
+    private void apply(int userId, Consumer<FefoBlockHeap> change) {
+        cache.asMap().computeIfPresent(userId, (id, heap) -> {
+            change.accept(heap);
+            return heap;
+        });
+    }
+}
@@ -0,0 +1,8 @@
+package me.zhc1.pointsystem.service;
+
+import java.util.List;
+
+public record BulkEarnResult(int requested, int succeeded, List<GrantFailure> failures) {
+    // index is the position of the grant in the submitted collection
+    public record GrantFailure(int index, int userId, String reason) {}
+}
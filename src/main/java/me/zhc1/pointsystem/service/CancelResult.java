@@ -0,0 +1,7 @@
+package me.zhc1.pointsystem.service;
+
+import java.util.List;
+
+// Points on blocks that had already expired are refunded and expired again right away, so they count as expired
+public record CancelResult(
+        int requested, int canceled, long restoredPoints, long expiredPoints, List<Integer> notCancelableUsageIds) {}
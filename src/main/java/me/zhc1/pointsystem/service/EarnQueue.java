@@ -0,0 +1,227 @@
+package me.zhc1.pointsystem.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+import me.zhc1.pointsystem.config.EarnQueueProperties;
+import me.zhc1.pointsystem.entity.PointBlock;
+import me.zhc1.pointsystem.entity.PointEventType;
+import me.zhc1.pointsystem.entity.PointType;
+import me.zhc1.pointsystem.repository.EarnOutboxRepository;
+import me.zhc1.pointsystem.repository.IdempotentOutcome;
+import me.zhc1.pointsystem.repository.QueuedGrant;
+
+// Asynchronous earn path. A grant is acknowledged as soon as its row is committed to the outbox of the user's shard,
+// without looking up the user or touching blocks. The consumer applies queued grants in group commits: one
+// transaction per batch, with one block insert batch, one ledger batch and one expiry hint update per user.
+// Rows are deleted by the transaction that applies them, so after a crash a batch is either applied or still queued.
+@Slf4j
+@Component
+public class EarnQueue {
+    private final EarnOutboxRepository earnOutboxRepository;
+    private final PointBulkEarner pointBulkEarner;
+    private final IdempotencyStore idempotencyStore;
+    private final FraudDetector fraudDetector;
+    private final PointConcurrencyGuard concurrencyGuard;
+    private final ShardRouter shardRouter;
+    private final PointMetrics pointMetrics;
+    private final int batchSize;
+    private final long maxPending;
+    // Counted after every drain and raised by every append in between, including appends still in flight
+    private final AtomicLong pending = new AtomicLong();
+
+    public EarnQueue(
+            EarnOutboxRepository earnOutboxRepository,
+            PointBulkEarner pointBulkEarner,
+            IdempotencyStore idempotencyStore,
+            FraudDetector fraudDetector,
+            PointConcurrencyGuard concurrencyGuard,
+            ShardRouter shardRouter,
+            PointMetrics pointMetrics,
+            EarnQueueProperties properties) {
+        if (properties.batchSize() <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        if (properties.maxPending() <= 0) {
+            throw new IllegalArgumentException("Max pending must be positive");
+        }
+
+        this.earnOutboxRepository = earnOutboxRepository;
+        this.pointBulkEarner = pointBulkEarner;
+        this.idempotencyStore = idempotencyStore;
+        this.fraudDetector = fraudDetector;
+        this.concurrencyGuard = concurrencyGuard;
+        this.shardRouter = shardRouter;
+        this.pointMetrics = pointMetrics;
+        this.batchSize = properties.batchSize();
+        this.maxPending = properties.maxPending();
+        pointMetrics.gaugeEarnQueuePending(pending::get);
+    }
+
+    public void enqueue(
+            int userId, long amount, LocalDateTime expiresAt, PointType pointType, String idempotencyKey) {
+        Grant grant = new Grant(userId, amount, expiresAt, pointType);
+        String invalidReason = PointBulkEarner.validate(grant);
+        if (invalidReason != null) {
+            throw new IllegalArgumentException(invalidReason);
+        }
+        // Back-pressure: callers are told to retry instead of the backlog growing without bound. The slot is taken
+        // before the append, so concurrent callers cannot all pass the check and overshoot the cap together.
+        if (pending.getAndIncrement() >= maxPending) {
+            pending.decrementAndGet();
+            throw new TransientDataAccessResourceException("Earn queue is full, try again later");
+        }
+
+        boolean queued = false;
+        try {
+            queued = shardRouter.forUser(userId, () -> {
+                if (idempotencyKey != null
+                        && (idempotencyStore
+                                        .find(idempotencyKey, userId, PointEventType.EARN, amount)
+                                        .isPresent()
+                                || earnOutboxRepository.isQueued(idempotencyKey))) {
+                    return false;
+                }
+
+                // In a transaction of its own, so a grant that is not queued hands its counted earn back
+                try {
+                    concurrencyGuard.execute(() -> {
+                        fraudDetector.onEarn(userId, amount);
+                        earnOutboxRepository.append(
+                                userId, amount, expiresAt, grant.pointType(), idempotencyKey, LocalDateTime.now());
+                        return null;
+                    });
+                } catch (DuplicateKeyException e) {
+                    // Queued by an earlier attempt of the same request
+                    return false;
+                }
+                return true;
+            });
+        } finally {
+            // Nothing was queued, so the slot goes back
+            if (!queued) {
+                pending.decrementAndGet();
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${point.earn-queue.drain-interval}")
+    public int drain() {
+        int applied = shardRouter.onEachShard(shard -> drainShard()).stream()
+                .mapToInt(Integer::intValue)
+                .sum();
+        pending.set(shardRouter.onEachShard(shard -> earnOutboxRepository.countPending()).stream()
+                .mapToLong(Long::longValue)
+                .sum());
+
+        if (applied > 0) {
+            log.debug("Applied {} queued grants, {} pending", applied, pending.get());
+        }
+        return applied;
+    }
+
+    public long pending() {
+        return pending.get();
+    }
+
+    private int drainShard() {
+        int applied = 0;
+        while (true) {
+            BatchResult batch = applyBatch();
+            LocalDateTime committedAt = LocalDateTime.now();
+            for (LocalDateTime enqueuedAt : batch.appliedEnqueuedAt()) {
+                pointMetrics.recordEarnQueueLatency(Duration.between(enqueuedAt, committedAt));
+            }
+            if (batch.locked() > 0) {
+                pointMetrics.recordEarnQueueBatch(batch.appliedEnqueuedAt().size());
+            }
+
+            applied += batch.appliedEnqueuedAt().size();
+            if (batch.locked() < batchSize) {
+                return applied;
+            }
+        }
+    }
+
+    private BatchResult applyBatch() {
+        try {
+            return concurrencyGuard.execute(() -> applyGrants(earnOutboxRepository.lockPending(batchSize)));
+        } catch (RuntimeException e) {
+            // A single bad grant fails the whole batch, so the grants are applied one by one to set it aside
+            log.warn("Batch of queued grants failed, applying one by one: {}", e.getMessage());
+            List<LocalDateTime> applied = new ArrayList<>();
+            // Their row locks end with this transaction; the delete count in applyGrants still keeps a grant that a
+            // second consumer applies meanwhile from being applied twice
+            List<QueuedGrant> queued = concurrencyGuard.execute(() -> earnOutboxRepository.lockPending(batchSize));
+            for (QueuedGrant grant : queued) {
+                try {
+                    applied.addAll(concurrencyGuard
+                            .execute(() -> applyGrants(List.of(grant)))
+                            .appliedEnqueuedAt());
+                } catch (RuntimeException grantFailure) {
+                    log.error("Setting queued grant {} aside: {}", grant.entryId(), grantFailure.getMessage());
+                    concurrencyGuard.execute(() -> {
+                        earnOutboxRepository.markFailed(
+                                grant.entryId(), grantFailure.getMessage(), LocalDateTime.now());
+                        return null;
+                    });
+                }
+            }
+            return new BatchResult(queued.size(), applied);
+        }
+    }
+
+    private BatchResult applyGrants(List<QueuedGrant> queued) {
+        if (queued.isEmpty()) {
+            return new BatchResult(0, List.of());
+        }
+
+        List<PointBlock> pointBlocks = pointBulkEarner.insert(queued.stream()
+                .map(grant -> new Grant(grant.userId(), grant.amount(), grant.expiresAt(), grant.pointType()))
+                .toList());
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> done = new ArrayList<>(queued.size());
+        List<LocalDateTime> appliedEnqueuedAt = new ArrayList<>(queued.size());
+        for (int i = 0; i < queued.size(); i++) {
+            QueuedGrant grant = queued.get(i);
+            PointBlock pointBlock = pointBlocks.get(i);
+            if (pointBlock == null) {
+                earnOutboxRepository.markFailed(grant.entryId(), "User not found", now);
+                continue;
+            }
+
+            if (grant.idempotencyKey() != null) {
+                idempotencyStore.record(new IdempotentOutcome(
+                        grant.idempotencyKey(),
+                        grant.userId(),
+                        PointEventType.EARN,
+                        grant.amount(),
+                        pointBlock.getBlockId(),
+                        null,
+                        pointBlock.getEarnedAt()));
+            }
+            done.add(grant.entryId());
+            appliedEnqueuedAt.add(grant.enqueuedAt());
+        }
+
+        // Another consumer that got here first has already applied them
+        if (!done.isEmpty() && earnOutboxRepository.delete(done) != done.size()) {
+            throw new OptimisticLockingFailureException("Queued grants were applied concurrently");
+        }
+        return new BatchResult(queued.size(), appliedEnqueuedAt);
+    }
+
+    private record BatchResult(int locked, List<LocalDateTime> appliedEnqueuedAt) {}
+}
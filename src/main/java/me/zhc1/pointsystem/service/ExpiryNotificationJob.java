@@ -0,0 +1,98 @@
+package me.zhc1.pointsystem.service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+import me.zhc1.pointsystem.config.ExpiryNotificationProperties;
+import me.zhc1.pointsystem.repository.ExpiringPoints;
+import me.zhc1.pointsystem.repository.ExpiryBucketRepository;
+
+// Finds the users with live points expiring in the coming days and hands them to the notifier chunk by chunk.
+// Reads only the expiry buckets of those days instead of the blocks, in user id order, so a run is a handful
+// of index range scans however many blocks there are. Buckets of past days are dropped on the way.
+@Slf4j
+@Component
+public class ExpiryNotificationJob {
+    private final ExpiryBucketRepository expiryBucketRepository;
+    private final ExpiryNotifier expiryNotifier;
+    private final ShardRouter shardRouter;
+    private final int days;
+    private final int chunkSize;
+
+    public ExpiryNotificationJob(
+            ExpiryBucketRepository expiryBucketRepository,
+            ExpiryNotifier expiryNotifier,
+            ShardRouter shardRouter,
+            ExpiryNotificationProperties properties) {
+        if (properties.days() <= 0) {
+            throw new IllegalArgumentException("Notification days must be positive");
+        }
+        if (properties.chunkSize() <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+
+        this.expiryBucketRepository = expiryBucketRepository;
+        this.expiryNotifier = expiryNotifier;
+        this.shardRouter = shardRouter;
+        this.days = properties.days();
+        this.chunkSize = properties.chunkSize();
+    }
+
+    @Scheduled(cron = "${point.expiry-notification.cron}")
+    public NotificationResult run() {
+        LocalDate today = LocalDate.now();
+        long startedAt = System.nanoTime();
+
+        long users = 0;
+        long points = 0;
+        for (NotificationResult shardResult : shardRouter.onEachShard(shard -> runShard(today))) {
+            users += shardResult.users();
+            points += shardResult.points();
+        }
+
+        NotificationResult result =
+                new NotificationResult(users, points, Duration.ofNanos(System.nanoTime() - startedAt));
+        log.info(
+                "Notified {} users of {} points expiring in {} days, took {} ms",
+                result.users(),
+                result.points(),
+                days,
+                result.elapsed().toMillis());
+        return result;
+    }
+
+    private NotificationResult runShard(LocalDate today) {
+        long startedAt = System.nanoTime();
+        LocalDate lastDay = today.plusDays(days - 1);
+
+        long users = 0;
+        long points = 0;
+        int afterUserId = 0;
+        while (true) {
+            List<ExpiringPoints> chunk = expiryBucketRepository.findExpiring(today, lastDay, afterUserId, chunkSize);
+            if (chunk.isEmpty()) {
+                break;
+            }
+
+            expiryNotifier.notify(chunk);
+            users += chunk.size();
+            points += chunk.stream().mapToLong(ExpiringPoints::points).sum();
+            afterUserId = chunk.getLast().userId();
+        }
+
+        int deleted;
+        do {
+            deleted = expiryBucketRepository.deleteBefore(today, chunkSize);
+        } while (deleted == chunkSize);
+
+        return new NotificationResult(users, points, Duration.ofNanos(System.nanoTime() - startedAt));
+    }
+
+    public record NotificationResult(long users, long points, Duration elapsed) {}
+}
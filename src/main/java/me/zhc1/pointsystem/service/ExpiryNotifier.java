@@ -0,0 +1,11 @@
+package me.zhc1.pointsystem.service;
+
+import java.util.List;
+
+import me.zhc1.pointsystem.repository.ExpiringPoints;
+
+// Tells users that some of their points expire soon; receives the users of a run chunk by chunk
+public interface ExpiryNotifier {
+
+    void notify(List<ExpiringPoints> chunk);
+}
@@ -0,0 +1,222 @@
+package me.zhc1.pointsystem.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+import me.zhc1.pointsystem.entity.PointType;
+
+// Live blocks of one user in spend order, kept in parallel primitive arrays sorted by (type, expiresAt, blockId):
+// types by priority, first expiring first within a type. Spending consumes from the head, so the live part is
+// the range [head, end).
+// Planning reads the arrays without allocating; changes are applied only once the spend has committed.
+final class FefoBlockHeap {
+    private static final int INITIAL_CAPACITY = 8;
+    // Five arrays per entry plus the object and array headers
+    private static final int BYTES_PER_ENTRY = Integer.BYTES + Byte.BYTES + Integer.BYTES + Long.BYTES + Long.BYTES;
+    private static final int OVERHEAD_BYTES = 96;
+
+    private int[] blockIds = new int[INITIAL_CAPACITY];
+    // Spend priorities of the point types
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    // Epoch days, the cohort a spend is booked against
+    private int[] earnedOn = new int[INITIAL_CAPACITY];
+    private long[] expiresAt = new long[INITIAL_CAPACITY];
+    private long[] remaining = new long[INITIAL_CAPACITY];
+    private int head;
+    private int end;
+
+    // Loading appends blocks that already come in spend order
+    synchronized void append(int blockId, PointType type, LocalDate earnedOn, LocalDateTime expiresAt, long remaining) {
+        ensureCapacity();
+        blockIds[end] = blockId;
+        types[end] = (byte) type.spendPriority();
+        this.earnedOn[end] = (int) earnedOn.toEpochDay();
+        this.expiresAt[end] = epochMicros(expiresAt);
+        this.remaining[end] = remaining;
+        end++;
+    }
+
+    // A block the heap already holds is skipped, as when an earn commits while the heap is loaded and both see it
+    synchronized void insert(int blockId, PointType type, LocalDate earnedOn, LocalDateTime expiresAt, long amount) {
+        for (int i = head; i < end; i++) {
+            if (blockIds[i] == blockId) {
+                return;
+            }
+        }
+
+        byte rank = (byte) type.spendPriority();
+        long micros = epochMicros(expiresAt);
+        ensureCapacity();
+
+        int position = end;
+        while (position > head && compare(position - 1, rank, micros, blockId) > 0) {
+            position--;
+        }
+        System.arraycopy(blockIds, position, blockIds, position + 1, end - position);
+        System.arraycopy(types, position, types, position + 1, end - position);
+        System.arraycopy(this.earnedOn, position, this.earnedOn, position + 1, end - position);
+        System.arraycopy(this.expiresAt, position, this.expiresAt, position + 1, end - position);
+        System.arraycopy(remaining, position, remaining, position + 1, end - position);
+        blockIds[position] = blockId;
+        types[position] = rank;
+        this.earnedOn[position] = (int) earnedOn.toEpochDay();
+        this.expiresAt[position] = micros;
+        remaining[position] = amount;
+        end++;
+    }
+
+    // Fills the plan with the blocks that cover the amount in spend order and returns the covered amount.
+    // Blocks that have expired by now are dropped from the head on the way.
+    synchronized long plan(long amount, LocalDateTime now, SpendPlan plan) {
+        long nowMicros = epochMicros(now);
+        while (head < end && (expiresAt[head] <= nowMicros || remaining[head] == 0)) {
+            head++;
+        }
+
+        plan.clear();
+        long covered = 0;
+        for (int i = head; i < end && covered < amount; i++) {
+            if (remaining[i] == 0 || expiresAt[i] <= nowMicros) {
+                continue;
+            }
+
+            long take = Math.min(remaining[i], amount - covered);
+            plan.add(blockIds[i], take, remaining[i], earnedOn[i], expiresAt[i]);
+            covered += take;
+        }
+        return covered;
+    }
+
+    // Takes the planned amounts off their blocks. Blocks that are gone are skipped, they were expired meanwhile.
+    synchronized void apply(SpendPlan plan) {
+        for (int p = 0; p < plan.size(); p++) {
+            for (int i = head; i < end; i++) {
+                if (blockIds[i] == plan.blockId(p)) {
+                    remaining[i] = Math.max(remaining[i] - plan.amount(p), 0);
+                    break;
+                }
+            }
+        }
+        while (head < end && remaining[head] == 0) {
+            head++;
+        }
+    }
+
+    synchronized int size() {
+        return end - head;
+    }
+
+    int weight() {
+        return OVERHEAD_BYTES + blockIds.length * BYTES_PER_ENTRY;
+    }
+
+    private int compare(int index, byte rank, long micros, int blockId) {
+        int byType = Byte.compare(types[index], rank);
+        if (byType != 0) {
+            return byType;
+        }
+        int byExpiry = Long.compare(expiresAt[index], micros);
+        return byExpiry != 0 ? byExpiry : Integer.compare(blockIds[index], blockId);
+    }
+
+    private void ensureCapacity() {
+        if (end < blockIds.length) {
+            return;
+        }
+
+        // Reclaim the consumed head first, grow only if that is not enough
+        int live = end - head;
+        if (head > 0 && live < blockIds.length / 2) {
+            System.arraycopy(blockIds, head, blockIds, 0, live);
+            System.arraycopy(types, head, types, 0, live);
+            System.arraycopy(earnedOn, head, earnedOn, 0, live);
+            System.arraycopy(expiresAt, head, expiresAt, 0, live);
+            System.arraycopy(remaining, head, remaining, 0, live);
+        } else {
+            int capacity = blockIds.length * 2;
+            int[] grownIds = new int[capacity];
+            byte[] grownTypes = new byte[capacity];
+            int[] grownEarnedOn = new int[capacity];
+            long[] grownExpiresAt = new long[capacity];
+            long[] grownRemaining = new long[capacity];
+            System.arraycopy(blockIds, head, grownIds, 0, live);
+            System.arraycopy(types, head, grownTypes, 0, live);
+            System.arraycopy(earnedOn, head, grownEarnedOn, 0, live);
+            System.arraycopy(expiresAt, head, grownExpiresAt, 0, live);
+            System.arraycopy(remaining, head, grownRemaining, 0, live);
+            blockIds = grownIds;
+            types = grownTypes;
+            earnedOn = grownEarnedOn;
+            expiresAt = grownExpiresAt;
+            remaining = grownRemaining;
+        }
+        head = 0;
+        end = live;
+    }
+
+    private static long epochMicros(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + dateTime.getNano() / 1_000;
+    }
+
+    private static LocalDateTime fromEpochMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(
+                Math.floorDiv(micros, 1_000_000), (int) Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+
+    // Reusable result of a plan: the blocks to take from, how much, how much each held when planned,
+    // and when it was earned and expires
+    static final class SpendPlan {
+        private int[] blockIds = new int[INITIAL_CAPACITY];
+        private long[] amounts = new long[INITIAL_CAPACITY];
+        private long[] remainingBefore = new long[INITIAL_CAPACITY];
+        private int[] earnedOn = new int[INITIAL_CAPACITY];
+        private long[] expiresAt = new long[INITIAL_CAPACITY];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        int blockId(int index) {
+            return blockIds[index];
+        }
+
+        long amount(int index) {
+            return amounts[index];
+        }
+
+        long remainingBefore(int index) {
+            return remainingBefore[index];
+        }
+
+        LocalDate earnedOn(int index) {
+            return LocalDate.ofEpochDay(earnedOn[index]);
+        }
+
+        LocalDateTime expiresAt(int index) {
+            return fromEpochMicros(expiresAt[index]);
+        }
+
+        private void clear() {
+            size = 0;
+        }
+
+        private void add(int blockId, long amount, long remaining, int earnedOnDay, long expiresAtMicros) {
+            if (size == blockIds.length) {
+                blockIds = Arrays.copyOf(blockIds, size * 2);
+                amounts = Arrays.copyOf(amounts, size * 2);
+                remainingBefore = Arrays.copyOf(remainingBefore, size * 2);
+                earnedOn = Arrays.copyOf(earnedOn, size * 2);
+                expiresAt = Arrays.copyOf(expiresAt, size * 2);
+            }
+            blockIds[size] = blockId;
+            amounts[size] = amount;
+            remainingBefore[size] = remaining;
+            earnedOn[size] = earnedOnDay;
+            expiresAt[size] = expiresAtMicros;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package me.zhc1.pointsystem.service;
+
+public enum FraudAction {
+    FLAG,
+    HOLD
+}
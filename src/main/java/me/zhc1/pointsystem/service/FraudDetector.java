@@ -0,0 +1,158 @@
+package me.zhc1.pointsystem.service;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import lombok.extern.slf4j.Slf4j;
+
+import me.zhc1.pointsystem.config.FraudProperties;
+
+// Checks every earn and use against the sliding-window counters of its user and counts it in the same step, under
+// the window's lock, so a burst of parallel operations by one user is judged one after another. An operation
+// counted inside a transaction is handed back if the transaction rolls back.
+// Windows live in memory only, bounded by an estimated size; a window idle for an hour holds nothing any rule
+// still looks at, so evicting it then loses nothing. Each instance sees the traffic it serves, which is all of a
+// user's traffic as long as requests are routed by user.
+@Slf4j
+@Component
+public class FraudDetector implements MeterBinder {
+    private final boolean enabled;
+    private final FraudAction action;
+    private final int maxEventsPerMinute;
+    private final long maxSpendPerHour;
+    private final long largeEarn;
+    private final long quickSpendMillis;
+    private final Cache<Integer, UserActivityWindow> windows;
+    private final Map<FraudRule, Counter> detections = new EnumMap<>(FraudRule.class);
+
+    public FraudDetector(FraudProperties properties, MeterRegistry registry) {
+        if (properties.maxEventsPerMinute() < 0 || properties.maxSpendPerHour() < 0 || properties.largeEarn() < 0) {
+            throw new IllegalArgumentException("Fraud limits must not be negative");
+        }
+
+        this.enabled = properties.enabled();
+        this.action = properties.action();
+        this.maxEventsPerMinute = properties.maxEventsPerMinute();
+        this.maxSpendPerHour = properties.maxSpendPerHour();
+        this.largeEarn = properties.largeEarn();
+        this.quickSpendMillis = properties.quickSpendWindow().toMillis();
+        this.windows = Caffeine.newBuilder()
+                .maximumWeight(properties.maximumMemory().toBytes())
+                .weigher((Integer userId, UserActivityWindow window) -> UserActivityWindow.WEIGHT)
+                .expireAfterAccess(Duration.ofMillis(UserActivityWindow.HOUR_MILLIS))
+                .recordStats()
+                .build();
+
+        for (FraudRule rule : FraudRule.values()) {
+            detections.put(
+                    rule,
+                    Counter.builder("point.fraud.detections")
+                            .description("Operations that broke a fraud rule")
+                            .tag("rule", rule.name())
+                            .tag("action", action.name())
+                            .register(registry));
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, windows, "fraud-windows");
+    }
+
+    // Judges the earn with every operation counted before it and counts it; held earns are not counted
+    public void onEarn(int userId, long amount) {
+        if (!enabled) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        boolean large = largeEarn > 0 && amount >= largeEarn;
+        UserActivityWindow window = windows.get(userId, id -> new UserActivityWindow());
+        synchronized (window) {
+            if (maxEventsPerMinute > 0 && window.eventsAt(now) + 1 > maxEventsPerMinute) {
+                detected(FraudRule.EVENT_RATE, "earn", userId, amount);
+            }
+            window.recordEvent(now);
+            if (large) {
+                window.recordLargeEarn(now);
+            }
+        }
+
+        releaseOnRollback(() -> {
+            window.releaseEvent(now);
+            if (large) {
+                window.releaseLargeEarn(now);
+            }
+        });
+    }
+
+    public void onUse(int userId, long amount) {
+        if (!enabled) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        UserActivityWindow window = windows.get(userId, id -> new UserActivityWindow());
+        long largeEarnAt;
+        synchronized (window) {
+            largeEarnAt = window.largeEarnAt();
+            if (maxEventsPerMinute > 0 && window.eventsAt(now) + 1 > maxEventsPerMinute) {
+                detected(FraudRule.EVENT_RATE, "use", userId, amount);
+            } else if (maxSpendPerHour > 0 && window.spentAt(now) + amount > maxSpendPerHour) {
+                detected(FraudRule.SPEND_RATE, "use", userId, amount);
+            } else if (largeEarn > 0 && window.isSpendAfterLargeEarn(now, quickSpendMillis)) {
+                detected(FraudRule.SPEND_AFTER_LARGE_EARN, "use", userId, amount);
+            }
+            window.recordEvent(now);
+            window.recordSpend(now, amount);
+            window.takeSpendAfterLargeEarn(now, quickSpendMillis);
+        }
+
+        releaseOnRollback(() -> {
+            window.releaseEvent(now);
+            window.releaseSpend(now, amount);
+            window.restoreLargeEarn(largeEarnAt);
+        });
+    }
+
+    public long trackedUsers() {
+        return windows.estimatedSize();
+    }
+
+    // Operations outside a transaction stay counted once judged. A rolled-back operation may meanwhile have held
+    // another one of the same user, which errs on the side of holding.
+    private static void releaseOnRollback(Runnable release) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    release.run();
+                }
+            }
+        });
+    }
+
+    private void detected(FraudRule rule, String operation, int userId, long amount) {
+        detections.get(rule).increment();
+        log.warn("Suspicious {} of {} points by user id {}: {}, {}", operation, amount, userId, rule, action);
+        if (action == FraudAction.HOLD) {
+            throw new IllegalStateException("Operation held for review, user id: %s, rule: %s".formatted(userId, rule));
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package me.zhc1.pointsystem.service;
+
+public enum FraudRule {
+    // More earns and uses in a minute than a person makes, typical of scripted farming
+    EVENT_RATE,
+    // More points spent in an hour than the limit, typical of draining a taken-over account
+    SPEND_RATE,
+    // Spending right after a large earn, typical of cashing out farmed or injected points
+    SPEND_AFTER_LARGE_EARN
+}
@@ -0,0 +1,18 @@
+package me.zhc1.pointsystem.service;
+
+import java.time.LocalDateTime;
+
+import me.zhc1.pointsystem.entity.PointType;
+
+// Grants without a type earn cash-like points
+public record Grant(int userId, long amount, LocalDateTime expiresAt, PointType pointType) {
+    public Grant {
+        if (pointType == null) {
+            pointType = PointType.CASH;
+        }
+    }
+
+    public Grant(int userId, long amount, LocalDateTime expiresAt) {
+        this(userId, amount, expiresAt, PointType.CASH);
+    }
+}
@@ -0,0 +1,121 @@
+package me.zhc1.pointsystem.service;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import lombok.extern.slf4j.Slf4j;
+
+import me.zhc1.pointsystem.config.IdempotencyProperties;
+import me.zhc1.pointsystem.entity.PointEventType;
+import me.zhc1.pointsystem.repository.IdempotencyKeyRepository;
+import me.zhc1.pointsystem.repository.IdempotentOutcome;
+
+// Remembers the outcome of requests that carried an idempotency key.
+// The table is the source of truth; a bounded in-memory front answers retries of recent keys without a query.
+// Outcomes enter the front only after their transaction committed, so it never holds a rolled back request.
+// Keys live on the shard of the user they were used for.
+@Slf4j
+@Component
+public class IdempotencyStore implements MeterBinder {
+    private static final int MAX_KEY_LENGTH = 100;
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final IdempotencyProperties properties;
+    private final Cache<String, IdempotentOutcome> recent;
+    private final ShardRouter shardRouter;
+
+    public IdempotencyStore(
+            IdempotencyKeyRepository idempotencyKeyRepository,
+            IdempotencyProperties properties,
+            ShardRouter shardRouter) {
+        if (properties.purgeChunkSize() <= 0) {
+            throw new IllegalArgumentException("Purge chunk size must be positive");
+        }
+
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.properties = properties;
+        this.shardRouter = shardRouter;
+        this.recent = Caffeine.newBuilder()
+                .maximumSize(properties.cacheSize())
+                .expireAfterWrite(properties.retention())
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, recent, "idempotency-keys");
+    }
+
+    // Returns the outcome of an earlier request with this key, rejecting a key reused for a different request
+    public Optional<IdempotentOutcome> find(String key, int userId, PointEventType eventType, long amount) {
+        validate(key);
+
+        IdempotentOutcome outcome = recent.getIfPresent(key);
+        if (outcome == null) {
+            outcome = idempotencyKeyRepository.find(key).orElse(null);
+            if (outcome == null) {
+                return Optional.empty();
+            }
+            recent.put(key, outcome);
+        }
+
+        if (outcome.userId() != userId || outcome.eventType() != eventType || outcome.amount() != amount) {
+            throw new IllegalArgumentException("Idempotency key was already used for a different request: " + key);
+        }
+        return Optional.of(outcome);
+    }
+
+    // Must run in the transaction that applied the request
+    public void record(IdempotentOutcome outcome) {
+        idempotencyKeyRepository.insert(outcome);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                recent.put(outcome.key(), outcome);
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${point.idempotency.purge-interval}")
+    public int purgeExpired() {
+        LocalDateTime createdBefore = LocalDateTime.now().minus(properties.retention());
+
+        int purged = shardRouter.onEachShard(shard -> purgeShard(createdBefore)).stream()
+                .mapToInt(Integer::intValue)
+                .sum();
+
+        if (purged > 0) {
+            log.info("Purged {} idempotency keys created before {}", purged, createdBefore);
+        }
+        return purged;
+    }
+
+    private int purgeShard(LocalDateTime createdBefore) {
+        int purged = 0;
+        int deleted;
+        do {
+            deleted = idempotencyKeyRepository.deleteCreatedBefore(createdBefore, properties.purgeChunkSize());
+            purged += deleted;
+        } while (deleted == properties.purgeChunkSize());
+        return purged;
+    }
+
+    private static void validate(String key) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency key must be 1 to %s characters".formatted(MAX_KEY_LENGTH));
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package me.zhc1.pointsystem.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import jakarta.persistence.EntityNotFoundException;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+import me.zhc1.pointsystem.config.LedgerProperties;
+import me.zhc1.pointsystem.repository.PointLedgerRepository;
+import me.zhc1.pointsystem.repository.RemainingPointRepository;
+import me.zhc1.pointsystem.repository.UserRepository;
+
+// Recomputes balances from scratch by replaying the ledger and replaces the snapshots with the result.
+// Events are streamed row by row, so a user's history never has to fit in memory.
+// Each shard rebuilds the users it owns, in parallel with the others.
+@Slf4j
+@Component
+public class LedgerRebuildJob {
+    private final PointLedgerRepository pointLedgerRepository;
+    private final RemainingPointRepository remainingPointRepository;
+    private final UserRepository userRepository;
+    private final PointConcurrencyGuard concurrencyGuard;
+    private final BalanceCache balanceCache;
+    private final ShardRouter shardRouter;
+    private final int chunkSize;
+
+    public LedgerRebuildJob(
+            PointLedgerRepository pointLedgerRepository,
+            RemainingPointRepository remainingPointRepository,
+            UserRepository userRepository,
+            PointConcurrencyGuard concurrencyGuard,
+            BalanceCache balanceCache,
+            ShardRouter shardRouter,
+            LedgerProperties properties) {
+        if (properties.rebuildChunkSize() <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+
+        this.pointLedgerRepository = pointLedgerRepository;
+        this.remainingPointRepository = remainingPointRepository;
+        this.userRepository = userRepository;
+        this.concurrencyGuard = concurrencyGuard;
+        this.balanceCache = balanceCache;
+        this.shardRouter = shardRouter;
+        this.chunkSize = properties.rebuildChunkSize();
+    }
+
+    public RebuildResult rebuild(int userId) {
+        return concurrencyGuard.execute(userId, () -> {
+            long previousBalance = remainingPointRepository
+                    .findAvailablePoints(userId)
+                    .orElseThrow(() -> new EntityNotFoundException("User not found"));
+
+            Replay replay = new Replay();
+            pointLedgerRepository.streamEvents(
+                    userId, rs -> replay.apply(rs.getLong("user_sequence"), rs.getLong("amount")));
+            pointLedgerRepository.replaceSnapshot(userId, replay.balance, replay.lastSequence, LocalDateTime.now());
+            balanceCache.evictAfterCommit(userId);
+
+            RebuildResult result = new RebuildResult(
+                    userId, previousBalance, replay.balance, replay.events, replay.gapless, replay.neverNegative);
+            if (!result.consistent()) {
+                log.warn("Rebuilt balance of user id {} does not match its previous state: {}", userId, result);
+            }
+            return result;
+        });
+    }
+
+    public int rebuildAll() {
+        int rebuilt = 0;
+        int inconsistent = 0;
+        for (ShardRebuild shardRebuild : shardRouter.onEachShard(this::rebuildShard)) {
+            rebuilt += shardRebuild.rebuilt();
+            inconsistent += shardRebuild.inconsistent();
+        }
+
+        log.info("Rebuilt {} balances from the ledger, {} were inconsistent", rebuilt, inconsistent);
+        return rebuilt;
+    }
+
+    private ShardRebuild rebuildShard(int shard) {
+        int rebuilt = 0;
+        int inconsistent = 0;
+        int afterUserId = 0;
+        while (true) {
+            List<Integer> userIds = userRepository.findUserIdsAfter(afterUserId, Limit.of(chunkSize));
+            if (userIds.isEmpty()) {
+                break;
+            }
+
+            for (int userId : userIds) {
+                // Shard 0 also registers the users of every other shard
+                if (shardRouter.shardOf(userId) != shard) {
+                    continue;
+                }
+                if (!rebuild(userId).consistent()) {
+                    inconsistent++;
+                }
+                rebuilt++;
+            }
+            afterUserId = userIds.getLast();
+        }
+        return new ShardRebuild(rebuilt, inconsistent);
+    }
+
+    private record ShardRebuild(int rebuilt, int inconsistent) {}
+
+    private static class Replay {
+        private long balance;
+        private long lastSequence;
+        private long events;
+        private boolean gapless = true;
+        private boolean neverNegative = true;
+
+        private void apply(long sequence, long amount) {
+            if (sequence != lastSequence + 1) {
+                gapless = false;
+            }
+
+            balance += amount;
+            if (balance < 0) {
+                neverNegative = false;
+            }
+            lastSequence = sequence;
+            events++;
+        }
+    }
+
+    public record RebuildResult(
+            int userId, long previousBalance, long rebuiltBalance, long events, boolean gapless, boolean neverNegative) {
+        public boolean consistent() {
+            return previousBalance == rebuiltBalance && gapless && neverNegative;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package me.zhc1.pointsystem.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+import me.zhc1.pointsystem.config.LedgerProperties;
+import me.zhc1.pointsystem.entity.JobCheckpoint;
+import me.zhc1.pointsystem.repository.JobCheckpointRepository;
+import me.zhc1.pointsystem.repository.LedgerEventUser;
+import me.zhc1.pointsystem.repository.LedgerTail;
+import me.zhc1.pointsystem.repository.PointLedgerRepository;
+
+// Periodically folds the ledger tail of every user into its balance snapshot,
+// which keeps the tail that balance reads have to sum short. Shards are folded in parallel.
+// A run pages through the events appended since the previous one by event id and folds only their users, so its
+// cost follows the traffic rather than the size of the ledger. Event ids are taken before their transactions
+// commit, so one may become visible behind a higher one already read; each run therefore starts again where the
+// previous one started, which catches any transaction that commits within one interval of its insert. A user
+// whose late event is still missed is folded with its next event, and balance reads sum the tail meanwhile.
+@Slf4j
+@Component
+public class LedgerSnapshotJob {
+    private static final String JOB_NAME = "ledger-snapshot";
+
+    private final PointLedgerRepository pointLedgerRepository;
+    private final JobCheckpointRepository jobCheckpointRepository;
+    private final PointConcurrencyGuard concurrencyGuard;
+    private final ShardRouter shardRouter;
+    private final int chunkSize;
+
+    public LedgerSnapshotJob(
+            PointLedgerRepository pointLedgerRepository,
+            JobCheckpointRepository jobCheckpointRepository,
+            PointConcurrencyGuard concurrencyGuard,
+            ShardRouter shardRouter,
+            LedgerProperties properties) {
+        if (properties.snapshotChunkSize() <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+
+        this.pointLedgerRepository = pointLedgerRepository;
+        this.jobCheckpointRepository = jobCheckpointRepository;
+        this.concurrencyGuard = concurrencyGuard;
+        this.shardRouter = shardRouter;
+        this.chunkSize = properties.snapshotChunkSize();
+    }
+
+    @Scheduled(fixedDelayString = "${point.ledger.snapshot-interval}")
+    public int run() {
+        int snapshots = shardRouter.onEachShard(shard -> runShard()).stream()
+                .mapToInt(Integer::intValue)
+                .sum();
+
+        log.debug("Folded ledger tails into {} balance snapshots", snapshots);
+        return snapshots;
+    }
+
+    private int runShard() {
+        long afterEventId = jobCheckpointRepository
+                .findById(JOB_NAME)
+                .map(JobCheckpoint::getPosition)
+                .orElse(0L);
+
+        int snapshots = 0;
+        long firstEventId = 0;
+        while (true) {
+            List<LedgerEventUser> events = pointLedgerRepository.findEventUsers(afterEventId, chunkSize);
+            if (events.isEmpty()) {
+                break;
+            }
+            if (firstEventId == 0) {
+                firstEventId = events.getFirst().eventId();
+            }
+
+            Set<Integer> userIds = new TreeSet<>();
+            for (LedgerEventUser event : events) {
+                userIds.add(event.userId());
+            }
+            List<LedgerTail> tails = pointLedgerRepository.findTails(userIds);
+            // Folding does not change any balance, so cached balances stay valid
+            if (!tails.isEmpty()) {
+                snapshots +=
+                        concurrencyGuard.execute(() -> pointLedgerRepository.foldTails(tails, LocalDateTime.now()));
+            }
+            afterEventId = events.getLast().eventId();
+        }
+
+        if (firstEventId > 0) {
+            long nextStart = firstEventId - 1;
+            concurrencyGuard.execute(() -> {
+                JobCheckpoint checkpoint = new JobCheckpoint();
+                checkpoint.setJobName(JOB_NAME);
+                checkpoint.setPosition(nextStart);
+                checkpoint.setUpdatedAt(LocalDateTime.now());
+                return jobCheckpointRepository.save(checkpoint);
+            });
+        }
+        return snapshots;
+    }
+}
@@ -0,0 +1,106 @@
+package me.zhc1.pointsystem.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+
+import me.zhc1.pointsystem.config.LiabilityProperties;
+import me.zhc1.pointsystem.repository.LiabilityRepository;
+
+// Builds the liability rollups from the blocks, usages and expirations already stored, for data that predates them
+// or after a shard move, which leaves the rollups of the moved users behind on their old shard. Every rollup slot is
+// one partition: its users write no other rows, so slots rebuild in parallel without waiting on each other.
+// Each slot is read and corrected in one repeatable-read transaction (see LiabilityRepository.rebuildSlot), so it
+// runs alongside live writes. A slot whose correction conflicts with a writer fails the run; running it again is
+// safe, since a slot already in line is left as it is.
+@Slf4j
+@Component
+public class LiabilityBackfillJob {
+    private final LiabilityRepository liabilityRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
+    private final int parallelism;
+
+    public LiabilityBackfillJob(
+            LiabilityRepository liabilityRepository,
+            TransactionTemplate transactionTemplate,
+            ShardRouter shardRouter,
+            LiabilityProperties properties) {
+        if (properties.backfillParallelism() <= 0) {
+            throw new IllegalArgumentException("Backfill parallelism must be positive");
+        }
+
+        this.liabilityRepository = liabilityRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.shardRouter = shardRouter;
+        this.parallelism = properties.backfillParallelism();
+    }
+
+    public BackfillResult run() {
+        long startedAt = System.nanoTime();
+
+        long rollups = 0;
+        for (long shardRollups : shardRouter.onEachShard(this::backfillShard)) {
+            rollups += shardRollups;
+        }
+
+        BackfillResult result = new BackfillResult(
+                liabilityRepository.slots(), rollups, Duration.ofNanos(System.nanoTime() - startedAt));
+        log.info(
+                "Rebuilt {} liability rollups in {} slots per shard, took {} ms",
+                result.rollups(),
+                result.slots(),
+                result.elapsed().toMillis());
+        return result;
+    }
+
+    private long backfillShard(int shard) {
+        int slots = liabilityRepository.slots();
+        transactionTemplate.executeWithoutResult(status -> liabilityRepository.deleteSlotsFrom(slots));
+
+        Semaphore running = new Semaphore(parallelism);
+        List<Future<Integer>> futures = new ArrayList<>();
+        long rollups = 0;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int slot = 0; slot < slots; slot++) {
+                int partition = slot;
+                running.acquire();
+                futures.add(executor.submit(() -> {
+                    try {
+                        return shardRouter.onShard(shard, () -> transactionTemplate.execute(
+                                status -> liabilityRepository.rebuildSlot(partition)));
+                    } finally {
+                        running.release();
+                    }
+                }));
+            }
+
+            for (Future<Integer> future : futures) {
+                rollups += future.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Liability backfill of shard %s failed".formatted(shard), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while backfilling liability rollups", e);
+        }
+        return rollups;
+    }
+
+    public record BackfillResult(int slots, long rollups, Duration elapsed) {}
+}
@@ -0,0 +1,25 @@
+package me.zhc1.pointsystem.service;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import me.zhc1.pointsystem.repository.CohortLiability;
+
+// Cohorts in earn month order; outstanding is what was earned by the end of asOf and neither used nor expired
+public record LiabilityReport(LocalDate asOf, List<CohortLiability> cohorts) {
+    public long earned() {
+        return cohorts.stream().mapToLong(CohortLiability::earned).sum();
+    }
+
+    public long used() {
+        return cohorts.stream().mapToLong(CohortLiability::used).sum();
+    }
+
+    public long expired() {
+        return cohorts.stream().mapToLong(CohortLiability::expired).sum();
+    }
+
+    public long outstanding() {
+        return cohorts.stream().mapToLong(CohortLiability::outstanding).sum();
+    }
+}
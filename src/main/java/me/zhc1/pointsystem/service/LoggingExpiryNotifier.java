@@ -0,0 +1,24 @@
+package me.zhc1.pointsystem.service;
+
+import java.util.List;
+
+import lombok.extern.slf4j.Slf4j;
+
+import me.zhc1.pointsystem.repository.ExpiringPoints;
+
+// Stands in for a real channel (mail, push) until one is configured
+@Slf4j
+public class LoggingExpiryNotifier implements ExpiryNotifier {
+
+    @Override
+    public void notify(List<ExpiringPoints> chunk) {
+        for (ExpiringPoints expiring : chunk) {
+            log.debug(
+                    "User {} has {} points expiring from {}",
+                    expiring.userId(),
+                    expiring.points(),
+                    expiring.firstExpiryDay());
+        }
+        log.info("Notified {} users of expiring points", chunk.size());
+    }
+}
@@ -0,0 +1,240 @@
+package me.zhc1.pointsystem.service;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+// Reads partner lines of the form username,amount,yyyy-MM-dd straight from a memory-mapped file.
+// Amounts and dates are parsed from the mapped bytes, so the usernames, which the lookup needs as strings,
+// are the only objects made per line. The file is mapped one window at a time, and a line cut off by the end
+// of a window is read again from the start of the next one.
+final class PartnerFileReader {
+    static final int DEFAULT_WINDOW_SIZE = 1 << 30;
+    static final int MAX_USERNAME_BYTES = 255;
+
+    private static final int MAX_AMOUNT_DIGITS = 18;
+    private static final int DATE_LENGTH = 10;
+
+    private final FileChannel channel;
+    private final long size;
+    private final int windowSize;
+    private final byte[] username = new byte[MAX_USERNAME_BYTES];
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int position;
+
+    PartnerFileReader(FileChannel channel, long from, int windowSize) throws IOException {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("Window size must be positive");
+        }
+
+        this.channel = channel;
+        this.size = channel.size();
+        this.windowSize = windowSize;
+        map(Math.min(from, size));
+    }
+
+    // Byte offset just past the last line read
+    long offset() {
+        return windowStart + position;
+    }
+
+    // Fills the chunk with the lines after the previous one; false once there are no lines left
+    boolean fill(Chunk chunk) throws IOException {
+        long startOffset = offset();
+        chunk.clear();
+        while (!chunk.isFull() && offset() < size) {
+            int lineEnd = indexOf((byte) '\n', position, window.limit());
+            if (lineEnd < 0) {
+                if (windowStart + window.limit() < size) {
+                    if (position == 0) {
+                        throw new IllegalStateException("Line at byte %s is longer than the window of %s bytes"
+                                .formatted(windowStart, windowSize));
+                    }
+                    map(offset());
+                    continue;
+                }
+                // The last line of the file may end without a newline
+                lineEnd = window.limit();
+            }
+
+            int next = Math.min(lineEnd + 1, window.limit());
+            parseLine(position, lineEnd, windowStart + next, chunk);
+            position = next;
+        }
+        chunk.endOffset = offset();
+        return chunk.endOffset > startOffset;
+    }
+
+    private void map(long from) throws IOException {
+        windowStart = from;
+        position = 0;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, from, Math.min(windowSize, size - from));
+    }
+
+    private void parseLine(int start, int end, long endOffset, Chunk chunk) {
+        if (end > start && window.get(end - 1) == '\r') {
+            end--;
+        }
+        if (end == start) {
+            return;
+        }
+
+        chunk.lines++;
+        int firstComma = indexOf((byte) ',', start, end);
+        int secondComma = firstComma < 0 ? -1 : indexOf((byte) ',', firstComma + 1, end);
+        int usernameLength = firstComma - start;
+        if (secondComma < 0 || usernameLength <= 0 || usernameLength > MAX_USERNAME_BYTES) {
+            chunk.invalid++;
+            return;
+        }
+
+        long amount = parseAmount(firstComma + 1, secondComma);
+        long expiryDay = parseDate(secondComma + 1, end);
+        if (amount <= 0 || expiryDay == Long.MIN_VALUE) {
+            chunk.invalid++;
+            return;
+        }
+
+        window.get(start, username, 0, usernameLength);
+        chunk.add(new String(username, 0, usernameLength, StandardCharsets.UTF_8), amount, expiryDay, endOffset);
+    }
+
+    // -1 unless the bytes are plain digits
+    private long parseAmount(int start, int end) {
+        if (end <= start || end - start > MAX_AMOUNT_DIGITS) {
+            return -1;
+        }
+
+        long amount = 0;
+        for (int i = start; i < end; i++) {
+            int digit = window.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            amount = amount * 10 + digit;
+        }
+        return amount;
+    }
+
+    // Epoch day of a yyyy-MM-dd date, Long.MIN_VALUE if it is not one
+    private long parseDate(int start, int end) {
+        if (end - start != DATE_LENGTH || window.get(start + 4) != '-' || window.get(start + 7) != '-') {
+            return Long.MIN_VALUE;
+        }
+
+        int year = parseDigits(start, start + 4);
+        int month = parseDigits(start + 5, start + 7);
+        int day = parseDigits(start + 8, start + 10);
+        if (year < 0 || month < 0 || day < 0) {
+            return Long.MIN_VALUE;
+        }
+        try {
+            return LocalDate.of(year, month, day).toEpochDay();
+        } catch (DateTimeException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private int parseDigits(int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = window.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private int indexOf(byte target, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (window.get(i) == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // The valid records of a run of lines, reused from chunk to chunk
+    static final class Chunk {
+        private final String[] usernames;
+        private final long[] amounts;
+        private final long[] expiryDays;
+        private final long[] endOffsets;
+        private int size;
+        private int lines;
+        private int invalid;
+        private long endOffset;
+
+        Chunk(int capacity) {
+            if (capacity <= 0) {
+                throw new IllegalArgumentException("Chunk capacity must be positive");
+            }
+
+            usernames = new String[capacity];
+            amounts = new long[capacity];
+            expiryDays = new long[capacity];
+            endOffsets = new long[capacity];
+        }
+
+        int size() {
+            return size;
+        }
+
+        // Non-blank lines read, valid or not
+        int lines() {
+            return lines;
+        }
+
+        int invalid() {
+            return invalid;
+        }
+
+        // Byte offset just past the last line of the chunk
+        long endOffset() {
+            return endOffset;
+        }
+
+        String username(int index) {
+            return usernames[index];
+        }
+
+        long amount(int index) {
+            return amounts[index];
+        }
+
+        long expiryDay(int index) {
+            return expiryDays[index];
+        }
+
+        // Byte offset just past the record's line
+        long endOffset(int index) {
+            return endOffsets[index];
+        }
+
+        private boolean isFull() {
+            return lines == usernames.length;
+        }
+
+        private void clear() {
+            Arrays.fill(usernames, 0, size, null);
+            size = 0;
+            lines = 0;
+            invalid = 0;
+        }
+
+        private void add(String username, long amount, long expiryDay, long lineEndOffset) {
+            usernames[size] = username;
+            amounts[size] = amount;
+            expiryDays[size] = expiryDay;
+            endOffsets[size] = lineEndOffset;
+            size++;
+        }
+    }
+}
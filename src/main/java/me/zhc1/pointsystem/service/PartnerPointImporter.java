@@ -0,0 +1,342 @@
+package me.zhc1.pointsystem.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+import java.util.zip.CRC32C;
+
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+import me.zhc1.pointsystem.config.PartnerImportProperties;
+import me.zhc1.pointsystem.entity.JobCheckpoint;
+import me.zhc1.pointsystem.entity.PointBlock;
+import me.zhc1.pointsystem.entity.PointType;
+import me.zhc1.pointsystem.repository.JobCheckpointRepository;
+import me.zhc1.pointsystem.repository.UserIdentity;
+import me.zhc1.pointsystem.repository.UserRepository;
+
+// Imports a partner's nightly file of username,amount,yyyy-MM-dd lines as PARTNER points that expire when the
+// given day ends. Chunks of lines are parsed from the mapped file and their usernames resolved with one query
+// per slice; the records are then split by shard and by user id into partitions, which write their blocks and
+// ledger events through the bulk earner in parallel while the next chunk is parsed.
+// Each partition saves the byte offset it has reached in the transaction that writes its records, so a crashed
+// import resumes from the lowest offset and every partition skips the lines it already wrote. A finished file
+// keeps its checkpoints at its end, which makes importing it again a no-op. Checkpoints are keyed on the file's
+// size, modification time and content checksum rather than its name, since partners send a file of the same name
+// every night. Like a backfill, it expects no shard move while it runs, since a moved user's lines would be judged
+// by the checkpoints of the new shard.
+@Slf4j
+@Component
+public class PartnerPointImporter {
+    private static final String JOB_NAME = "partner-import";
+    private static final int RESOLVE_BATCH_SIZE = 1000;
+    private static final int CHECKSUM_BUFFER_SIZE = 1 << 20;
+
+    private final UserRepository userRepository;
+    private final JobCheckpointRepository jobCheckpointRepository;
+    private final PointBulkEarner pointBulkEarner;
+    private final PointConcurrencyGuard concurrencyGuard;
+    private final ShardRouter shardRouter;
+    private final int chunkSize;
+    private final int partitions;
+    private final int parallelism;
+
+    public PartnerPointImporter(
+            UserRepository userRepository,
+            JobCheckpointRepository jobCheckpointRepository,
+            PointBulkEarner pointBulkEarner,
+            PointConcurrencyGuard concurrencyGuard,
+            ShardRouter shardRouter,
+            PartnerImportProperties properties) {
+        if (properties.chunkSize() <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        if (properties.partitions() <= 0) {
+            throw new IllegalArgumentException("Partitions must be positive");
+        }
+        if (properties.parallelism() <= 0) {
+            throw new IllegalArgumentException("Import parallelism must be positive");
+        }
+
+        this.userRepository = userRepository;
+        this.jobCheckpointRepository = jobCheckpointRepository;
+        this.pointBulkEarner = pointBulkEarner;
+        this.concurrencyGuard = concurrencyGuard;
+        this.shardRouter = shardRouter;
+        this.chunkSize = properties.chunkSize();
+        this.partitions = properties.partitions();
+        this.parallelism = properties.parallelism();
+    }
+
+    public ImportResult importFile(Path file) {
+        return importFile(file, PartnerFileReader.DEFAULT_WINDOW_SIZE);
+    }
+
+    ImportResult importFile(Path file, int windowSize) {
+        long startedAt = System.nanoTime();
+        String jobName = jobName(file);
+        List<long[]> checkpoints = shardRouter.onEachShard(shard -> readCheckpoints(jobName));
+        long resumeAt = Long.MAX_VALUE;
+        for (long[] positions : checkpoints) {
+            for (long position : positions) {
+                resumeAt = Math.min(resumeAt, position);
+            }
+        }
+        if (resumeAt > 0) {
+            log.info("Resuming partner import of {} at byte {}", file, resumeAt);
+        }
+
+        List<Semaphore> running = new ArrayList<>(shardRouter.shardCount());
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            running.add(new Semaphore(parallelism));
+        }
+
+        Counts counts = new Counts();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+                ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            PartnerFileReader reader = new PartnerFileReader(channel, resumeAt, windowSize);
+            PartnerFileReader.Chunk chunk = new PartnerFileReader.Chunk(chunkSize);
+            List<Future<Integer>> inFlight = List.of();
+            while (reader.fill(chunk)) {
+                counts.lines += chunk.lines();
+                counts.invalid += chunk.invalid();
+                List<List<List<Grant>>> grants = partition(chunk, resolve(chunk), checkpoints, counts);
+
+                // A partition writes its next chunk only after its previous one, so its checkpoint only grows
+                counts.imported += await(inFlight);
+                inFlight = submit(executor, running, jobName, grants, chunk.endOffset());
+            }
+            counts.imported += await(inFlight);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read partner file " + file, e);
+        }
+
+        ImportResult result = new ImportResult(
+                counts.lines,
+                counts.imported,
+                counts.invalid,
+                counts.written - counts.imported + counts.unknownUsers,
+                resumeAt,
+                Duration.ofNanos(System.nanoTime() - startedAt));
+        log.info(
+                "Imported {} of {} partner lines from {} ({} invalid, {} of unknown users), took {} ms ({} imported/s)",
+                result.imported(),
+                result.lines(),
+                file,
+                result.invalid(),
+                result.unknownUsers(),
+                result.elapsed().toMillis(),
+                Math.round(result.recordsPerSecond()));
+        return result;
+    }
+
+    // One delivery of a file: a file resent under the same name, or rewritten in place, gets checkpoints of its own
+    static String jobName(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            CRC32C checksum = new CRC32C();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(CHECKSUM_BUFFER_SIZE);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                checksum.update(buffer);
+                buffer.clear();
+            }
+            return "%s:%d:%d:%08x"
+                    .formatted(
+                            JOB_NAME,
+                            channel.size(),
+                            Files.getLastModifiedTime(file).toMillis(),
+                            checksum.getValue());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read partner file " + file, e);
+        }
+    }
+
+    // Positions of this shard's partitions, 0 for those that have not started
+    private long[] readCheckpoints(String jobName) {
+        long[] positions = new long[partitions];
+        for (int partition = 0; partition < partitions; partition++) {
+            positions[partition] = jobCheckpointRepository
+                    .findById(checkpointName(jobName, partition))
+                    .map(JobCheckpoint::getPosition)
+                    .orElse(0L);
+        }
+        return positions;
+    }
+
+    // Every user is registered on shard 0
+    private Map<String, Integer> resolve(PartnerFileReader.Chunk chunk) {
+        Set<String> usernames = new LinkedHashSet<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            usernames.add(chunk.username(i));
+        }
+
+        List<String> distinct = List.copyOf(usernames);
+        Map<String, Integer> userIds = new HashMap<>(distinct.size() * 2);
+        shardRouter.onShard(0, () -> {
+            for (int from = 0; from < distinct.size(); from += RESOLVE_BATCH_SIZE) {
+                List<String> batch = distinct.subList(from, Math.min(from + RESOLVE_BATCH_SIZE, distinct.size()));
+                for (UserIdentity identity : userRepository.findIdentities(batch)) {
+                    userIds.put(identity.username(), identity.userId());
+                }
+            }
+            return null;
+        });
+        return userIds;
+    }
+
+    // Grants by shard and partition, leaving out lines their partition already wrote before a crash
+    private List<List<List<Grant>>> partition(
+            PartnerFileReader.Chunk chunk, Map<String, Integer> userIds, List<long[]> checkpoints, Counts counts) {
+        List<List<List<Grant>>> grants = new ArrayList<>(shardRouter.shardCount());
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            List<List<Grant>> shardGrants = new ArrayList<>(partitions);
+            for (int partition = 0; partition < partitions; partition++) {
+                shardGrants.add(new ArrayList<>());
+            }
+            grants.add(shardGrants);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        long cachedDay = Long.MIN_VALUE;
+        LocalDateTime expiresAt = null;
+        for (int i = 0; i < chunk.size(); i++) {
+            Integer userId = userIds.get(chunk.username(i));
+            if (userId == null) {
+                counts.unknownUsers++;
+                continue;
+            }
+
+            // Lines of one file mostly share a few expiry days
+            if (chunk.expiryDay(i) != cachedDay) {
+                cachedDay = chunk.expiryDay(i);
+                expiresAt = LocalDate.ofEpochDay(cachedDay).plusDays(1).atStartOfDay();
+            }
+            if (!expiresAt.isAfter(now)) {
+                counts.invalid++;
+                continue;
+            }
+
+            int shard = shardRouter.shardOf(userId);
+            int partition = Math.floorMod(userId, partitions);
+            if (chunk.endOffset(i) <= checkpoints.get(shard)[partition]) {
+                continue;
+            }
+            grants.get(shard).get(partition).add(new Grant(userId, chunk.amount(i), expiresAt, PointType.PARTNER));
+            counts.written++;
+        }
+        return grants;
+    }
+
+    private List<Future<Integer>> submit(
+            ExecutorService executor,
+            List<Semaphore> running,
+            String jobName,
+            List<List<List<Grant>>> grants,
+            long endOffset) {
+        List<Future<Integer>> futures = new ArrayList<>(grants.size() * partitions);
+        for (int shard = 0; shard < grants.size(); shard++) {
+            int target = shard;
+            for (int partition = 0; partition < partitions; partition++) {
+                List<Grant> partitionGrants = grants.get(shard).get(partition);
+                String checkpointName = checkpointName(jobName, partition);
+                futures.add(executor.submit(() -> {
+                    running.get(target).acquire();
+                    try {
+                        return write(target, partitionGrants, checkpointName, endOffset);
+                    } finally {
+                        running.get(target).release();
+                    }
+                }));
+            }
+        }
+        return futures;
+    }
+
+    // Partitions without records still move their checkpoint, or they would hold the resume offset back.
+    // Returns how many grants found their user on the shard.
+    private int write(int shard, List<Grant> grants, String checkpointName, long endOffset) {
+        Supplier<Integer> work = () -> concurrencyGuard.execute(() -> {
+            int imported = 0;
+            if (!grants.isEmpty()) {
+                for (PointBlock block : pointBulkEarner.insert(grants)) {
+                    if (block != null) {
+                        imported++;
+                    }
+                }
+            }
+
+            JobCheckpoint checkpoint = new JobCheckpoint();
+            checkpoint.setJobName(checkpointName);
+            checkpoint.setPosition(endOffset);
+            checkpoint.setUpdatedAt(LocalDateTime.now());
+            jobCheckpointRepository.save(checkpoint);
+            return imported;
+        });
+        if (grants.isEmpty()) {
+            return shardRouter.onShard(shard, work);
+        }
+        // Holds the buckets of the partition's users, so none of them can move while it writes
+        return shardRouter.forUsers(grants.stream().map(Grant::userId).toList(), work);
+    }
+
+    private static int await(List<Future<Integer>> futures) {
+        int imported = 0;
+        try {
+            for (Future<Integer> future : futures) {
+                imported += future.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Partner import failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while importing partner points", e);
+        }
+        return imported;
+    }
+
+    private static String checkpointName(String jobName, int partition) {
+        return jobName + ":" + partition;
+    }
+
+    private static final class Counts {
+        private long lines;
+        private long imported;
+        private long invalid;
+        private long unknownUsers;
+        private long written;
+    }
+
+    // invalid counts malformed lines and lines that had already expired; resumedAt is the byte offset the import
+    // started reading from. Throughput counts only the records written, not the lines skipped or rejected.
+    public record ImportResult(
+            long lines, long imported, long invalid, long unknownUsers, long resumedAt, Duration elapsed) {
+        public double recordsPerSecond() {
+            long nanos = Math.max(elapsed.toNanos(), 1);
+            return imported * 1_000_000_000.0 / nanos;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package me.zhc1.pointsystem.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+import me.zhc1.pointsystem.config.ArchiveProperties;
+import me.zhc1.pointsystem.repository.ArchiveRepository;
+
+// Keeps the hot tables to what spends, expiry and cancellation can still touch. Usages past the retention move
+// to the archive tables with their details first; blocks with nothing left that no live usage refers to follow.
+// Works in keyset-ordered chunks, one transaction per chunk, and every shard is swept in parallel.
+// Archived usages stay readable through the usage history, but can no longer be canceled.
+@Slf4j
+@Component
+public class PointArchiveJob {
+    private final ArchiveRepository archiveRepository;
+    private final PointConcurrencyGuard concurrencyGuard;
+    private final ShardRouter shardRouter;
+    private final Duration retention;
+    private final int chunkSize;
+    private final Duration pauseBetweenChunks;
+
+    public PointArchiveJob(
+            ArchiveRepository archiveRepository,
+            PointConcurrencyGuard concurrencyGuard,
+            ShardRouter shardRouter,
+            ArchiveProperties properties) {
+        if (properties.chunkSize() <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        if (properties.retention().isNegative() || properties.retention().isZero()) {
+            throw new IllegalArgumentException("Retention must be positive");
+        }
+
+        this.archiveRepository = archiveRepository;
+        this.concurrencyGuard = concurrencyGuard;
+        this.shardRouter = shardRouter;
+        this.retention = properties.retention();
+        this.chunkSize = properties.chunkSize();
+        this.pauseBetweenChunks = properties.pauseBetweenChunks();
+    }
+
+    @Scheduled(cron = "${point.archive.cron}")
+    public ArchiveResult run() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime cutoff = now.minus(retention);
+        long startedAt = System.nanoTime();
+
+        long usages = 0;
+        long blocks = 0;
+        for (ArchiveResult shardResult : shardRouter.onEachShard(shard -> runShard(cutoff, now))) {
+            usages += shardResult.usages();
+            blocks += shardResult.blocks();
+        }
+
+        ArchiveResult result = new ArchiveResult(usages, blocks, Duration.ofNanos(System.nanoTime() - startedAt));
+        log.info(
+                "Archived {} usages and {} blocks older than {}, took {} ms",
+                result.usages(),
+                result.blocks(),
+                cutoff,
+                result.elapsed().toMillis());
+        return result;
+    }
+
+    private ArchiveResult runShard(LocalDateTime cutoff, LocalDateTime now) {
+        long startedAt = System.nanoTime();
+
+        // Usages go first, so the blocks they used up are no longer referenced when blocks are swept
+        long usages = sweep(
+                (afterUsageId, limit) -> archiveRepository.lockArchivableUsages(afterUsageId, cutoff, limit),
+                usageIds -> archiveRepository.archiveUsages(usageIds, now));
+        long blocks = sweep(
+                (afterBlockId, limit) -> archiveRepository.lockArchivableBlocks(afterBlockId, cutoff, limit),
+                blockIds -> archiveRepository.archiveBlocks(blockIds, now));
+
+        return new ArchiveResult(usages, blocks, Duration.ofNanos(System.nanoTime() - startedAt));
+    }
+
+    private long sweep(BiFunction<Integer, Integer, List<Integer>> lock, Consumer<List<Integer>> archive) {
+        long archived = 0;
+        int afterId = 0;
+        while (true) {
+            int cursor = afterId;
+            List<Integer> ids = concurrencyGuard.execute(() -> {
+                List<Integer> locked = lock.apply(cursor, chunkSize);
+                if (!locked.isEmpty()) {
+                    archive.accept(locked);
+                }
+                return locked;
+            });
+            if (ids == null || ids.isEmpty()) {
+                return archived;
+            }
+
+            archived += ids.size();
+            afterId = ids.getLast();
+            pause();
+        }
+    }
+
+    private void pause() {
+        if (pauseBetweenChunks.isZero()) {
+            return;
+        }
+
+        try {
+            Thread.sleep(pauseBetweenChunks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while archiving points", e);
+        }
+    }
+
+    public record ArchiveResult(long usages, long blocks, Duration elapsed) {}
+}
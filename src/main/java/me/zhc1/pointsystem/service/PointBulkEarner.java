@@ -0,0 +1,228 @@
+package me.zhc1.pointsystem.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+import me.zhc1.pointsystem.config.BulkEarnProperties;
+import me.zhc1.pointsystem.entity.PointBlock;
+import me.zhc1.pointsystem.entity.PointEventType;
+import me.zhc1.pointsystem.entity.User;
+import me.zhc1.pointsystem.repository.ExpiryBucketChange;
+import me.zhc1.pointsystem.repository.ExpiryBucketRepository;
+import me.zhc1.pointsystem.repository.ExpiryHintRepository;
+import me.zhc1.pointsystem.repository.LedgerEntry;
+import me.zhc1.pointsystem.repository.LiabilityChange;
+import me.zhc1.pointsystem.repository.LiabilityRepository;
+import me.zhc1.pointsystem.repository.PointBlockRepository;
+import me.zhc1.pointsystem.repository.UserRepository;
+import me.zhc1.pointsystem.service.BulkEarnResult.GrantFailure;
+
+// Applies grants in chunks, one transaction per chunk.
+// Users are resolved with one query per chunk, and blocks and their EARN events are inserted with JDBC batching.
+// A chunk that fails as a whole is replayed grant by grant to find out which grants are at fault.
+// Grants are grouped by the shard of their user and the shards are written in parallel.
+@Slf4j
+@Component
+public class PointBulkEarner {
+    private final UserRepository userRepository;
+    private final PointBlockRepository pointBlockRepository;
+    private final ExpiryHintRepository expiryHintRepository;
+    private final ExpiryBucketRepository expiryBucketRepository;
+    private final LiabilityRepository liabilityRepository;
+    private final PointLedger pointLedger;
+    private final PointConcurrencyGuard concurrencyGuard;
+    private final ShardRouter shardRouter;
+    private final BlockHeapCache blockHeapCache;
+    private final int chunkSize;
+
+    public PointBulkEarner(
+            UserRepository userRepository,
+            PointBlockRepository pointBlockRepository,
+            ExpiryHintRepository expiryHintRepository,
+            ExpiryBucketRepository expiryBucketRepository,
+            LiabilityRepository liabilityRepository,
+            PointLedger pointLedger,
+            PointConcurrencyGuard concurrencyGuard,
+            ShardRouter shardRouter,
+            BlockHeapCache blockHeapCache,
+            BulkEarnProperties properties) {
+        if (properties.chunkSize() <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+
+        this.userRepository = userRepository;
+        this.pointBlockRepository = pointBlockRepository;
+        this.expiryHintRepository = expiryHintRepository;
+        this.expiryBucketRepository = expiryBucketRepository;
+        this.liabilityRepository = liabilityRepository;
+        this.pointLedger = pointLedger;
+        this.concurrencyGuard = concurrencyGuard;
+        this.shardRouter = shardRouter;
+        this.blockHeapCache = blockHeapCache;
+        this.chunkSize = properties.chunkSize();
+    }
+
+    public BulkEarnResult earn(Collection<Grant> grants) {
+        long startedAt = System.nanoTime();
+        List<GrantFailure> failures = new ArrayList<>();
+        List<List<IndexedGrant>> grantsByShard = new ArrayList<>(shardRouter.shardCount());
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            grantsByShard.add(new ArrayList<>());
+        }
+
+        int index = 0;
+        for (Grant grant : grants) {
+            String invalidReason = validate(grant);
+            if (invalidReason != null) {
+                failures.add(new GrantFailure(index, grant.userId(), invalidReason));
+            } else {
+                grantsByShard.get(shardRouter.shardOf(grant.userId())).add(new IndexedGrant(index, grant));
+            }
+            index++;
+        }
+
+        int succeeded = 0;
+        for (ShardOutcome outcome : shardRouter.onEachShard(shard -> applyShard(grantsByShard.get(shard)))) {
+            succeeded += outcome.succeeded();
+            failures.addAll(outcome.failures());
+        }
+
+        long elapsedMillis = (System.nanoTime() - startedAt) / 1_000_000;
+        log.info("Applied {} of {} grants in {} ms, {} failed", succeeded, index, elapsedMillis, failures.size());
+        return new BulkEarnResult(index, succeeded, failures);
+    }
+
+    private ShardOutcome applyShard(List<IndexedGrant> grants) {
+        List<GrantFailure> failures = new ArrayList<>();
+        int succeeded = 0;
+        for (int from = 0; from < grants.size(); from += chunkSize) {
+            succeeded += applyChunk(grants.subList(from, Math.min(from + chunkSize, grants.size())), failures);
+        }
+        return new ShardOutcome(succeeded, failures);
+    }
+
+    private int applyChunk(List<IndexedGrant> chunk, List<GrantFailure> failures) {
+        try {
+            List<GrantFailure> missingUsers = concurrencyGuard.execute(() -> insertChunk(chunk));
+            failures.addAll(missingUsers);
+            return chunk.size() - missingUsers.size();
+        } catch (RuntimeException e) {
+            if (chunk.size() == 1) {
+                IndexedGrant failed = chunk.getFirst();
+                failures.add(new GrantFailure(failed.index(), failed.grant().userId(), e.getMessage()));
+                return 0;
+            }
+
+            log.warn("Chunk of {} grants failed, retrying one by one: {}", chunk.size(), e.getMessage());
+            int succeeded = 0;
+            for (IndexedGrant grant : chunk) {
+                succeeded += applyChunk(List.of(grant), failures);
+            }
+            return succeeded;
+        }
+    }
+
+    private List<GrantFailure> insertChunk(List<IndexedGrant> chunk) {
+        List<PointBlock> pointBlocks = insert(chunk.stream().map(IndexedGrant::grant).toList());
+
+        List<GrantFailure> missingUsers = new ArrayList<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            if (pointBlocks.get(i) == null) {
+                IndexedGrant indexed = chunk.get(i);
+                missingUsers.add(new GrantFailure(indexed.index(), indexed.grant().userId(), "User not found"));
+            }
+        }
+        return missingUsers;
+    }
+
+    // Inserts valid grants in the current transaction. The result is aligned with the grants and holds null
+    // where the user does not exist.
+    List<PointBlock> insert(List<Grant> grants) {
+        Map<Integer, User> users = userRepository
+                .findAllById(grants.stream().map(Grant::userId).collect(Collectors.toSet()))
+                .stream()
+                .collect(Collectors.toMap(User::getUserId, Function.identity()));
+
+        LocalDateTime now = LocalDateTime.now();
+        List<PointBlock> created = new ArrayList<>(grants.size());
+        List<PointBlock> pointBlocks = new ArrayList<>(grants.size());
+        for (Grant grant : grants) {
+            User user = users.get(grant.userId());
+            if (user == null) {
+                created.add(null);
+                continue;
+            }
+
+            PointBlock pointBlock = new PointBlock();
+            pointBlock.setUser(user);
+            pointBlock.setPointType(grant.pointType());
+            pointBlock.setAmount(grant.amount());
+            pointBlock.setRemainingAmount(grant.amount());
+            pointBlock.setEarnedAt(now);
+            pointBlock.setExpiresAt(grant.expiresAt());
+            created.add(pointBlock);
+            pointBlocks.add(pointBlock);
+        }
+
+        // Sequence ids are assigned on persist, so the events can reference the blocks before they are flushed
+        pointBlockRepository.saveAll(pointBlocks);
+        for (PointBlock block : pointBlocks) {
+            blockHeapCache.earnedAfterCommit(
+                    block.getUser().getUserId(),
+                    block.getBlockId(),
+                    block.getPointType(),
+                    block.getEarnedAt().toLocalDate(),
+                    block.getExpiresAt(),
+                    block.getAmount());
+        }
+        // One hint update per user, however many grants the user got
+        expiryHintRepository.lowerNextExpiries(pointBlocks.stream()
+                .collect(Collectors.toMap(
+                        block -> block.getUser().getUserId(),
+                        PointBlock::getExpiresAt,
+                        BinaryOperator.minBy(Comparator.naturalOrder()))));
+        expiryBucketRepository.applyAll(pointBlocks.stream()
+                .map(block -> ExpiryBucketChange.of(
+                        block.getUser().getUserId(), block.getExpiresAt(), block.getAmount()))
+                .toList());
+        // All blocks of a chunk share their earn time, so this is one row per slot
+        liabilityRepository.applyAll(pointBlocks.stream()
+                .map(block -> LiabilityChange.earned(block.getUser().getUserId(), now, block.getAmount()))
+                .toList());
+        pointLedger.appendAll(pointBlocks.stream()
+                .map(block -> new LedgerEntry(
+                        block.getUser().getUserId(),
+                        PointEventType.EARN,
+                        block.getAmount(),
+                        block.getBlockId(),
+                        null,
+                        now))
+                .toList());
+        return created;
+    }
+
+    static String validate(Grant grant) {
+        if (grant.amount() <= 0) {
+            return "Amount must be positive";
+        }
+        if (grant.expiresAt() == null) {
+            return "Expiration date is required";
+        }
+        return null;
+    }
+
+    private record IndexedGrant(int index, Grant grant) {}
+
+    private record ShardOutcome(int succeeded, List<GrantFailure> failures) {}
+}
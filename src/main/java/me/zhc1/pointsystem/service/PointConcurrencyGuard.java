@@ -0,0 +1,141 @@
+package me.zhc1.pointsystem.service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+
+import me.zhc1.pointsystem.config.ConcurrencyProperties;
+
+// Runs a unit of work for a single user in its own transaction.
+// Conflicting writers are detected by the @Version columns and retried a bounded number of times,
+// and optionally serialized per user with a striped lock so hot users queue in memory instead of in the database.
+// Work for a user runs on the shard that owns the user.
+@Slf4j
+@Component
+public class PointConcurrencyGuard {
+    private final TransactionTemplate transactionTemplate;
+    private final ConcurrencyProperties properties;
+    private final ReentrantLock[] stripes;
+    private final PointMetrics pointMetrics;
+    private final ShardRouter shardRouter;
+
+    public PointConcurrencyGuard(
+            TransactionTemplate transactionTemplate,
+            ConcurrencyProperties properties,
+            PointMetrics pointMetrics,
+            ShardRouter shardRouter) {
+        if (properties.lockStripes() <= 0) {
+            throw new IllegalArgumentException("Lock stripes must be positive");
+        }
+        if (properties.maxAttempts() <= 0) {
+            throw new IllegalArgumentException("Max attempts must be positive");
+        }
+
+        this.transactionTemplate = transactionTemplate;
+        this.properties = properties;
+        this.pointMetrics = pointMetrics;
+        this.shardRouter = shardRouter;
+        this.stripes = new ReentrantLock[properties.lockStripes()];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public <T> T execute(int userId, Supplier<T> work) {
+        return shardRouter.forUser(userId, () -> executeLocked(userId, work));
+    }
+
+    private <T> T executeLocked(int userId, Supplier<T> work) {
+        if (!properties.lockStriping()) {
+            return execute(work);
+        }
+
+        ReentrantLock lock = stripes[Math.floorMod(userId, stripes.length)];
+        lock.lock();
+        try {
+            return execute(work);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Runs a unit of work for several users in one transaction, holding all of their stripes.
+    // Every caller takes stripes in ascending order and single-user work holds just one, so no two units
+    // can each hold a stripe the other waits for.
+    public <T> T execute(Collection<Integer> userIds, Supplier<T> work) {
+        return shardRouter.forUsers(userIds, () -> executeLocked(userIds, work));
+    }
+
+    private <T> T executeLocked(Collection<Integer> userIds, Supplier<T> work) {
+        if (!properties.lockStriping()) {
+            return execute(work);
+        }
+
+        int[] stripeIndexes = userIds.stream()
+                .mapToInt(userId -> Math.floorMod(userId, stripes.length))
+                .distinct()
+                .sorted()
+                .toArray();
+        int locked = 0;
+        try {
+            for (int stripe : stripeIndexes) {
+                stripes[stripe].lock();
+                locked++;
+            }
+            return execute(work);
+        } finally {
+            while (locked > 0) {
+                stripes[stripeIndexes[--locked]].unlock();
+            }
+        }
+    }
+
+    public void executeWithoutResult(int userId, Runnable work) {
+        execute(userId, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    // For batch work spanning many users, which relies on the database alone to detect conflicts.
+    // Runs on the current shard, so callers pick it with ShardRouter first.
+    public <T> T execute(Supplier<T> work) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> work.get());
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= properties.maxAttempts()) {
+                    pointMetrics.recordRetriesExhausted();
+                    throw e;
+                }
+
+                pointMetrics.recordRetry();
+                log.debug("Concurrency conflict on attempt {}, retrying: {}", attempt, e.getMessage());
+                backoff(attempt);
+            }
+        }
+    }
+
+    private void backoff(int attempt) {
+        long maxNanos = properties.retryBackoff().toNanos() * attempt;
+        if (maxNanos <= 0) {
+            return;
+        }
+
+        try {
+            // Jitter keeps retrying writers from colliding again in lockstep
+            Thread.sleep(Duration.ofNanos(ThreadLocalRandom.current().nextLong(maxNanos / 2, maxNanos + 1)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to retry", e);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package me.zhc1.pointsystem.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+
+import me.zhc1.pointsystem.config.ExpirationProperties;
+import me.zhc1.pointsystem.entity.JobCheckpoint;
+import me.zhc1.pointsystem.entity.PointEventType;
+import me.zhc1.pointsystem.repository.ExpiringBlock;
+import me.zhc1.pointsystem.repository.ExpiryBucketChange;
+import me.zhc1.pointsystem.repository.ExpiryBucketRepository;
+import me.zhc1.pointsystem.repository.JobCheckpointRepository;
+import me.zhc1.pointsystem.repository.LedgerEntry;
+import me.zhc1.pointsystem.repository.LiabilityChange;
+import me.zhc1.pointsystem.repository.LiabilityRepository;
+import me.zhc1.pointsystem.repository.PointBatchRepository;
+
+// Background compactor for blocks that expired without their owner looking, since balances
+// no longer depend on it (see UserPointExpirer). Works in keyset-ordered chunks, one transaction per chunk.
+// Each chunk zeroes its blocks in one batch, appends one EXPIRE event per block in one batch,
+// and records its last block id as a checkpoint, so an interrupted run resumes where it stopped.
+// Every shard is swept in parallel and keeps its own checkpoint.
+@Slf4j
+@Component
+public class PointExpirationJob {
+    static final String JOB_NAME = "point-expiration";
+
+    private final PointBatchRepository pointBatchRepository;
+    private final ExpiryBucketRepository expiryBucketRepository;
+    private final LiabilityRepository liabilityRepository;
+    private final JobCheckpointRepository jobCheckpointRepository;
+    private final PointLedger pointLedger;
+    private final PointConcurrencyGuard concurrencyGuard;
+    private final TransactionTemplate transactionTemplate;
+    private final PointMetrics pointMetrics;
+    private final ShardRouter shardRouter;
+    private final int chunkSize;
+    private final Duration pauseBetweenChunks;
+
+    public PointExpirationJob(
+            PointBatchRepository pointBatchRepository,
+            ExpiryBucketRepository expiryBucketRepository,
+            LiabilityRepository liabilityRepository,
+            JobCheckpointRepository jobCheckpointRepository,
+            PointLedger pointLedger,
+            PointConcurrencyGuard concurrencyGuard,
+            TransactionTemplate transactionTemplate,
+            PointMetrics pointMetrics,
+            ShardRouter shardRouter,
+            ExpirationProperties properties) {
+        if (properties.chunkSize() <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+
+        this.pointBatchRepository = pointBatchRepository;
+        this.expiryBucketRepository = expiryBucketRepository;
+        this.liabilityRepository = liabilityRepository;
+        this.jobCheckpointRepository = jobCheckpointRepository;
+        this.pointLedger = pointLedger;
+        this.concurrencyGuard = concurrencyGuard;
+        this.transactionTemplate = transactionTemplate;
+        this.pointMetrics = pointMetrics;
+        this.shardRouter = shardRouter;
+        this.chunkSize = properties.chunkSize();
+        this.pauseBetweenChunks = properties.pauseBetweenChunks();
+    }
+
+    public ExpirationResult run() {
+        LocalDateTime now = LocalDateTime.now();
+        long startedAt = System.nanoTime();
+
+        long chunks = 0;
+        long blocks = 0;
+        long points = 0;
+        for (ExpirationResult shardResult : shardRouter.onEachShard(shard -> runShard(shard, now))) {
+            chunks += shardResult.chunks();
+            blocks += shardResult.blocks();
+            points += shardResult.points();
+        }
+
+        ExpirationResult result =
+                new ExpirationResult(chunks, blocks, points, Duration.ofNanos(System.nanoTime() - startedAt));
+        log.info(
+                "Expired {} points from {} blocks in {} chunks, took {} ms ({} rows/s)",
+                result.points(),
+                result.blocks(),
+                result.chunks(),
+                result.elapsed().toMillis(),
+                Math.round(result.rowsPerSecond()));
+        return result;
+    }
+
+    private ExpirationResult runShard(int shard, LocalDateTime now) {
+        long startedAt = System.nanoTime();
+
+        int afterBlockId = (int) jobCheckpointRepository
+                .findById(JOB_NAME)
+                .map(JobCheckpoint::getPosition)
+                .orElse(0L);
+        if (afterBlockId > 0) {
+            log.info("Resuming point expiration on shard {} after block id {}", shard, afterBlockId);
+        }
+
+        long chunks = 0;
+        long blocks = 0;
+        long points = 0;
+        while (true) {
+            int cursor = afterBlockId;
+            long chunkStartedAt = System.nanoTime();
+            ChunkResult chunk = concurrencyGuard.execute(() -> expireChunk(cursor, now));
+            if (chunk == null || chunk.blocks() == 0) {
+                break;
+            }
+            pointMetrics.recordExpirationChunk(chunk.blocks(), System.nanoTime() - chunkStartedAt);
+
+            chunks++;
+            blocks += chunk.blocks();
+            points += chunk.points();
+            afterBlockId = chunk.lastBlockId();
+            pause();
+        }
+
+        // A completed run starts from the beginning next time
+        transactionTemplate.executeWithoutResult(status -> jobCheckpointRepository.deleteById(JOB_NAME));
+
+        return new ExpirationResult(chunks, blocks, points, Duration.ofNanos(System.nanoTime() - startedAt));
+    }
+
+    private void pause() {
+        if (pauseBetweenChunks.isZero()) {
+            return;
+        }
+
+        try {
+            Thread.sleep(pauseBetweenChunks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while expiring points", e);
+        }
+    }
+
+    private ChunkResult expireChunk(int afterBlockId, LocalDateTime now) {
+        List<ExpiringBlock> expiringBlocks = pointBatchRepository.lockExpiringBlocks(afterBlockId, now, chunkSize);
+        if (expiringBlocks.isEmpty()) {
+            return new ChunkResult(0, 0, afterBlockId);
+        }
+
+        long points = 0;
+        List<LedgerEntry> entries = new ArrayList<>(expiringBlocks.size());
+        List<ExpiryBucketChange> bucketChanges = new ArrayList<>(expiringBlocks.size());
+        List<LiabilityChange> liabilityChanges = new ArrayList<>(expiringBlocks.size());
+        for (ExpiringBlock block : expiringBlocks) {
+            entries.add(new LedgerEntry(
+                    block.userId(), PointEventType.EXPIRE, -block.remainingAmount(), block.blockId(), null, now));
+            bucketChanges.add(ExpiryBucketChange.of(block.userId(), block.expiresAt(), -block.remainingAmount()));
+            liabilityChanges.add(LiabilityChange.expired(
+                    block.userId(), now, block.earnedAt().toLocalDate(), block.remainingAmount()));
+            points += block.remainingAmount();
+        }
+
+        pointBatchRepository.expireBlocks(expiringBlocks);
+        expiryBucketRepository.applyAll(bucketChanges);
+        liabilityRepository.applyAll(liabilityChanges);
+        pointLedger.appendAll(entries);
+
+        int lastBlockId = expiringBlocks.getLast().blockId();
+        JobCheckpoint checkpoint = new JobCheckpoint();
+        checkpoint.setJobName(JOB_NAME);
+        checkpoint.setPosition(lastBlockId);
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        jobCheckpointRepository.save(checkpoint);
+
+        return new ChunkResult(expiringBlocks.size(), points, lastBlockId);
+    }
+
+    private record ChunkResult(int blocks, long points, int lastBlockId) {}
+
+    public record ExpirationResult(long chunks, long blocks, long points, Duration elapsed) {
+        public double rowsPerSecond() {
+            long nanos = Math.max(elapsed.toNanos(), 1);
+            return blocks * 1_000_000_000.0 / nanos;
+        }
+    }
+}
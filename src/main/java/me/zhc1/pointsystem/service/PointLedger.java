@@ -0,0 +1,28 @@
+package me.zhc1.pointsystem.service;
+
+import java.util.List;
+
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+
+import me.zhc1.pointsystem.repository.LedgerEntry;
+import me.zhc1.pointsystem.repository.PointLedgerRepository;
+
+// Single entry point for balance changes: appends the events and evicts the cached balances once they commit
+@Component
+@RequiredArgsConstructor
+public class PointLedger {
+    private final PointLedgerRepository pointLedgerRepository;
+    private final BalanceCache balanceCache;
+
+    public void append(LedgerEntry entry) {
+        pointLedgerRepository.append(entry);
+        balanceCache.evictAfterCommit(entry.userId());
+    }
+
+    public void appendAll(List<LedgerEntry> entries) {
+        pointLedgerRepository.appendAll(entries);
+        entries.stream().mapToInt(LedgerEntry::userId).distinct().forEach(balanceCache::evictAfterCommit);
+    }
+}
@@ -0,0 +1,132 @@
+package me.zhc1.pointsystem.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import me.zhc1.pointsystem.config.StatementCounter;
+
+// Meters of the point operations. Every operation records its latency by outcome
+// and the number of Hibernate statements it issued.
+@Component
+public class PointMetrics {
+    private final MeterRegistry registry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> statements = new ConcurrentHashMap<>();
+    private final DistributionSummary blocksScanned;
+    private final DistributionSummary detailsWritten;
+    private final Counter retries;
+    private final Counter retriesExhausted;
+    private final Counter expiredBlocks;
+    private final Timer expirationChunks;
+    private final DistributionSummary earnQueueBatches;
+    private final Timer earnQueueLatency;
+
+    public PointMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.blocksScanned = DistributionSummary.builder("point.use.blocks.scanned")
+                .description("Blocks visited by one usage")
+                .register(registry);
+        this.detailsWritten = DistributionSummary.builder("point.use.details.written")
+                .description("Usage detail rows written by one usage")
+                .register(registry);
+        this.retries = Counter.builder("point.concurrency.retries")
+                .description("Transactions retried after a concurrency conflict")
+                .register(registry);
+        this.retriesExhausted = Counter.builder("point.concurrency.retries.exhausted")
+                .description("Transactions that still conflicted on their last attempt")
+                .register(registry);
+        this.expiredBlocks = Counter.builder("point.expiration.blocks")
+                .description("Blocks expired by the expiration job")
+                .register(registry);
+        this.expirationChunks = Timer.builder("point.expiration.chunk")
+                .description("Duration of one expiration chunk")
+                .register(registry);
+        this.earnQueueBatches = DistributionSummary.builder("point.earn.queue.batch")
+                .description("Queued grants applied by one group commit")
+                .register(registry);
+        this.earnQueueLatency = Timer.builder("point.earn.queue.latency")
+                .description("Time from accepting a queued grant to committing it")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    public <T> T record(String operation, Supplier<T> work) {
+        long statementsBefore = StatementCounter.current();
+        long startedAt = System.nanoTime();
+        String outcome = "error";
+        try {
+            T result = work.get();
+            outcome = "success";
+            return result;
+        } finally {
+            timer(operation, outcome).record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            statements(operation).record(StatementCounter.current() - statementsBefore);
+        }
+    }
+
+    public void record(String operation, Runnable work) {
+        record(operation, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    public void recordSpend(int blocks, int details) {
+        blocksScanned.record(blocks);
+        detailsWritten.record(details);
+    }
+
+    public void recordRetry() {
+        retries.increment();
+    }
+
+    public void recordRetriesExhausted() {
+        retriesExhausted.increment();
+    }
+
+    public void recordExpirationChunk(int blocks, long elapsedNanos) {
+        expiredBlocks.increment(blocks);
+        expirationChunks.record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordEarnQueueBatch(int grants) {
+        earnQueueBatches.record(grants);
+    }
+
+    public void recordEarnQueueLatency(Duration latency) {
+        earnQueueLatency.record(latency);
+    }
+
+    public void gaugeEarnQueuePending(Supplier<Number> pending) {
+        Gauge.builder("point.earn.queue.pending", pending)
+                .description("Queued grants not yet applied, as last counted")
+                .register(registry);
+    }
+
+    private Timer timer(String operation, String outcome) {
+        return timers.computeIfAbsent(operation + ':' + outcome, key -> Timer.builder("point.operation")
+                .description("Latency of point operations")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    private DistributionSummary statements(String operation) {
+        return statements.computeIfAbsent(operation, key -> DistributionSummary.builder("point.operation.statements")
+                .description("Hibernate statements issued by one point operation")
+                .tag("operation", operation)
+                .register(registry));
+    }
+}
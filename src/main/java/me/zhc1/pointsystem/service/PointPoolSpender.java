@@ -0,0 +1,280 @@
+package me.zhc1.pointsystem.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import jakarta.persistence.EntityNotFoundException;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+
+import me.zhc1.pointsystem.entity.PointBlock;
+import me.zhc1.pointsystem.entity.PointEventType;
+import me.zhc1.pointsystem.entity.PointTransfer;
+import me.zhc1.pointsystem.entity.PointType;
+import me.zhc1.pointsystem.entity.PointUsage;
+import me.zhc1.pointsystem.entity.PointUsageDetail;
+import me.zhc1.pointsystem.entity.User;
+import me.zhc1.pointsystem.repository.AvailableBalance;
+import me.zhc1.pointsystem.repository.BlockSpend;
+import me.zhc1.pointsystem.repository.ExpiryBucketChange;
+import me.zhc1.pointsystem.repository.ExpiryBucketRepository;
+import me.zhc1.pointsystem.repository.ExpiryHintRepository;
+import me.zhc1.pointsystem.repository.LedgerEntry;
+import me.zhc1.pointsystem.repository.LiabilityChange;
+import me.zhc1.pointsystem.repository.LiabilityRepository;
+import me.zhc1.pointsystem.repository.PointBatchRepository;
+import me.zhc1.pointsystem.repository.PointBlockRepository;
+import me.zhc1.pointsystem.repository.PointTransferRepository;
+import me.zhc1.pointsystem.repository.PointUsageRepository;
+import me.zhc1.pointsystem.repository.RemainingPointRepository;
+import me.zhc1.pointsystem.repository.UserRepository;
+
+// Spends from the blocks of several users as one pool, first expiring first across all of them, and moves points
+// between users. All users involved are locked together in one transaction, so they must live on one shard.
+// Every user whose blocks were taken gets a usage of their own, which keeps history and cancellation per user,
+// and the balance changes of all users are appended to the ledger in one batch.
+@Component
+@RequiredArgsConstructor
+public class PointPoolSpender {
+    private static final int SPEND_PAGE_SIZE = 16;
+
+    private final UserRepository userRepository;
+    private final RemainingPointRepository remainingPointRepository;
+    private final PointBlockRepository pointBlockRepository;
+    private final PointBatchRepository pointBatchRepository;
+    private final PointUsageRepository pointUsageRepository;
+    private final PointTransferRepository pointTransferRepository;
+    private final ExpiryBucketRepository expiryBucketRepository;
+    private final ExpiryHintRepository expiryHintRepository;
+    private final LiabilityRepository liabilityRepository;
+    private final UserPointExpirer userPointExpirer;
+    private final PointLedger pointLedger;
+    private final BlockHeapCache blockHeapCache;
+    private final FraudDetector fraudDetector;
+    private final PointConcurrencyGuard concurrencyGuard;
+    private final PointMetrics pointMetrics;
+
+    // Returns one usage per user that contributed, in user id order
+    public List<PointUsage> spend(Collection<Integer> userIds, long amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+
+        List<Integer> pool = userIds.stream().distinct().sorted().toList();
+        return concurrencyGuard.execute(pool, () -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<LiabilityChange> liabilityChanges = new ArrayList<>();
+            Map<Integer, PointUsage> usages = take(pool, amount, now, liabilityChanges);
+            // Each member's share is judged as a use of their own; the shares are only known once the walk is done,
+            // so a held spend rolls back
+            usages.forEach((userId, usage) -> fraudDetector.onUse(userId, usage.getAmount()));
+            liabilityRepository.applyAll(liabilityChanges);
+            pointLedger.appendAll(usages.values().stream()
+                    .map(usage -> new LedgerEntry(
+                            usage.getUser().getUserId(),
+                            PointEventType.USE,
+                            -usage.getAmount(),
+                            null,
+                            usage.getUsageId(),
+                            now))
+                    .toList());
+            return List.copyOf(usages.values());
+        });
+    }
+
+    // The recipient gets blocks of the same types and expiries as those taken from the sender,
+    // so moving points never extends their life
+    public PointTransfer transfer(int fromUserId, int toUserId, long amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        if (fromUserId == toUserId) {
+            throw new IllegalArgumentException("Cannot transfer points to the same user");
+        }
+
+        List<Integer> users = List.of(Math.min(fromUserId, toUserId), Math.max(fromUserId, toUserId));
+        return concurrencyGuard.execute(users, () -> {
+            fraudDetector.onUse(fromUserId, amount);
+            fraudDetector.onEarn(toUserId, amount);
+            LocalDateTime now = LocalDateTime.now();
+            User recipient =
+                    userRepository.findById(toUserId).orElseThrow(() -> new EntityNotFoundException("User not found"));
+            List<LiabilityChange> liabilityChanges = new ArrayList<>();
+            PointUsage usage = take(List.of(fromUserId), amount, now, liabilityChanges).get(fromUserId);
+
+            Map<BlockKind, Long> amountsByKind = new LinkedHashMap<>();
+            for (PointUsageDetail detail : usage.getUsageDetails()) {
+                PointBlock block = detail.getBlock();
+                amountsByKind.merge(
+                        new BlockKind(block.getPointType(), block.getExpiresAt()), detail.getAmount(), Long::sum);
+            }
+            List<PointBlock> received = new ArrayList<>(amountsByKind.size());
+            amountsByKind.forEach((kind, points) -> {
+                PointBlock block = new PointBlock();
+                block.setUser(recipient);
+                block.setPointType(kind.pointType());
+                block.setAmount(points);
+                block.setRemainingAmount(points);
+                block.setEarnedAt(now);
+                block.setExpiresAt(kind.expiresAt());
+                received.add(block);
+            });
+            pointBlockRepository.saveAll(received);
+            credit(toUserId, received, now);
+            // Rollup rows are shared between users, so both sides go in one sorted batch
+            received.forEach(block -> liabilityChanges.add(LiabilityChange.earned(toUserId, now, block.getAmount())));
+            liabilityRepository.applyAll(liabilityChanges);
+
+            PointTransfer transfer = new PointTransfer();
+            transfer.setUsageId(usage.getUsageId());
+            transfer.setUserId(fromUserId);
+            transfer.setToUserId(toUserId);
+            transfer.setAmount(amount);
+            transfer.setTransferredAt(now);
+            pointTransferRepository.save(transfer);
+
+            List<LedgerEntry> entries = new ArrayList<>(received.size() + 1);
+            entries.add(new LedgerEntry(
+                    fromUserId, PointEventType.TRANSFER_OUT, -amount, null, usage.getUsageId(), now));
+            for (PointBlock block : received) {
+                entries.add(new LedgerEntry(
+                        toUserId, PointEventType.TRANSFER_IN, block.getAmount(), block.getBlockId(), null, now));
+            }
+            entries.sort(Comparator.comparingInt(LedgerEntry::userId));
+            pointLedger.appendAll(entries);
+            return transfer;
+        });
+    }
+
+    // Takes the amount off the pool's blocks and saves a usage for every user it took from; the liability changes
+    // are left to the caller. Must run in a transaction holding the locks of all users in the pool.
+    private Map<Integer, PointUsage> take(
+            List<Integer> pool, long amount, LocalDateTime now, List<LiabilityChange> liabilityChanges) {
+        long available = 0;
+        for (int userId : pool) {
+            available += availablePoints(userId, now);
+        }
+        if (available < amount) {
+            throw notEnoughPoints(pool, amount, available);
+        }
+
+        Map<Integer, PointUsage> usages = new TreeMap<>();
+        List<BlockSpend> spends = new ArrayList<>();
+        List<ExpiryBucketChange> bucketChanges = new ArrayList<>();
+        long remainingToUse = amount;
+        List<PointBlock> page = pointBlockRepository.findSpendableBlocksOfUsers(pool, now, Limit.of(SPEND_PAGE_SIZE));
+        // Every block the walk loaded, which pages past the last one it spends from
+        int blocksScanned = page.size();
+        while (remainingToUse > 0) {
+            if (page.isEmpty()) {
+                // A block may have expired between the balance read and the walk
+                throw notEnoughPoints(pool, amount, amount - remainingToUse);
+            }
+
+            for (PointBlock block : page) {
+                if (remainingToUse <= 0) break;
+
+                int userId = block.getUser().getUserId();
+                long usageAmount = Math.min(block.getRemainingAmount(), remainingToUse);
+                spends.add(new BlockSpend(block.getBlockId(), usageAmount, block.getRemainingAmount()));
+                bucketChanges.add(ExpiryBucketChange.of(userId, block.getExpiresAt(), -usageAmount));
+                liabilityChanges.add(
+                        LiabilityChange.used(userId, now, block.getEarnedAt().toLocalDate(), usageAmount));
+
+                PointUsage usage = usages.computeIfAbsent(userId, id -> newUsage(block.getUser(), now));
+                usage.setAmount(usage.getAmount() + usageAmount);
+                PointUsageDetail detail = new PointUsageDetail();
+                detail.setUsage(usage);
+                detail.setBlock(block);
+                detail.setAmount(usageAmount);
+                usage.getUsageDetails().add(detail);
+
+                remainingToUse -= usageAmount;
+            }
+
+            if (remainingToUse > 0) {
+                PointBlock last = page.getLast();
+                page = page.size() < SPEND_PAGE_SIZE
+                        ? List.of()
+                        : pointBlockRepository.findSpendableBlocksOfUsersAfter(
+                                pool,
+                                now,
+                                last.getSpendPriority(),
+                                last.getExpiresAt(),
+                                last.getBlockId(),
+                                Limit.of(SPEND_PAGE_SIZE));
+                blocksScanned += page.size();
+            }
+        }
+
+        // Rows are updated in block id order, whichever member's blocks came first in the walk
+        spends.sort(Comparator.comparingInt(BlockSpend::blockId));
+        pointBatchRepository.spendBlocks(spends);
+        expiryBucketRepository.applyAll(bucketChanges);
+        pointUsageRepository.saveAll(usages.values());
+        // Plans of several heaps cannot be applied as one, so the touched heaps are reloaded instead
+        usages.keySet().forEach(blockHeapCache::evictAfterCompletion);
+        int detailsWritten = usages.values().stream()
+                .mapToInt(usage -> usage.getUsageDetails().size())
+                .sum();
+        pointMetrics.recordSpend(blocksScanned, detailsWritten);
+        return usages;
+    }
+
+    private long availablePoints(int userId, LocalDateTime now) {
+        AvailableBalance balance = findBalance(userId);
+        if (balance.expiryDue(now)) {
+            userPointExpirer.expireDue(userId, now);
+            balance = findBalance(userId);
+        }
+        return balance.points();
+    }
+
+    private AvailableBalance findBalance(int userId) {
+        return remainingPointRepository
+                .findAvailableBalance(userId)
+                .orElseThrow(() -> new EntityNotFoundException("User not found"));
+    }
+
+    private void credit(int userId, List<PointBlock> blocks, LocalDateTime now) {
+        for (PointBlock block : blocks) {
+            blockHeapCache.earnedAfterCommit(
+                    userId,
+                    block.getBlockId(),
+                    block.getPointType(),
+                    now.toLocalDate(),
+                    block.getExpiresAt(),
+                    block.getAmount());
+        }
+        blocks.stream()
+                .map(PointBlock::getExpiresAt)
+                .min(Comparator.naturalOrder())
+                .ifPresent(expiresAt -> expiryHintRepository.lowerNextExpiry(userId, expiresAt));
+        expiryBucketRepository.applyAll(blocks.stream()
+                .map(block -> ExpiryBucketChange.of(userId, block.getExpiresAt(), block.getAmount()))
+                .toList());
+    }
+
+    private static PointUsage newUsage(User user, LocalDateTime now) {
+        PointUsage usage = new PointUsage();
+        usage.setUser(user);
+        usage.setUsedAt(now);
+        return usage;
+    }
+
+    private static IllegalStateException notEnoughPoints(List<Integer> pool, long required, long available) {
+        return new IllegalStateException("Not enough points available for user ids: %s. Required: %s, Available: %s"
+                .formatted(pool, required, available));
+    }
+
+    private record BlockKind(PointType pointType, LocalDateTime expiresAt) {}
+}
@@ -1,143 +1,530 @@
 package me.zhc1.pointsystem.service;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
 
 import jakarta.persistence.EntityNotFoundException;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import me.zhc1.pointsystem.entity.PointBlock;
+import me.zhc1.pointsystem.entity.PointEventType;
+import me.zhc1.pointsystem.entity.PointTransfer;
+import me.zhc1.pointsystem.entity.PointType;
 import me.zhc1.pointsystem.entity.PointUsage;
 import me.zhc1.pointsystem.entity.PointUsageDetail;
-import me.zhc1.pointsystem.entity.RemainingPoint;
 import me.zhc1.pointsystem.entity.User;
+import me.zhc1.pointsystem.entity.Wallet;
+import me.zhc1.pointsystem.repository.AvailableBalance;
+import me.zhc1.pointsystem.repository.BlockSpend;
+import me.zhc1.pointsystem.repository.CohortLiability;
+import me.zhc1.pointsystem.repository.ExpiryBucketChange;
+import me.zhc1.pointsystem.repository.ExpiryBucketRepository;
+import me.zhc1.pointsystem.repository.ExpiryHintRepository;
+import me.zhc1.pointsystem.repository.IdempotentOutcome;
+import me.zhc1.pointsystem.repository.LedgerEntry;
+import me.zhc1.pointsystem.repository.LiabilityChange;
+import me.zhc1.pointsystem.repository.LiabilityRepository;
+import me.zhc1.pointsystem.repository.PointBatchRepository;
 import me.zhc1.pointsystem.repository.PointBlockRepository;
+import me.zhc1.pointsystem.repository.PointTransferRepository;
 import me.zhc1.pointsystem.repository.PointUsageRepository;
 import me.zhc1.pointsystem.repository.RemainingPointRepository;
 import me.zhc1.pointsystem.repository.UserRepository;
+import me.zhc1.pointsystem.service.FefoBlockHeap.SpendPlan;
+import me.zhc1.pointsystem.service.PointExpirationJob.ExpirationResult;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class PointService {
+    private static final int SPEND_PAGE_SIZE = 16;
+
     private final UserRepository userRepository;
     private final PointBlockRepository pointBlockRepository;
     private final PointUsageRepository pointUsageRepository;
     private final RemainingPointRepository remainingPointRepository;
+    private final PointConcurrencyGuard concurrencyGuard;
+    private final BalanceCache balanceCache;
+    private final PointLedger pointLedger;
+    private final PointExpirationJob pointExpirationJob;
+    private final PointBulkEarner pointBulkEarner;
+    private final IdempotencyStore idempotencyStore;
+    private final PointUsageCanceler pointUsageCanceler;
+    private final PointMetrics pointMetrics;
+    private final UsageHistoryReader usageHistoryReader;
+    private final UserPointExpirer userPointExpirer;
+    private final ExpiryHintRepository expiryHintRepository;
+    private final ShardRouter shardRouter;
+    private final BlockHeapCache blockHeapCache;
+    private final PointBatchRepository pointBatchRepository;
+    private final EarnQueue earnQueue;
+    private final ExpiryBucketRepository expiryBucketRepository;
+    private final LiabilityRepository liabilityRepository;
+    private final FraudDetector fraudDetector;
+    private final WalletRegistry walletRegistry;
+    private final PointPoolSpender pointPoolSpender;
+    private final PointTransferRepository pointTransferRepository;
 
     public long getAvailablePoints(int userId) {
-        return userRepository
-                .findById(userId)
-                .map(user -> remainingPointRepository
-                        .findByUserId(userId)
-                        .map(RemainingPoint::getTotalRemainingPoints)
-                        .orElse(0L))
+        return pointMetrics.record("balance", () -> shardRouter
+                .forUser(userId, () -> balanceCache.get(userId, this::loadBalance))
+                .points());
+    }
+
+    // Snapshot plus ledger tail in one query, which also tells whether the user exists.
+    // While no block of the user has expired since, that is a single comparison against the next expiry.
+    private AvailableBalance loadBalance(int userId) {
+        AvailableBalance balance = findBalance(userId);
+        if (!balance.expiryDue(LocalDateTime.now())) {
+            return balance;
+        }
+
+        return concurrencyGuard.execute(userId, () -> expireDue(userId));
+    }
+
+    // Must run in a transaction under the user's lock
+    private AvailableBalance expireDue(int userId) {
+        userPointExpirer.expireDue(userId, LocalDateTime.now());
+        return findBalance(userId);
+    }
+
+    // Summed from the live blocks, so it needs no expiry check; the total above stays the single-row read
+    public Map<PointType, Long> getAvailablePointsByType(int userId) {
+        return pointMetrics.record(
+                "balance-by-type",
+                () -> shardRouter.forUser(userId, () -> {
+                    if (!userRepository.existsById(userId)) {
+                        throw new EntityNotFoundException("User not found");
+                    }
+                    return pointBatchRepository.sumLivePointsByType(userId, LocalDateTime.now());
+                }));
+    }
+
+    private AvailableBalance findBalance(int userId) {
+        return remainingPointRepository
+                .findAvailableBalance(userId)
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
     }
 
-    @Transactional
     public void earnPoints(int userId, long amount, LocalDateTime expiresAt) {
+        earnPoints(userId, amount, expiresAt, null);
+    }
+
+    public void earnPoints(int userId, long amount, LocalDateTime expiresAt, String idempotencyKey) {
+        earnPoints(userId, amount, expiresAt, PointType.CASH, idempotencyKey);
+    }
+
+    // A retry carrying the key of an applied earn returns without earning again
+    public void earnPoints(
+            int userId, long amount, LocalDateTime expiresAt, PointType pointType, String idempotencyKey) {
         if (amount <= 0) {
             throw new IllegalArgumentException("Amount must be positive");
         }
+        if (pointType == null) {
+            throw new IllegalArgumentException("Point type is required");
+        }
+
+        pointMetrics.record(
+                "earn",
+                () -> shardRouter.forUser(
+                        userId, () -> applyEarn(userId, amount, expiresAt, pointType, idempotencyKey)));
+    }
+
+    private void applyEarn(
+            int userId, long amount, LocalDateTime expiresAt, PointType pointType, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            concurrencyGuard.executeWithoutResult(userId, () -> doEarnPoints(userId, amount, expiresAt, pointType));
+            return;
+        }
 
+        if (idempotencyStore.find(idempotencyKey, userId, PointEventType.EARN, amount).isPresent()) {
+            return;
+        }
+        concurrencyGuard.executeWithoutResult(userId, () -> {
+            // A concurrent retry may have committed while this one waited for the lock
+            if (idempotencyStore.find(idempotencyKey, userId, PointEventType.EARN, amount).isPresent()) {
+                return;
+            }
+
+            PointBlock pointBlock = doEarnPoints(userId, amount, expiresAt, pointType);
+            idempotencyStore.record(new IdempotentOutcome(
+                    idempotencyKey,
+                    userId,
+                    PointEventType.EARN,
+                    amount,
+                    pointBlock.getBlockId(),
+                    null,
+                    pointBlock.getEarnedAt()));
+        });
+    }
+
+    // Judged under the user's lock once the request is known not to be a retry of an applied earn, and before any
+    // database work; a rollback hands the counted earn back
+    private PointBlock doEarnPoints(int userId, long amount, LocalDateTime expiresAt, PointType pointType) {
+        fraudDetector.onEarn(userId, amount);
         User user = userRepository.findById(userId).orElseThrow(() -> new EntityNotFoundException("User not found"));
 
         PointBlock pointBlock = new PointBlock();
         pointBlock.setUser(user);
+        pointBlock.setPointType(pointType);
         pointBlock.setAmount(amount);
         pointBlock.setRemainingAmount(amount);
         pointBlock.setEarnedAt(LocalDateTime.now());
         pointBlock.setExpiresAt(expiresAt);
 
         pointBlockRepository.save(pointBlock);
-        updateRemainingPoints(user, amount);
+        expiryHintRepository.lowerNextExpiry(userId, expiresAt);
+        expiryBucketRepository.apply(userId, expiresAt, amount);
+        liabilityRepository.apply(LiabilityChange.earned(userId, pointBlock.getEarnedAt(), amount));
+        blockHeapCache.earnedAfterCommit(
+                userId, pointBlock.getBlockId(), pointType, pointBlock.getEarnedAt().toLocalDate(), expiresAt, amount);
+        pointLedger.append(new LedgerEntry(
+                userId, PointEventType.EARN, amount, pointBlock.getBlockId(), null, pointBlock.getEarnedAt()));
+        return pointBlock;
+    }
+
+    public void earnPointsAsync(int userId, long amount, LocalDateTime expiresAt, String idempotencyKey) {
+        earnPointsAsync(userId, amount, expiresAt, PointType.CASH, idempotencyKey);
+    }
+
+    // Acknowledged once the grant is queued durably; the balance reflects it after the next drain
+    public void earnPointsAsync(
+            int userId, long amount, LocalDateTime expiresAt, PointType pointType, String idempotencyKey) {
+        pointMetrics.record(
+                "earn-async", () -> earnQueue.enqueue(userId, amount, expiresAt, pointType, idempotencyKey));
+    }
+
+    public BulkEarnResult earnPointsBulk(Collection<Grant> grants) {
+        return pointBulkEarner.earn(grants);
+    }
+
+    public PointUsage usePoints(int userId, long amount) {
+        return usePoints(userId, amount, null);
     }
 
-    @Transactional
-    public void usePoints(int userId, long amount) {
+    // A retry carrying the key of an applied use returns the original usage without spending again
+    public PointUsage usePoints(int userId, long amount, String idempotencyKey) {
         if (amount <= 0) {
             throw new IllegalArgumentException("Amount must be positive");
         }
 
-        User user = userRepository.findById(userId).orElseThrow(() -> new EntityNotFoundException("User not found"));
-        List<PointBlock> availablePointBlocks =
-                pointBlockRepository.findByUserAndExpiresAtGreaterThanOrderByExpiresAtAsc(user, LocalDateTime.now());
+        return pointMetrics.record(
+                "use", () -> shardRouter.forUser(userId, () -> applyUse(userId, amount, idempotencyKey)));
+    }
+
+    private PointUsage applyUse(int userId, long amount, String idempotencyKey) {
+        if (idempotencyKey != null) {
+            Optional<IdempotentOutcome> applied =
+                    idempotencyStore.find(idempotencyKey, userId, PointEventType.USE, amount);
+            if (applied.isPresent()) {
+                return findUsage(applied.get());
+            }
+        }
+        // Conflicting spends on the same blocks fail the version check and are retried from a fresh read
+        return concurrencyGuard.execute(userId, () -> {
+            if (idempotencyKey == null) {
+                return doUsePoints(userId, amount);
+            }
 
-        long totalAvailablePoints = availablePointBlocks.stream()
-                .mapToLong(PointBlock::getRemainingAmount)
-                .sum();
+            // A concurrent retry may have committed while this one waited for the lock
+            Optional<IdempotentOutcome> applied =
+                    idempotencyStore.find(idempotencyKey, userId, PointEventType.USE, amount);
+            if (applied.isPresent()) {
+                return findUsage(applied.get());
+            }
+
+            PointUsage pointUsage = doUsePoints(userId, amount);
+            idempotencyStore.record(new IdempotentOutcome(
+                    idempotencyKey,
+                    userId,
+                    PointEventType.USE,
+                    amount,
+                    null,
+                    pointUsage.getUsageId(),
+                    pointUsage.getUsedAt()));
+            return pointUsage;
+        });
+    }
+
+    private PointUsage findUsage(IdempotentOutcome outcome) {
+        return pointUsageRepository
+                .findById(outcome.usageId())
+                .orElseThrow(() ->
+                        new IllegalStateException("Usage of idempotency key no longer exists: " + outcome.key()));
+    }
+
+    // Judged the same way as an earn, see doEarnPoints
+    private PointUsage doUsePoints(int userId, long amount) {
+        fraudDetector.onUse(userId, amount);
+        // The ledger balance answers sufficiency without touching the blocks
+        AvailableBalance balance = findBalance(userId);
+        if (balance.expiryDue(LocalDateTime.now())) {
+            balance = expireDue(userId);
+        }
+        long totalAvailablePoints = balance.points();
         if (totalAvailablePoints < amount) {
-            throw new IllegalStateException("Not enough points available for user id: %s. Required: %s, Available: %s"
-                    .formatted(userId, amount, totalAvailablePoints));
+            throw notEnoughPoints(userId, amount, totalAvailablePoints);
         }
 
+        User user = userRepository.getReferenceById(userId);
+        LocalDateTime now = LocalDateTime.now();
         PointUsage pointUsage = new PointUsage();
         pointUsage.setUser(user);
         pointUsage.setAmount(amount);
-        pointUsage.setUsedAt(LocalDateTime.now());
+        pointUsage.setUsedAt(now);
 
-        long remainingToUse = amount;
-        for (PointBlock pointBlock : availablePointBlocks) {
-            if (remainingToUse <= 0) break;
+        List<ExpiryBucketChange> bucketChanges = new ArrayList<>();
+        List<LiabilityChange> liabilityChanges = new ArrayList<>();
+        int blocksScanned = blockHeapCache.enabled()
+                ? spendFromHeap(userId, amount, now, pointUsage, bucketChanges, liabilityChanges)
+                : spendFromBlocks(userId, user, amount, now, pointUsage, bucketChanges, liabilityChanges);
+        expiryBucketRepository.applyAll(bucketChanges);
+        liabilityRepository.applyAll(liabilityChanges);
+
+        pointUsageRepository.save(pointUsage);
+        pointLedger.append(new LedgerEntry(userId, PointEventType.USE, -amount, null, pointUsage.getUsageId(), now));
+        pointMetrics.recordSpend(blocksScanned, pointUsage.getUsageDetails().size());
+        return pointUsage;
+    }
+
+    // Plans the spend on the user's block heap and writes only the changed amounts, without loading any block
+    private int spendFromHeap(
+            int userId,
+            long amount,
+            LocalDateTime now,
+            PointUsage pointUsage,
+            List<ExpiryBucketChange> bucketChanges,
+            List<LiabilityChange> liabilityChanges) {
+        SpendPlan plan = new SpendPlan();
+        long covered = blockHeapCache.get(userId, this::loadBlockHeap).plan(amount, now, plan);
+        if (covered < amount) {
+            // The heap may have missed a block earned concurrently, the blocks themselves decide
+            blockHeapCache.evict(userId);
+            covered = blockHeapCache.get(userId, this::loadBlockHeap).plan(amount, now, plan);
+            if (covered < amount) {
+                throw notEnoughPoints(userId, amount, covered);
+            }
+        }
 
-            // Use the minimum of remaining points in the block and remaining points to use
-            long usageAmount = Math.min(pointBlock.getRemainingAmount(), remainingToUse);
-            pointBlock.setRemainingAmount(pointBlock.getRemainingAmount() - usageAmount);
-            pointBlockRepository.save(pointBlock);
+        List<BlockSpend> spends = new ArrayList<>(plan.size());
+        for (int i = 0; i < plan.size(); i++) {
+            spends.add(new BlockSpend(plan.blockId(i), plan.amount(i), plan.remainingBefore(i)));
+            bucketChanges.add(ExpiryBucketChange.of(userId, plan.expiresAt(i), -plan.amount(i)));
+            liabilityChanges.add(LiabilityChange.used(userId, now, plan.earnedOn(i), plan.amount(i)));
 
-            // Append a usage detail record
             PointUsageDetail pointUsageDetail = new PointUsageDetail();
             pointUsageDetail.setUsage(pointUsage);
-            pointUsageDetail.setBlock(pointBlock);
-            pointUsageDetail.setAmount(usageAmount);
+            pointUsageDetail.setBlock(pointBlockRepository.getReferenceById(plan.blockId(i)));
+            pointUsageDetail.setAmount(plan.amount(i));
             pointUsage.getUsageDetails().add(pointUsageDetail);
+        }
+        // Registered before the write, so a spend that fails on a stale heap drops it when it rolls back
+        blockHeapCache.spentAfterCommit(userId, plan);
+        pointBatchRepository.spendBlocks(spends);
+        return plan.size();
+    }
+
+    private FefoBlockHeap loadBlockHeap(int userId) {
+        FefoBlockHeap heap = new FefoBlockHeap();
+        pointBatchRepository.streamLiveBlocks(
+                userId,
+                LocalDateTime.now(),
+                rs -> heap.append(
+                        rs.getInt("block_id"),
+                        PointType.valueOf(rs.getString("point_type")),
+                        rs.getObject("earned_at", LocalDateTime.class).toLocalDate(),
+                        rs.getObject("expires_at", LocalDateTime.class),
+                        rs.getLong("remaining_amount")));
+        return heap;
+    }
+
+    // Walks live blocks in spend order, a small page at a time, until the amount is covered.
+    // The walk crosses types within the same pages, so mixing types does not add queries.
+    private int spendFromBlocks(
+            int userId,
+            User user,
+            long amount,
+            LocalDateTime now,
+            PointUsage pointUsage,
+            List<ExpiryBucketChange> bucketChanges,
+            List<LiabilityChange> liabilityChanges) {
+        long remainingToUse = amount;
+        int blocksScanned = 0;
+        List<PointBlock> page = pointBlockRepository.findSpendableBlocks(user, now, Limit.of(SPEND_PAGE_SIZE));
+        while (remainingToUse > 0) {
+            if (page.isEmpty()) {
+                // A block may have expired between the balance read and the walk
+                throw notEnoughPoints(userId, amount, amount - remainingToUse);
+            }
+
+            for (PointBlock pointBlock : page) {
+                if (remainingToUse <= 0) break;
+                blocksScanned++;
+
+                // Use the minimum of remaining points in the block and remaining points to use
+                long usageAmount = Math.min(pointBlock.getRemainingAmount(), remainingToUse);
+                pointBlock.setRemainingAmount(pointBlock.getRemainingAmount() - usageAmount);
+                pointBlockRepository.save(pointBlock);
+                bucketChanges.add(ExpiryBucketChange.of(userId, pointBlock.getExpiresAt(), -usageAmount));
+                liabilityChanges.add(
+                        LiabilityChange.used(userId, now, pointBlock.getEarnedAt().toLocalDate(), usageAmount));
+
+                // Append a usage detail record
+                PointUsageDetail pointUsageDetail = new PointUsageDetail();
+                pointUsageDetail.setUsage(pointUsage);
+                pointUsageDetail.setBlock(pointBlock);
+                pointUsageDetail.setAmount(usageAmount);
+                pointUsage.getUsageDetails().add(pointUsageDetail);
+
+                remainingToUse -= usageAmount;
+            }
 
-            remainingToUse -= usageAmount;
+            if (remainingToUse > 0) {
+                PointBlock last = page.getLast();
+                page = page.size() < SPEND_PAGE_SIZE
+                        ? List.of()
+                        : pointBlockRepository.findSpendableBlocksAfter(
+                                user,
+                                now,
+                                last.getSpendPriority(),
+                                last.getExpiresAt(),
+                                last.getBlockId(),
+                                Limit.of(SPEND_PAGE_SIZE));
+            }
         }
+        return blocksScanned;
+    }
 
-        pointUsageRepository.save(pointUsage);
-        updateRemainingPoints(user, -amount);
+    public Wallet createWallet(String name, Collection<Integer> userIds) {
+        return walletRegistry.create(name, userIds);
     }
 
-    // This is temporary code. In reality, it should be called every time the user redeems points.
-    @Scheduled(cron = "0 0 0 * * ?") // Run every day at midnight
-    public void expirePoints() {
-        List<PointBlock> expiredBlocks = pointBlockRepository.findByExpiresAtLessThanEqual(LocalDateTime.now());
-
-        for (PointBlock block : expiredBlocks) {
-            if (block.getRemainingAmount() > 0) {
-                // TODO: Log records or save history for expired points
-                updateRemainingPoints(block.getUser(), -block.getRemainingAmount());
-                block.setRemainingAmount(0L);
-                pointBlockRepository.save(block);
+    public void addWalletMember(int walletId, int userId) {
+        walletRegistry.addMember(walletId, userId);
+    }
+
+    public void removeWalletMember(int walletId, int userId) {
+        walletRegistry.removeMember(walletId, userId);
+    }
+
+    public void mergeWallets(int walletId, int otherWalletId) {
+        walletRegistry.merge(walletId, otherWalletId);
+    }
+
+    public WalletBalance getWalletBalance(int walletId) {
+        return pointMetrics.record("wallet-balance", () -> {
+            List<Integer> userIds = walletRegistry.members(walletId);
+            long points = 0;
+            for (int userId : userIds) {
+                points += shardRouter
+                        .forUser(userId, () -> balanceCache.get(userId, this::loadBalance))
+                        .points();
+            }
+            return new WalletBalance(walletId, userIds, points);
+        });
+    }
+
+    // Spends first expiring first across all members, returning a usage for each member that was drawn from
+    public List<PointUsage> useWalletPoints(int walletId, long amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+
+        return pointMetrics.record("wallet-use", () -> {
+            List<Integer> userIds = walletRegistry.members(walletId);
+            if (userIds.isEmpty()) {
+                throw new IllegalStateException("Wallet has no members: " + walletId);
             }
+            return pointPoolSpender.spend(userIds, amount);
+        });
+    }
+
+    public PointTransfer transferPoints(int fromUserId, int toUserId, long amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
         }
+
+        return pointMetrics.record("transfer", () -> pointPoolSpender.transfer(fromUserId, toUserId, amount));
+    }
+
+    public UsageHistoryPage getUsageHistory(int userId, String cursor, int size, boolean withDetails) {
+        return getUsageHistory(userId, cursor, size, withDetails, false);
+    }
+
+    public UsageHistoryPage getUsageHistory(
+            int userId, String cursor, int size, boolean withDetails, boolean includeArchived) {
+        return pointMetrics.record(
+                "history",
+                () -> shardRouter.forUser(
+                        userId, () -> usageHistoryReader.read(userId, cursor, size, withDetails, includeArchived)));
     }
 
-    private void updateRemainingPoints(User user, long amount) {
-        RemainingPoint remainingPoint = remainingPointRepository
-                .findByUserId(user.getUserId())
-                .orElseGet(() -> {
-                    RemainingPoint rp = new RemainingPoint();
-                    rp.setUser(user);
-                    return rp;
-                });
+    // Summed from the rollups of every shard, without reading a block
+    public LiabilityReport getLiability(LocalDate asOf) {
+        return pointMetrics.record("liability", () -> {
+            Map<LocalDate, CohortLiability> cohorts = new TreeMap<>();
+            shardRouter.onEachShard(shard -> liabilityRepository.findCohorts(asOf)).stream()
+                    .flatMap(List::stream)
+                    .forEach(cohort -> cohorts.merge(cohort.cohortMonth(), cohort, CohortLiability::plus));
+            return new LiabilityReport(asOf, List.copyOf(cohorts.values()));
+        });
+    }
+
+    public CancelResult cancelUsage(int usageId) {
+        return pointMetrics.record("cancel", () -> doCancelUsage(usageId));
+    }
 
-        long newTotal = remainingPoint.getTotalRemainingPoints() + amount;
-        if (newTotal < 0) {
-            throw new IllegalStateException("Remaining points cannot be negative");
+    private CancelResult doCancelUsage(int usageId) {
+        // Usage ids are unique across shards, so at most one shard has it
+        PointUsage pointUsage = shardRouter.onEachShard(shard -> pointUsageRepository.findById(usageId)).stream()
+                .flatMap(Optional::stream)
+                .findFirst()
+                .orElseThrow(() -> new EntityNotFoundException("Usage not found"));
+        if (pointUsage.getCanceledAt() != null) {
+            throw alreadyCanceled(usageId);
+        }
+        int userId = pointUsage.getUser().getUserId();
+        if (shardRouter.forUser(userId, () -> pointTransferRepository.existsById(usageId))) {
+            throw new IllegalStateException("Transfers cannot be canceled: " + usageId);
         }
 
-        remainingPoint.setTotalRemainingPoints(newTotal);
-        remainingPoint.setLastUpdatedAt(LocalDateTime.now());
+        CancelResult result = pointUsageCanceler.cancel(userId, usageId);
+        if (result.canceled() == 0) {
+            // Canceled by someone else in the meantime
+            throw alreadyCanceled(usageId);
+        }
+        return result;
+    }
 
-        remainingPointRepository.save(remainingPoint);
+    // Usages that do not exist or are already canceled are skipped and reported
+    public CancelResult cancelUsages(Collection<Integer> usageIds) {
+        return pointUsageCanceler.cancelAll(usageIds);
+    }
+
+    private static IllegalStateException alreadyCanceled(int usageId) {
+        return new IllegalStateException("Usage already canceled: " + usageId);
+    }
+
+    private static IllegalStateException notEnoughPoints(int userId, long required, long available) {
+        return new IllegalStateException("Not enough points available for user id: %s. Required: %s, Available: %s"
+                .formatted(userId, required, available));
+    }
+
+    // Balances already account for expired blocks on their own; this only compacts blocks nobody has looked at
+    @Scheduled(cron = "0 0 0 * * ?") // Run every day at midnight
+    public ExpirationResult expirePoints() {
+        return pointMetrics.record("expire", pointExpirationJob::run);
     }
 }
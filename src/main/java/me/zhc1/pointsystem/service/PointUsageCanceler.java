@@ -0,0 +1,192 @@
+package me.zhc1.pointsystem.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BinaryOperator;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+import me.zhc1.pointsystem.config.CancelProperties;
+import me.zhc1.pointsystem.entity.PointEventType;
+import me.zhc1.pointsystem.repository.CancelableUsage;
+import me.zhc1.pointsystem.repository.ExpiryBucketChange;
+import me.zhc1.pointsystem.repository.ExpiryBucketRepository;
+import me.zhc1.pointsystem.repository.ExpiryHintRepository;
+import me.zhc1.pointsystem.repository.LedgerEntry;
+import me.zhc1.pointsystem.repository.LiabilityChange;
+import me.zhc1.pointsystem.repository.LiabilityRepository;
+import me.zhc1.pointsystem.repository.PointBatchRepository;
+import me.zhc1.pointsystem.repository.UsageRestore;
+
+// Cancels usages by giving every usage detail back to the block it was taken from, so the original expiry is kept.
+// A chunk of usages is canceled in one transaction: the usages are locked, all blocks are restored in one batch,
+// and each usage gets one REFUND event, followed by an EXPIRE event for the part whose block has expired since.
+// Usage ids are unique across shards, so a batch is offered to every shard and each cancels the usages it holds.
+@Slf4j
+@Component
+public class PointUsageCanceler {
+    private final PointBatchRepository pointBatchRepository;
+    private final ExpiryHintRepository expiryHintRepository;
+    private final ExpiryBucketRepository expiryBucketRepository;
+    private final LiabilityRepository liabilityRepository;
+    private final PointLedger pointLedger;
+    private final PointConcurrencyGuard concurrencyGuard;
+    private final ShardRouter shardRouter;
+    private final BlockHeapCache blockHeapCache;
+    private final int chunkSize;
+
+    public PointUsageCanceler(
+            PointBatchRepository pointBatchRepository,
+            ExpiryHintRepository expiryHintRepository,
+            ExpiryBucketRepository expiryBucketRepository,
+            LiabilityRepository liabilityRepository,
+            PointLedger pointLedger,
+            PointConcurrencyGuard concurrencyGuard,
+            ShardRouter shardRouter,
+            BlockHeapCache blockHeapCache,
+            CancelProperties properties) {
+        if (properties.chunkSize() <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+
+        this.pointBatchRepository = pointBatchRepository;
+        this.expiryHintRepository = expiryHintRepository;
+        this.expiryBucketRepository = expiryBucketRepository;
+        this.liabilityRepository = liabilityRepository;
+        this.pointLedger = pointLedger;
+        this.concurrencyGuard = concurrencyGuard;
+        this.shardRouter = shardRouter;
+        this.blockHeapCache = blockHeapCache;
+        this.chunkSize = properties.chunkSize();
+    }
+
+    // Cancels a single usage of a known user under that user's lock
+    public CancelResult cancel(int userId, int usageId) {
+        ChunkResult result = concurrencyGuard.execute(userId, () -> cancelChunk(List.of(usageId)));
+        return toResult(1, List.of(usageId), List.of(result));
+    }
+
+    public CancelResult cancelAll(Collection<Integer> usageIds) {
+        long startedAt = System.nanoTime();
+        List<Integer> distinctIds = List.copyOf(new LinkedHashSet<>(usageIds));
+
+        List<ChunkResult> results = shardRouter.onEachShard(shard -> cancelOnShard(distinctIds)).stream()
+                .flatMap(List::stream)
+                .toList();
+
+        CancelResult result = toResult(usageIds.size(), distinctIds, results);
+        long elapsedMillis = (System.nanoTime() - startedAt) / 1_000_000;
+        log.info(
+                "Canceled {} of {} usages in {} ms, restored {} points, expired {} points",
+                result.canceled(),
+                result.requested(),
+                elapsedMillis,
+                result.restoredPoints(),
+                result.expiredPoints());
+        return result;
+    }
+
+    private List<ChunkResult> cancelOnShard(List<Integer> usageIds) {
+        List<ChunkResult> results = new ArrayList<>();
+        for (int from = 0; from < usageIds.size(); from += chunkSize) {
+            List<Integer> chunk = usageIds.subList(from, Math.min(from + chunkSize, usageIds.size()));
+            results.add(concurrencyGuard.execute(() -> cancelChunk(chunk)));
+        }
+        return results;
+    }
+
+    private ChunkResult cancelChunk(List<Integer> usageIds) {
+        List<CancelableUsage> usages = pointBatchRepository.lockUncanceledUsages(usageIds);
+        if (usages.isEmpty()) {
+            return new ChunkResult(Set.of(), 0, 0);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        Map<Integer, Integer> userIdsByUsageId = new LinkedHashMap<>();
+        usages.forEach(usage -> userIdsByUsageId.put(usage.usageId(), usage.userId()));
+
+        Map<Integer, Long> restoredByBlockId = new HashMap<>();
+        Map<Integer, LocalDateTime> earliestRestoredByUserId = new HashMap<>();
+        Map<Integer, Long> refundedByUsageId = new LinkedHashMap<>();
+        Map<Integer, Long> expiredByUsageId = new HashMap<>();
+        List<ExpiryBucketChange> bucketChanges = new ArrayList<>();
+        List<LiabilityChange> liabilityChanges = new ArrayList<>();
+        for (UsageRestore restore : pointBatchRepository.findUsageRestores(userIdsByUsageId.keySet())) {
+            refundedByUsageId.merge(restore.usageId(), restore.amount(), Long::sum);
+            int userId = userIdsByUsageId.get(restore.usageId());
+            LocalDate earnedOn = restore.earnedAt().toLocalDate();
+            liabilityChanges.add(LiabilityChange.used(userId, now, earnedOn, -restore.amount()));
+            if (restore.expiresAt().isAfter(now)) {
+                restoredByBlockId.merge(restore.blockId(), restore.amount(), Long::sum);
+                bucketChanges.add(ExpiryBucketChange.of(
+                        userIdsByUsageId.get(restore.usageId()), restore.expiresAt(), restore.amount()));
+                earliestRestoredByUserId.merge(
+                        userIdsByUsageId.get(restore.usageId()),
+                        restore.expiresAt(),
+                        BinaryOperator.minBy(Comparator.naturalOrder()));
+            } else {
+                // Leave the block alone: its remainder is swept by the expiration job as usual
+                expiredByUsageId.merge(restore.usageId(), restore.amount(), Long::sum);
+                liabilityChanges.add(LiabilityChange.expired(userId, now, earnedOn, restore.amount()));
+            }
+        }
+
+        if (pointBatchRepository.cancelUsages(userIdsByUsageId.keySet(), now) != userIdsByUsageId.size()) {
+            throw new OptimisticLockingFailureException("Usages were canceled concurrently");
+        }
+        pointBatchRepository.restoreBlocks(restoredByBlockId);
+        expiryBucketRepository.applyAll(bucketChanges);
+        liabilityRepository.applyAll(liabilityChanges);
+        earliestRestoredByUserId.keySet().forEach(blockHeapCache::evictAfterCompletion);
+        // A restored block may expire before the user's current next expiry
+        expiryHintRepository.lowerNextExpiries(earliestRestoredByUserId);
+
+        long restored = 0;
+        long expired = 0;
+        List<LedgerEntry> entries = new ArrayList<>();
+        for (Map.Entry<Integer, Long> refund : refundedByUsageId.entrySet()) {
+            int usageId = refund.getKey();
+            int userId = userIdsByUsageId.get(usageId);
+            entries.add(new LedgerEntry(userId, PointEventType.REFUND, refund.getValue(), null, usageId, now));
+
+            long expiredAmount = expiredByUsageId.getOrDefault(usageId, 0L);
+            if (expiredAmount > 0) {
+                entries.add(new LedgerEntry(userId, PointEventType.EXPIRE, -expiredAmount, null, usageId, now));
+            }
+            restored += refund.getValue() - expiredAmount;
+            expired += expiredAmount;
+        }
+        pointLedger.appendAll(entries);
+
+        return new ChunkResult(userIdsByUsageId.keySet(), restored, expired);
+    }
+
+    private static CancelResult toResult(int requested, List<Integer> usageIds, List<ChunkResult> results) {
+        Set<Integer> canceled = new LinkedHashSet<>();
+        long restored = 0;
+        long expired = 0;
+        for (ChunkResult result : results) {
+            canceled.addAll(result.usageIds());
+            restored += result.restoredPoints();
+            expired += result.expiredPoints();
+        }
+
+        List<Integer> notCancelable =
+                usageIds.stream().filter(id -> !canceled.contains(id)).toList();
+        return new CancelResult(requested, canceled.size(), restored, expired, notCancelable);
+    }
+
+    private record ChunkResult(Set<Integer> usageIds, long restoredPoints, long expiredPoints) {}
+}
@@ -0,0 +1,78 @@
+package me.zhc1.pointsystem.service;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import me.zhc1.pointsystem.config.ShardingProperties;
+import me.zhc1.pointsystem.entity.ShardBucket;
+import me.zhc1.pointsystem.repository.ShardBucketRepository;
+
+// Prepares the shards before any work is routed to them: copies the schema Hibernate created on shard 0
+// to the other shards when asked to, and loads the buckets that were moved away from their default shard.
+// Copied shards start their generated ids at shard * 2^27 + 1, so usage and block ids stay unique across shards.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "point.sharding.enabled", havingValue = "true")
+public class ShardInitializer {
+    private static final int ID_RANGE_BITS = 27;
+
+    // Depending on the factory makes sure Hibernate has created the schema on shard 0
+    private final EntityManagerFactory entityManagerFactory;
+    private final ShardingProperties properties;
+    private final ShardRouter shardRouter;
+    private final ShardBucketRepository shardBucketRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    void initialize() {
+        if (properties.copySchema()) {
+            copySchema();
+        }
+
+        List<ShardBucket> moved = shardRouter.onShard(0, shardBucketRepository::findAll);
+        shardRouter.assignAll(moved.stream().collect(Collectors.toMap(ShardBucket::getBucket, ShardBucket::getShard)));
+        log.info(
+                "Routing {} buckets over {} shards, {} moved",
+                ShardRouter.BUCKETS,
+                shardRouter.shardCount(),
+                moved.size());
+    }
+
+    private void copySchema() {
+        if (shardRouter.shardCount() > 1 << (Integer.SIZE - 1 - ID_RANGE_BITS)) {
+            throw new IllegalStateException("Too many shards for disjoint id ranges: " + shardRouter.shardCount());
+        }
+
+        // H2 only; the script also contains comments and the admin user, which already exists on every shard
+        List<String> statements = shardRouter
+                .onShard(0, () -> jdbcTemplate.queryForList("SCRIPT NODATA", String.class))
+                .stream()
+                .filter(statement -> !statement.startsWith("--") && !statement.startsWith("CREATE USER"))
+                .toList();
+
+        for (int shard = 1; shard < shardRouter.shardCount(); shard++) {
+            long firstId = ((long) shard << ID_RANGE_BITS) + 1;
+            shardRouter.onShard(shard, () -> {
+                statements.forEach(jdbcTemplate::execute);
+                jdbcTemplate.execute("ALTER TABLE point_usages ALTER COLUMN usage_id RESTART WITH " + firstId);
+                jdbcTemplate.execute(
+                        "ALTER TABLE point_usage_details ALTER COLUMN usage_detail_id RESTART WITH " + firstId);
+                jdbcTemplate.execute("ALTER TABLE point_ledger_events ALTER COLUMN event_id RESTART WITH " + firstId);
+                jdbcTemplate.execute("ALTER SEQUENCE point_blocks_seq RESTART WITH " + firstId);
+                return null;
+            });
+        }
+        log.info("Copied {} schema statements to {} shards", statements.size(), shardRouter.shardCount() - 1);
+    }
+}
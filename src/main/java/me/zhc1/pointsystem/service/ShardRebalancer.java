@@ -0,0 +1,197 @@
+package me.zhc1.pointsystem.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import me.zhc1.pointsystem.entity.ShardBucket;
+import me.zhc1.pointsystem.repository.ShardBucketRepository;
+import me.zhc1.pointsystem.repository.UserRepository;
+
+// Moves a bucket of users to another shard: copies their rows, flips the assignment, then deletes the originals.
+// The bucket's write lock keeps work for its users out for the whole move, so nothing is written in between.
+// Single-instance only: the bucket locks and assignments live in this JVM, so writers on any other instance are
+// not held off and would race the copy. Moves must run with one instance serving traffic and no background
+// jobs running; other instances start again afterwards to load the new assignments. A failed move leaves the
+// bucket on its source; the next attempt replaces whatever copies it left on the target.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ShardRebalancer {
+    private static final int USER_CHUNK_SIZE = 500;
+
+    // In foreign key order; user rows stay on shard 0, which is also the registry
+    private static final List<String> TABLES = List.of(
+            "users",
+            "point_blocks",
+            "point_usages",
+            "point_usage_details",
+            "point_ledger_events",
+            "remaining_points",
+            "expiry_buckets",
+            "idempotency_keys",
+            "point_transfers",
+            "point_blocks_archive",
+            "point_usages_archive",
+            "point_usage_details_archive");
+
+    private final ShardRouter shardRouter;
+    private final UserRepository userRepository;
+    private final ShardBucketRepository shardBucketRepository;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public MoveResult moveBucket(int bucket, int targetShard) {
+        if (bucket < 0 || bucket >= ShardRouter.BUCKETS) {
+            throw new IllegalArgumentException("No such bucket: " + bucket);
+        }
+        if (targetShard < 0 || targetShard >= shardRouter.shardCount()) {
+            throw new IllegalArgumentException("No such shard: " + targetShard);
+        }
+
+        Lock lock = shardRouter.bucketWriteLock(bucket);
+        lock.lock();
+        try {
+            int sourceShard = shardRouter.bucketShard(bucket);
+            if (sourceShard == targetShard) {
+                return new MoveResult(bucket, sourceShard, targetShard, 0, 0);
+            }
+
+            long startedAt = System.nanoTime();
+            List<List<Integer>> userChunks = findUsers(bucket, sourceShard);
+
+            long rows = 0;
+            for (List<Integer> userIds : userChunks) {
+                Map<String, List<Map<String, Object>>> rowsByTable =
+                        shardRouter.onShard(sourceShard, () -> readRows(userIds, targetShard != 0));
+                rows += shardRouter.onShard(targetShard, () -> transactionTemplate.execute(status -> {
+                    deleteRows(userIds, targetShard != 0);
+                    return insertRows(rowsByTable);
+                }));
+            }
+
+            ShardBucket moved = new ShardBucket();
+            moved.setBucket(bucket);
+            moved.setShard(targetShard);
+            moved.setMovedAt(LocalDateTime.now());
+            shardRouter.onShard(0, () -> shardBucketRepository.save(moved));
+            shardRouter.assign(bucket, targetShard);
+
+            for (List<Integer> userIds : userChunks) {
+                shardRouter.onShard(sourceShard, () -> transactionTemplate.execute(status -> {
+                    deleteRows(userIds, sourceShard != 0);
+                    return null;
+                }));
+            }
+
+            int users = userChunks.stream().mapToInt(List::size).sum();
+            log.info(
+                    "Moved bucket {} with {} users and {} rows from shard {} to shard {} in {} ms",
+                    bucket,
+                    users,
+                    rows,
+                    sourceShard,
+                    targetShard,
+                    (System.nanoTime() - startedAt) / 1_000_000);
+            return new MoveResult(bucket, sourceShard, targetShard, users, rows);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The source holds a row for each of its users, shard 0 for every user
+    private List<List<Integer>> findUsers(int bucket, int sourceShard) {
+        return shardRouter.onShard(sourceShard, () -> {
+            List<List<Integer>> chunks = new ArrayList<>();
+            List<Integer> chunk = new ArrayList<>(USER_CHUNK_SIZE);
+            int afterUserId = 0;
+            while (true) {
+                List<Integer> userIds = userRepository.findUserIdsAfter(afterUserId, Limit.of(USER_CHUNK_SIZE));
+                if (userIds.isEmpty()) {
+                    break;
+                }
+
+                for (int userId : userIds) {
+                    if (ShardRouter.bucketOf(userId) != bucket) {
+                        continue;
+                    }
+                    chunk.add(userId);
+                    if (chunk.size() == USER_CHUNK_SIZE) {
+                        chunks.add(chunk);
+                        chunk = new ArrayList<>(USER_CHUNK_SIZE);
+                    }
+                }
+                afterUserId = userIds.getLast();
+            }
+            if (!chunk.isEmpty()) {
+                chunks.add(chunk);
+            }
+            return chunks;
+        });
+    }
+
+    private Map<String, List<Map<String, Object>>> readRows(List<Integer> userIds, boolean withUsers) {
+        MapSqlParameterSource params = new MapSqlParameterSource("userIds", userIds);
+        Map<String, List<Map<String, Object>>> rowsByTable = new LinkedHashMap<>();
+        for (String table : tables(withUsers)) {
+            rowsByTable.put(table, jdbcTemplate.queryForList("SELECT * FROM " + table + where(table), params));
+        }
+        return rowsByTable;
+    }
+
+    private long insertRows(Map<String, List<Map<String, Object>>> rowsByTable) {
+        long inserted = 0;
+        for (Map.Entry<String, List<Map<String, Object>>> entry : rowsByTable.entrySet()) {
+            List<Map<String, Object>> rows = entry.getValue();
+            if (rows.isEmpty()) {
+                continue;
+            }
+
+            List<String> columns = List.copyOf(rows.getFirst().keySet());
+            String sql = "INSERT INTO %s (%s) VALUES (%s)"
+                    .formatted(
+                            entry.getKey(),
+                            String.join(", ", columns),
+                            String.join(", ", columns.stream().map(c -> ":" + c).toList()));
+            jdbcTemplate.batchUpdate(
+                    sql, rows.stream().map(MapSqlParameterSource::new).toArray(MapSqlParameterSource[]::new));
+            inserted += rows.size();
+        }
+        return inserted;
+    }
+
+    private void deleteRows(List<Integer> userIds, boolean withUsers) {
+        MapSqlParameterSource params = new MapSqlParameterSource("userIds", userIds);
+        List<String> tables = new ArrayList<>(tables(withUsers));
+        Collections.reverse(tables);
+        for (String table : tables) {
+            jdbcTemplate.update("DELETE FROM " + table + where(table), params);
+        }
+    }
+
+    private static List<String> tables(boolean withUsers) {
+        return withUsers ? TABLES : TABLES.subList(1, TABLES.size());
+    }
+
+    private static String where(String table) {
+        // Usage details only reference their usage
+        return table.equals("point_usage_details")
+                ? " WHERE usage_id IN (SELECT usage_id FROM point_usages WHERE user_id IN (:userIds))"
+                : " WHERE user_id IN (:userIds)";
+    }
+
+    public record MoveResult(int bucket, int sourceShard, int targetShard, int users, long rows) {}
+}
@@ -0,0 +1,200 @@
+package me.zhc1.pointsystem.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import me.zhc1.pointsystem.config.ShardContext;
+import me.zhc1.pointsystem.config.ShardingProperties;
+
+// Maps users to shards and runs work against a shard.
+// Users hash into a fixed number of buckets and every bucket is assigned to a shard, so that rebalancing moves
+// whole buckets (see ShardRebalancer). Work for a user holds the read lock of its bucket, a move holds the write lock.
+// Without sharding there is a single shard and routing costs nothing.
+@Component
+public class ShardRouter {
+    public static final int BUCKETS = 1024;
+
+    private final boolean sharded;
+    private final int shardCount;
+    private final AtomicIntegerArray assignments = new AtomicIntegerArray(BUCKETS);
+    private final ReentrantReadWriteLock[] bucketLocks;
+
+    public ShardRouter(ShardingProperties properties) {
+        this.sharded = properties.enabled();
+        this.shardCount = sharded ? properties.urls().size() : 1;
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Sharding needs at least one shard url");
+        }
+
+        this.bucketLocks = new ReentrantReadWriteLock[sharded ? BUCKETS : 0];
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            assignments.set(bucket, bucket % shardCount);
+            if (sharded) {
+                bucketLocks[bucket] = new ReentrantReadWriteLock();
+            }
+        }
+    }
+
+    public int shardCount() {
+        return shardCount;
+    }
+
+    public List<Integer> shards() {
+        return IntStream.range(0, shardCount).boxed().toList();
+    }
+
+    public int shardOf(int userId) {
+        return assignments.get(bucketOf(userId));
+    }
+
+    // murmur3 finalizer, so that consecutive user ids spread over all buckets
+    public static int bucketOf(int userId) {
+        int h = userId;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return Math.floorMod(h, BUCKETS);
+    }
+
+    public <T> T forUser(int userId, Supplier<T> work) {
+        if (!sharded) {
+            return work.get();
+        }
+
+        Lock lock = bucketLocks[bucketOf(userId)].readLock();
+        lock.lock();
+        try {
+            return onShard(shardOf(userId), work);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void forUser(int userId, Runnable work) {
+        forUser(userId, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    // Work on several users in one transaction, which needs all of them on one shard. The read locks of their
+    // buckets are taken in ascending order, so a move waiting for one of them cannot wedge two such callers.
+    public <T> T forUsers(Collection<Integer> userIds, Supplier<T> work) {
+        if (userIds.isEmpty()) {
+            throw new IllegalArgumentException("No users given");
+        }
+        if (!sharded) {
+            return work.get();
+        }
+
+        int[] buckets = userIds.stream()
+                .mapToInt(ShardRouter::bucketOf)
+                .distinct()
+                .sorted()
+                .toArray();
+        List<Lock> locks = new ArrayList<>(buckets.length);
+        try {
+            for (int bucket : buckets) {
+                Lock lock = bucketLocks[bucket].readLock();
+                lock.lock();
+                locks.add(lock);
+            }
+
+            int shard = assignments.get(buckets[0]);
+            for (int bucket : buckets) {
+                if (assignments.get(bucket) != shard) {
+                    throw new IllegalStateException("Users live on different shards: " + userIds);
+                }
+            }
+            return onShard(shard, work);
+        } finally {
+            locks.forEach(Lock::unlock);
+        }
+    }
+
+    public <T> T onShard(int shard, Supplier<T> work) {
+        Integer previous = ShardContext.current();
+        int current = previous == null ? 0 : previous;
+        // The transaction is bound to the connection of the shard it began on
+        if (shard != current && TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException(
+                    "Cannot switch to shard %s inside a transaction on shard %s".formatted(shard, current));
+        }
+
+        ShardContext.set(shard);
+        try {
+            return work.get();
+        } finally {
+            ShardContext.set(previous);
+        }
+    }
+
+    // Runs the work on every shard, in parallel when there is more than one, and returns the results in shard order
+    public <T> List<T> onEachShard(IntFunction<T> work) {
+        if (shardCount == 1) {
+            return Collections.singletonList(onShard(0, () -> work.apply(0)));
+        }
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<T>> futures = new ArrayList<>(shardCount);
+            for (int shard = 0; shard < shardCount; shard++) {
+                int target = shard;
+                futures.add(executor.submit(() -> onShard(target, () -> work.apply(target))));
+            }
+
+            List<T> results = new ArrayList<>(shardCount);
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Shard work failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for shard work", e);
+        }
+    }
+
+    int bucketShard(int bucket) {
+        return assignments.get(bucket);
+    }
+
+    Lock bucketWriteLock(int bucket) {
+        if (!sharded) {
+            throw new IllegalStateException("Sharding is not enabled");
+        }
+        return bucketLocks[bucket].writeLock();
+    }
+
+    void assign(int bucket, int shard) {
+        if (shard < 0 || shard >= shardCount) {
+            throw new IllegalArgumentException("No such shard: " + shard);
+        }
+        assignments.set(bucket, shard);
+    }
+
+    void assignAll(Map<Integer, Integer> shardsByBucket) {
+        shardsByBucket.forEach(this::assign);
+    }
+}
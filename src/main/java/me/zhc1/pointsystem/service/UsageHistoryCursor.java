@@ -0,0 +1,28 @@
+package me.zhc1.pointsystem.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+// Position after the last usage of a history page. Opaque to clients, who only hand it back.
+record UsageHistoryCursor(LocalDateTime usedAt, int usageId) {
+
+    String encode() {
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString((usedAt + "|" + usageId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static UsageHistoryCursor decode(String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decoded.lastIndexOf('|');
+            return new UsageHistoryCursor(
+                    LocalDateTime.parse(decoded.substring(0, separator)),
+                    Integer.parseInt(decoded.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+}
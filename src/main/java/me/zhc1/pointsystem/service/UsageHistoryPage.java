@@ -0,0 +1,12 @@
+package me.zhc1.pointsystem.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// nextCursor is null on the last page
+public record UsageHistoryPage(List<Item> items, String nextCursor) {
+    // details is empty unless the page was requested with details
+    public record Item(int usageId, long amount, LocalDateTime usedAt, LocalDateTime canceledAt, List<Detail> details) {}
+
+    public record Detail(int blockId, long amount, LocalDateTime blockExpiresAt) {}
+}
@@ -0,0 +1,120 @@
+package me.zhc1.pointsystem.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import jakarta.persistence.EntityNotFoundException;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+
+import me.zhc1.pointsystem.repository.ArchiveRepository;
+import me.zhc1.pointsystem.repository.PointUsageRepository;
+import me.zhc1.pointsystem.repository.UsageDetailSummary;
+import me.zhc1.pointsystem.repository.UsageSummary;
+import me.zhc1.pointsystem.repository.UserRepository;
+import me.zhc1.pointsystem.service.UsageHistoryPage.Detail;
+import me.zhc1.pointsystem.service.UsageHistoryPage.Item;
+
+// Reads usage history newest first, one keyset page at a time, so a page costs the same however long the history is.
+// A page is one projection query, plus one query for the details of all its usages when they are requested.
+// Archived usages are only read when asked for: the archive is then paged with the same keyset and merged in.
+@Component
+@RequiredArgsConstructor
+public class UsageHistoryReader {
+    static final int MAX_PAGE_SIZE = 100;
+
+    private final PointUsageRepository pointUsageRepository;
+    private final UserRepository userRepository;
+    private final ArchiveRepository archiveRepository;
+
+    public UsageHistoryPage read(int userId, String cursor, int size, boolean withDetails) {
+        return read(userId, cursor, size, withDetails, false);
+    }
+
+    public UsageHistoryPage read(int userId, String cursor, int size, boolean withDetails, boolean includeArchived) {
+        if (size <= 0 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and %s".formatted(MAX_PAGE_SIZE));
+        }
+
+        // One extra row tells whether another page follows
+        Limit limit = Limit.of(size + 1);
+        UsageHistoryCursor position = cursor == null ? null : UsageHistoryCursor.decode(cursor);
+        List<UsageSummary> usages = position == null
+                ? pointUsageRepository.findHistory(userId, limit)
+                : pointUsageRepository.findHistoryBefore(userId, position.usedAt(), position.usageId(), limit);
+
+        // Read after the live rows, so a usage archived in between shows up here rather than nowhere
+        Set<Integer> archivedIds = Set.of();
+        if (includeArchived) {
+            List<UsageSummary> archived = position == null
+                    ? archiveRepository.findHistory(userId, size + 1)
+                    : archiveRepository.findHistoryBefore(userId, position.usedAt(), position.usageId(), size + 1);
+            archivedIds = archived.stream().map(UsageSummary::usageId).collect(Collectors.toSet());
+            usages = merge(usages, archived, size + 1);
+        }
+        if (position == null && usages.isEmpty() && !userRepository.existsById(userId)) {
+            throw new EntityNotFoundException("User not found");
+        }
+
+        String nextCursor = null;
+        if (usages.size() > size) {
+            usages = usages.subList(0, size);
+            UsageSummary last = usages.getLast();
+            nextCursor = new UsageHistoryCursor(last.usedAt(), last.usageId()).encode();
+        }
+
+        Map<Integer, List<Detail>> details =
+                withDetails && !usages.isEmpty() ? findDetails(usages, archivedIds) : Map.of();
+
+        List<Item> items = usages.stream()
+                .map(usage -> new Item(
+                        usage.usageId(),
+                        usage.amount(),
+                        usage.usedAt(),
+                        usage.canceledAt(),
+                        details.getOrDefault(usage.usageId(), List.of())))
+                .toList();
+        return new UsageHistoryPage(items, nextCursor);
+    }
+
+    private Map<Integer, List<Detail>> findDetails(List<UsageSummary> usages, Set<Integer> archivedIds) {
+        Map<Boolean, List<Integer>> usageIdsByArchived = usages.stream()
+                .map(UsageSummary::usageId)
+                .collect(Collectors.partitioningBy(archivedIds::contains));
+
+        List<UsageDetailSummary> found = new ArrayList<>();
+        if (!usageIdsByArchived.get(false).isEmpty()) {
+            found.addAll(pointUsageRepository.findDetails(usageIdsByArchived.get(false)));
+        }
+        if (!usageIdsByArchived.get(true).isEmpty()) {
+            found.addAll(archiveRepository.findDetails(usageIdsByArchived.get(true)));
+        }
+        return found.stream()
+                .collect(Collectors.groupingBy(
+                        UsageDetailSummary::usageId,
+                        Collectors.mapping(
+                                detail -> new Detail(detail.blockId(), detail.amount(), detail.blockExpiresAt()),
+                                Collectors.toList())));
+    }
+
+    // Both lists are newest first; a usage read from both sides is kept once
+    private static List<UsageSummary> merge(List<UsageSummary> live, List<UsageSummary> archived, int limit) {
+        Map<Integer, UsageSummary> byId = new LinkedHashMap<>();
+        Stream.concat(live.stream(), archived.stream()).forEach(usage -> byId.putIfAbsent(usage.usageId(), usage));
+        return byId.values().stream()
+                .sorted(Comparator.comparing(UsageSummary::usedAt)
+                        .thenComparing(UsageSummary::usageId)
+                        .reversed())
+                .limit(limit)
+                .toList();
+    }
+}
@@ -0,0 +1,123 @@
+package me.zhc1.pointsystem.service;
+
+// Sliding-window counters of one user in two fixed rings of primitive slots: event counts in ten-second slots
+// covering a minute, spent points in ten-minute slots covering an hour. A slot is cleared lazily when the ring
+// comes back around to it, so a window covers between five and six of its slots' worth of time.
+final class UserActivityWindow {
+    static final long MINUTE_MILLIS = 60_000;
+    static final long HOUR_MILLIS = 3_600_000;
+    // The two rings and three longs, plus the headers of the object, its arrays and its cache entry
+    static final int WEIGHT = 96 + 3 * Long.BYTES + 6 * Integer.BYTES + 6 * Long.BYTES;
+
+    private static final int SLOTS = 6;
+    private static final long EVENT_SLOT_MILLIS = MINUTE_MILLIS / SLOTS;
+    private static final long SPEND_SLOT_MILLIS = HOUR_MILLIS / SLOTS;
+
+    private final int[] events = new int[SLOTS];
+    private final long[] spent = new long[SLOTS];
+    private long eventSlot;
+    private long spendSlot;
+    // Epoch millis of the last large earn not yet followed by a spend, 0 if none
+    private long largeEarnAt;
+
+    // Returns the events of the last minute, this one included
+    synchronized int recordEvent(long nowMillis) {
+        long slot = nowMillis / EVENT_SLOT_MILLIS;
+        for (long s = Math.max(eventSlot + 1, slot - SLOTS + 1); s <= slot; s++) {
+            events[(int) (s % SLOTS)] = 0;
+        }
+        eventSlot = Math.max(eventSlot, slot);
+        events[(int) (slot % SLOTS)]++;
+
+        int sum = 0;
+        for (int count : events) {
+            sum += count;
+        }
+        return sum;
+    }
+
+    // Returns the points spent in the last hour, this spend included
+    synchronized long recordSpend(long nowMillis, long amount) {
+        long slot = nowMillis / SPEND_SLOT_MILLIS;
+        for (long s = Math.max(spendSlot + 1, slot - SLOTS + 1); s <= slot; s++) {
+            spent[(int) (s % SLOTS)] = 0;
+        }
+        spendSlot = Math.max(spendSlot, slot);
+        spent[(int) (slot % SLOTS)] += amount;
+
+        long sum = 0;
+        for (long points : spent) {
+            sum += points;
+        }
+        return sum;
+    }
+
+    // Events of the last minute, without recording one
+    synchronized int eventsAt(long nowMillis) {
+        long slot = nowMillis / EVENT_SLOT_MILLIS;
+        int sum = 0;
+        for (long s = Math.max(eventSlot - SLOTS + 1, slot - SLOTS + 1); s <= eventSlot; s++) {
+            sum += events[(int) (s % SLOTS)];
+        }
+        return sum;
+    }
+
+    // Points spent in the last hour, without recording a spend
+    synchronized long spentAt(long nowMillis) {
+        long slot = nowMillis / SPEND_SLOT_MILLIS;
+        long sum = 0;
+        for (long s = Math.max(spendSlot - SLOTS + 1, slot - SLOTS + 1); s <= spendSlot; s++) {
+            sum += spent[(int) (s % SLOTS)];
+        }
+        return sum;
+    }
+
+    // Takes back an event recorded at the given time, unless its slot has rotated out since
+    synchronized void releaseEvent(long atMillis) {
+        long slot = atMillis / EVENT_SLOT_MILLIS;
+        if (slot > eventSlot - SLOTS && events[(int) (slot % SLOTS)] > 0) {
+            events[(int) (slot % SLOTS)]--;
+        }
+    }
+
+    synchronized void releaseSpend(long atMillis, long amount) {
+        long slot = atMillis / SPEND_SLOT_MILLIS;
+        if (slot > spendSlot - SLOTS) {
+            spent[(int) (slot % SLOTS)] = Math.max(spent[(int) (slot % SLOTS)] - amount, 0);
+        }
+    }
+
+    synchronized void recordLargeEarn(long nowMillis) {
+        largeEarnAt = nowMillis;
+    }
+
+    synchronized long largeEarnAt() {
+        return largeEarnAt;
+    }
+
+    // Takes back the large earn recorded at the given time, unless a later one has replaced it
+    synchronized void releaseLargeEarn(long atMillis) {
+        if (largeEarnAt == atMillis) {
+            largeEarnAt = 0;
+        }
+    }
+
+    // Puts back a large earn that a spend had taken, unless a later one has been recorded since
+    synchronized void restoreLargeEarn(long earnedAtMillis) {
+        if (largeEarnAt == 0) {
+            largeEarnAt = earnedAtMillis;
+        }
+    }
+
+    // Whether a spend now would be the first within the given time after a large earn
+    synchronized boolean isSpendAfterLargeEarn(long nowMillis, long withinMillis) {
+        return largeEarnAt != 0 && nowMillis - largeEarnAt <= withinMillis;
+    }
+
+    // Whether this is the first spend within the given time after a large earn; only the first one counts
+    synchronized boolean takeSpendAfterLargeEarn(long nowMillis, long withinMillis) {
+        boolean quick = isSpendAfterLargeEarn(nowMillis, withinMillis);
+        largeEarnAt = 0;
+        return quick;
+    }
+}
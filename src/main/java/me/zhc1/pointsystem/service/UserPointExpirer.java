@@ -0,0 +1,55 @@
+package me.zhc1.pointsystem.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+
+import me.zhc1.pointsystem.entity.PointEventType;
+import me.zhc1.pointsystem.repository.ExpiringBlock;
+import me.zhc1.pointsystem.repository.ExpiryBucketChange;
+import me.zhc1.pointsystem.repository.ExpiryBucketRepository;
+import me.zhc1.pointsystem.repository.ExpiryHintRepository;
+import me.zhc1.pointsystem.repository.LedgerEntry;
+import me.zhc1.pointsystem.repository.LiabilityChange;
+import me.zhc1.pointsystem.repository.LiabilityRepository;
+import me.zhc1.pointsystem.repository.PointBatchRepository;
+
+// Expires the due blocks of one user on that user's own read or use path, so the balance is correct at any moment
+// instead of only after the background sweep. Runs in the caller's transaction, under the user's lock.
+@Component
+@RequiredArgsConstructor
+public class UserPointExpirer {
+    private final PointBatchRepository pointBatchRepository;
+    private final ExpiryHintRepository expiryHintRepository;
+    private final PointLedger pointLedger;
+    private final ExpiryBucketRepository expiryBucketRepository;
+    private final LiabilityRepository liabilityRepository;
+
+    public long expireDue(int userId, LocalDateTime now) {
+        List<ExpiringBlock> blocks = pointBatchRepository.lockExpiredBlocksOfUser(userId, now);
+
+        long points = 0;
+        if (!blocks.isEmpty()) {
+            pointBatchRepository.expireBlocks(blocks);
+            expiryBucketRepository.applyAll(blocks.stream()
+                    .map(block -> ExpiryBucketChange.of(userId, block.expiresAt(), -block.remainingAmount()))
+                    .toList());
+            liabilityRepository.applyAll(blocks.stream()
+                    .map(block -> LiabilityChange.expired(
+                            userId, now, block.earnedAt().toLocalDate(), block.remainingAmount()))
+                    .toList());
+            pointLedger.appendAll(blocks.stream()
+                    .map(block -> new LedgerEntry(
+                            userId, PointEventType.EXPIRE, -block.remainingAmount(), block.blockId(), null, now))
+                    .toList());
+            points = blocks.stream().mapToLong(ExpiringBlock::remainingAmount).sum();
+        }
+
+        // Also needed without expired blocks: the earliest block may have been spent or swept in the meantime
+        expiryHintRepository.resetNextExpiry(userId);
+        return points;
+    }
+}
@@ -0,0 +1,43 @@
+package me.zhc1.pointsystem.service;
+
+import java.time.LocalDateTime;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+
+import me.zhc1.pointsystem.entity.User;
+import me.zhc1.pointsystem.repository.UserRepository;
+
+// Creates users. Shard 0 is the registry that hands out user ids and keeps usernames and emails unique;
+// the shard owning the user gets a copy of the row for its own foreign keys.
+@Component
+@RequiredArgsConstructor
+public class UserRegistrar {
+    private final UserRepository userRepository;
+    private final ShardRouter shardRouter;
+    private final JdbcTemplate jdbcTemplate;
+
+    public User register(String username, String email) {
+        LocalDateTime now = LocalDateTime.now();
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(email);
+        user.setCreatedAt(now);
+        user.setUpdatedAt(now);
+        User registered = shardRouter.onShard(0, () -> userRepository.save(user));
+
+        int shard = shardRouter.shardOf(registered.getUserId());
+        if (shard != 0) {
+            shardRouter.onShard(shard, () -> jdbcTemplate.update(
+                    "INSERT INTO users (user_id, username, email, created_at, updated_at) VALUES (?, ?, ?, ?, ?)",
+                    registered.getUserId(),
+                    registered.getUsername(),
+                    registered.getEmail(),
+                    registered.getCreatedAt(),
+                    registered.getUpdatedAt()));
+        }
+        return registered;
+    }
+}
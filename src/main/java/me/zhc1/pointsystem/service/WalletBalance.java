@@ -0,0 +1,6 @@
+package me.zhc1.pointsystem.service;
+
+import java.util.List;
+
+// Sum of the members' balances; each member's share still belongs to that member
+public record WalletBalance(int walletId, List<Integer> memberIds, long availablePoints) {}
@@ -0,0 +1,116 @@
+package me.zhc1.pointsystem.service;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+import jakarta.persistence.EntityNotFoundException;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.RequiredArgsConstructor;
+
+import me.zhc1.pointsystem.entity.Wallet;
+import me.zhc1.pointsystem.entity.WalletMember;
+import me.zhc1.pointsystem.repository.UserRepository;
+import me.zhc1.pointsystem.repository.WalletMemberRepository;
+import me.zhc1.pointsystem.repository.WalletRepository;
+
+// Creates wallets and changes their members, all on shard 0 where every user is registered.
+// Changing members moves no points: a wallet only decides whose blocks a spend may take from.
+@Component
+@RequiredArgsConstructor
+public class WalletRegistry {
+    private final WalletRepository walletRepository;
+    private final WalletMemberRepository walletMemberRepository;
+    private final UserRepository userRepository;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate transactionTemplate;
+
+    public Wallet create(String name, Collection<Integer> userIds) {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("Wallet name is required");
+        }
+
+        return onRegistry(() -> {
+            LocalDateTime now = LocalDateTime.now();
+            Wallet wallet = new Wallet();
+            wallet.setName(name);
+            wallet.setCreatedAt(now);
+            walletRepository.save(wallet);
+            userIds.stream().distinct().forEach(userId -> join(wallet.getWalletId(), userId, now));
+            return wallet;
+        });
+    }
+
+    // In ascending user id order
+    public List<Integer> members(int walletId) {
+        return onRegistry(() -> {
+            findWallet(walletId);
+            return walletMemberRepository.findUserIds(walletId);
+        });
+    }
+
+    public void addMember(int walletId, int userId) {
+        onRegistry(() -> {
+            findWallet(walletId);
+            join(walletId, userId, LocalDateTime.now());
+            return null;
+        });
+    }
+
+    public void removeMember(int walletId, int userId) {
+        onRegistry(() -> {
+            WalletMember.Key key = new WalletMember.Key(walletId, userId);
+            if (!walletMemberRepository.existsById(key)) {
+                throw new EntityNotFoundException("Wallet member not found");
+            }
+            walletMemberRepository.deleteById(key);
+            return null;
+        });
+    }
+
+    // Moves the members of the other wallet into this one and deletes the other wallet
+    public void merge(int walletId, int otherWalletId) {
+        if (walletId == otherWalletId) {
+            throw new IllegalArgumentException("Cannot merge a wallet into itself");
+        }
+
+        onRegistry(() -> {
+            findWallet(walletId);
+            Wallet other = findWallet(otherWalletId);
+            LocalDateTime now = LocalDateTime.now();
+            List<WalletMember> members = walletMemberRepository.findByWalletId(otherWalletId);
+            members.forEach(member -> join(walletId, member.getUserId(), now));
+            walletMemberRepository.deleteAll(members);
+            walletRepository.delete(other);
+            return null;
+        });
+    }
+
+    // Joining a wallet twice keeps the first membership
+    private void join(int walletId, int userId, LocalDateTime now) {
+        if (!userRepository.existsById(userId)) {
+            throw new EntityNotFoundException("User not found");
+        }
+        if (walletMemberRepository.existsById(new WalletMember.Key(walletId, userId))) {
+            return;
+        }
+
+        WalletMember member = new WalletMember();
+        member.setWalletId(walletId);
+        member.setUserId(userId);
+        member.setJoinedAt(now);
+        walletMemberRepository.save(member);
+    }
+
+    private Wallet findWallet(int walletId) {
+        return walletRepository.findById(walletId).orElseThrow(() -> new EntityNotFoundException("Wallet not found"));
+    }
+
+    private <T> T onRegistry(Supplier<T> work) {
+        return shardRouter.onShard(0, () -> transactionTemplate.execute(status -> work.get()));
+    }
+}
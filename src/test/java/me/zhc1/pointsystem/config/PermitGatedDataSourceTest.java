@@ -0,0 +1,39 @@
+package me.zhc1.pointsystem.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+class PermitGatedDataSourceTest {
+    private final PermitGatedDataSource dataSource = new PermitGatedDataSource(
+            new DriverManagerDataSource("jdbc:h2:mem:permits;DB_CLOSE_DELAY=-1"), 1, Duration.ofMillis(50));
+
+    @Test
+    void getConnection_ShouldNotWait_WhenThreadAlreadyHoldsAPermit() throws Exception {
+        try (Connection outer = dataSource.getConnection()) {
+            // As for a REQUIRES_NEW transaction inside the outer one
+            try (Connection nested = dataSource.getConnection()) {
+                assertEquals(0, dataSource.availablePermits());
+            }
+            assertEquals(0, dataSource.availablePermits());
+
+            // Other threads still wait for the only permit
+            CompletableFuture<Connection> other = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return dataSource.getConnection();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            Exception timedOut = assertThrows(Exception.class, other::join);
+            assertInstanceOf(SQLTransientConnectionException.class, timedOut.getCause().getCause());
+        }
+        assertEquals(1, dataSource.availablePermits());
+    }
+}
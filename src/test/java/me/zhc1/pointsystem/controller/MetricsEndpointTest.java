@@ -0,0 +1,52 @@
+package me.zhc1.pointsystem.controller;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import me.zhc1.pointsystem.service.PointService;
+import me.zhc1.pointsystem.service.UserRegistrar;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+class MetricsEndpointTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PointService pointService;
+
+    @Autowired
+    private UserRegistrar userRegistrar;
+
+    @Test
+    void prometheus_ShouldExposePointMetrics() throws Exception {
+        String name = UUID.randomUUID().toString();
+        int userId = userRegistrar.register(name, name + "@example.com").getUserId();
+
+        pointService.earnPoints(userId, 100L, LocalDateTime.now().plusDays(1));
+        pointService.usePoints(userId, 30L);
+        pointService.getAvailablePoints(userId);
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("point_operation_seconds_count{")))
+                .andExpect(content().string(containsString("operation=\"use\"")))
+                .andExpect(content().string(containsString("point_operation_statements_count{")))
+                .andExpect(content().string(containsString("point_use_blocks_scanned_count")))
+                .andExpect(content().string(containsString("cache=\"balances\"")));
+    }
+}
@@ -0,0 +1,182 @@
+package me.zhc1.pointsystem.controller;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import me.zhc1.pointsystem.entity.User;
+import me.zhc1.pointsystem.repository.UserRepository;
+import me.zhc1.pointsystem.service.Grant;
+import me.zhc1.pointsystem.service.PointService;
+
+// Bursts of concurrent balance checks and usages against the HTTP API, on platform and on virtual threads.
+// Excluded from the default test task, run with ./gradlew loadTest
+@Tag("load")
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"server.tomcat.max-connections=60000", "server.tomcat.accept-count=10000"})
+class PointLoadTest {
+    private static final Logger log = LoggerFactory.getLogger(PointLoadTest.class);
+    private static final int USERS = 1_000;
+    private static final long POINTS_PER_USER = 1_000_000L;
+    // One in ten requests spends points, the rest read the balance
+    private static final int USAGE_RATIO = 10;
+    // Localhost runs out of ephemeral ports long before 50k sockets; bursts beyond this queue on the client
+    // and their latency includes that wait, just like a real burst would
+    private static final int MAX_OPEN_SOCKETS = 8_000;
+
+    @Nested
+    @TestPropertySource(properties = "spring.threads.virtual.enabled=false")
+    class PlatformThreads {
+        @ParameterizedTest
+        @ValueSource(ints = {1_000, 10_000, 50_000})
+        void burst(
+                int requests,
+                @LocalServerPort int port,
+                @Autowired PointService pointService,
+                @Autowired UserRepository userRepository)
+                throws Exception {
+            run("platform threads", requests, port, pointService, userRepository);
+        }
+    }
+
+    @Nested
+    @ActiveProfiles("virtual-threads")
+    class VirtualThreads {
+        @ParameterizedTest
+        @ValueSource(ints = {1_000, 10_000, 50_000})
+        void burst(
+                int requests,
+                @LocalServerPort int port,
+                @Autowired PointService pointService,
+                @Autowired UserRepository userRepository)
+                throws Exception {
+            run("virtual threads", requests, port, pointService, userRepository);
+        }
+    }
+
+    private static void run(
+            String label, int requests, int port, PointService pointService, UserRepository userRepository)
+            throws Exception {
+        int[] userIds = seedUsers(pointService, userRepository);
+        String baseUrl = "http://localhost:" + port + "/api/points/";
+
+        long[] latencies = new long[requests];
+        AtomicInteger failed = new AtomicInteger();
+        Semaphore sockets = new Semaphore(MAX_OPEN_SOCKETS);
+        CountDownLatch start = new CountDownLatch(1);
+
+        long startedAt;
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+                HttpClient http = HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_1_1)
+                        .connectTimeout(Duration.ofSeconds(30))
+                        .executor(clients)
+                        .build()) {
+            for (int i = 0; i < requests; i++) {
+                int index = i;
+                int userId = userIds[ThreadLocalRandom.current().nextInt(userIds.length)];
+                HttpRequest request = index % USAGE_RATIO == 0
+                        ? HttpRequest.newBuilder(URI.create(baseUrl + userId + "/usages"))
+                                .header("Content-Type", "application/json")
+                                .POST(HttpRequest.BodyPublishers.ofString("{\"amount\":1}"))
+                                .build()
+                        : HttpRequest.newBuilder(URI.create(baseUrl + userId))
+                                .GET()
+                                .build();
+
+                clients.submit(() -> {
+                    start.await();
+                    long sentAt = System.nanoTime();
+                    sockets.acquire();
+                    try {
+                        HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() >= 400) {
+                            failed.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                    } finally {
+                        sockets.release();
+                        latencies[index] = System.nanoTime() - sentAt;
+                    }
+                    return null;
+                });
+            }
+
+            startedAt = System.nanoTime();
+            start.countDown();
+            clients.shutdown();
+            assertTrue(clients.awaitTermination(10, TimeUnit.MINUTES));
+        }
+        long elapsed = System.nanoTime() - startedAt;
+
+        Arrays.sort(latencies);
+        // A comparison between thread models on whatever machine runs it, so it is reported rather than asserted
+        log.info(String.format(
+                "[%s] %d requests in %d ms (%.0f req/s), failed %d, p50 %.1f ms, p95 %.1f ms, p99 %.1f ms, max %.1f ms",
+                label,
+                requests,
+                elapsed / 1_000_000,
+                requests * 1_000_000_000.0 / elapsed,
+                failed.get(),
+                percentile(latencies, 0.50),
+                percentile(latencies, 0.95),
+                percentile(latencies, 0.99),
+                latencies[latencies.length - 1] / 1_000_000.0));
+    }
+
+    private static double percentile(long[] sortedLatencies, double percentile) {
+        int index = (int) Math.ceil(percentile * sortedLatencies.length) - 1;
+        return sortedLatencies[Math.max(index, 0)] / 1_000_000.0;
+    }
+
+    private static int[] seedUsers(PointService pointService, UserRepository userRepository) {
+        List<User> users = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            String name = UUID.randomUUID().toString();
+            User user = new User();
+            user.setUsername(name);
+            user.setEmail(name + "@example.com");
+            user.setCreatedAt(LocalDateTime.now());
+            user.setUpdatedAt(LocalDateTime.now());
+            users.add(user);
+        }
+
+        int[] userIds =
+                userRepository.saveAll(users).stream().mapToInt(User::getUserId).toArray();
+        LocalDateTime expiresAt = LocalDateTime.now().plusDays(30);
+        pointService.earnPointsBulk(Arrays.stream(userIds)
+                .mapToObj(userId -> new Grant(userId, POINTS_PER_USER, expiresAt))
+                .toList());
+        return userIds;
+    }
+}
@@ -0,0 +1,106 @@
+package me.zhc1.pointsystem.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import me.zhc1.pointsystem.config.BalanceCacheProperties;
+import me.zhc1.pointsystem.repository.AvailableBalance;
+
+class BalanceCacheTest {
+    private static final int USER_ID = 1;
+
+    private BalanceCache balanceCache;
+    private AtomicLong storedBalance;
+
+    @BeforeEach
+    void setUp() {
+        balanceCache = new BalanceCache(new BalanceCacheProperties(true, 100, Duration.ofMinutes(1), 16));
+        storedBalance = new AtomicLong(100L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void get_ShouldServeCachedBalance_WhenLoadedBefore() {
+        balanceCache.get(USER_ID, this::load);
+        storedBalance.set(50L);
+
+        assertEquals(100L, balanceCache.get(USER_ID, this::load).points());
+        assertEquals(1, balanceCache.stats().hitCount());
+        assertEquals(1, balanceCache.stats().missCount());
+    }
+
+    @Test
+    void evictAfterCommit_ShouldKeepCachedBalance_UntilTransactionCompletes() {
+        balanceCache.get(USER_ID, this::load);
+
+        TransactionSynchronizationManager.initSynchronization();
+        balanceCache.evictAfterCommit(USER_ID);
+        storedBalance.set(50L);
+
+        assertEquals(100L, balanceCache.get(USER_ID, this::load).points());
+
+        completeTransaction();
+
+        assertEquals(50L, balanceCache.get(USER_ID, this::load).points());
+    }
+
+    @Test
+    void get_ShouldBypassCache_WhileWriterIsCommitting() {
+        balanceCache.get(USER_ID, this::load);
+
+        TransactionSynchronizationManager.initSynchronization();
+        balanceCache.evictAfterCommit(USER_ID);
+        TransactionSynchronizationManager.getSynchronizations().forEach(sync -> sync.beforeCommit(false));
+        storedBalance.set(50L);
+
+        // The new value is already committed in the store, the stale entry must not be served
+        assertEquals(50L, balanceCache.get(USER_ID, this::load).points());
+
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+    }
+
+    @Test
+    void get_ShouldNotCacheBalance_WhenWriterCompletedDuringLoad() {
+        balanceCache.get(USER_ID, userId -> {
+            balanceCache.evict(USER_ID);
+            return new AvailableBalance(storedBalance.getAndSet(50L), null);
+        });
+
+        assertEquals(50L, balanceCache.get(USER_ID, this::load).points());
+    }
+
+    @Test
+    void get_ShouldReload_WhenNextExpiryHasPassed() {
+        balanceCache.get(USER_ID, userId -> new AvailableBalance(storedBalance.get(), LocalDateTime.now()));
+        storedBalance.set(50L);
+
+        assertEquals(50L, balanceCache.get(USER_ID, this::load).points());
+    }
+
+    private AvailableBalance load(int userId) {
+        return new AvailableBalance(storedBalance.get(), null);
+    }
+
+    private void completeTransaction() {
+        var synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.forEach(sync -> sync.beforeCommit(false));
+        synchronizations.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+}
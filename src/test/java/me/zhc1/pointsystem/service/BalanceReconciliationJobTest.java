@@ -0,0 +1,116 @@
+package me.zhc1.pointsystem.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import me.zhc1.pointsystem.repository.BalanceMismatch;
+import me.zhc1.pointsystem.repository.LiabilityRepository;
+import me.zhc1.pointsystem.service.BalanceReconciliationJob.ReconciliationReport;
+
+@SpringBootTest(
+        properties = {
+            "point.reconciliation.partition-size=3",
+            "point.reconciliation.parallelism=2",
+            "point.reconciliation.partitions-per-second=1000"
+        })
+class BalanceReconciliationJobTest {
+
+    @Autowired
+    private PointService pointService;
+
+    @Autowired
+    private BalanceReconciliationJob reconciliationJob;
+
+    @Autowired
+    private UserRegistrar userRegistrar;
+
+    @Autowired
+    private LiabilityRepository liabilityRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private int userId;
+
+    @BeforeEach
+    void setUp() {
+        String name = UUID.randomUUID().toString();
+        userId = userRegistrar.register(name, name + "@example.com").getUserId();
+
+        pointService.earnPoints(userId, 100L, LocalDateTime.now().plusDays(1));
+        pointService.earnPoints(userId, 50L, LocalDateTime.now().minusSeconds(1));
+        pointService.usePoints(userId, 30L);
+    }
+
+    @Test
+    void run_ShouldFindNoMismatch_WhenBalanceMatchesBlocks() {
+        ReconciliationReport report = reconciliationJob.run(false);
+
+        assertTrue(report.partitions() > 1);
+        assertTrue(findMismatch(report).isEmpty());
+    }
+
+    @Test
+    void run_ShouldReportDrift_WithoutRepairing() {
+        takeFromLiveBlock(7L);
+
+        BalanceMismatch mismatch = findMismatch(reconciliationJob.run(false)).orElseThrow();
+
+        assertEquals(7L, mismatch.drift());
+        assertEquals(70L, pointService.getAvailablePoints(userId));
+    }
+
+    @Test
+    void run_ShouldAdjustLedgerToBlocks_WhenRepairing() {
+        takeFromLiveBlock(7L);
+        long expiredBefore = expiredInSlotToday();
+
+        ReconciliationReport report = reconciliationJob.run(true);
+
+        assertTrue(findMismatch(report).isPresent());
+        assertTrue(report.repaired() >= 1);
+        assertEquals(63L, pointService.getAvailablePoints(userId));
+        assertTrue(findMismatch(reconciliationJob.run(false)).isEmpty());
+        assertEquals(
+                -7L,
+                jdbcTemplate.queryForObject(
+                        "SELECT amount FROM point_ledger_events WHERE user_id = ? AND event_type = 'ADJUST'",
+                        Long.class,
+                        userId));
+        // Other drifted users of the same slot may be repaired by the same run
+        assertTrue(expiredInSlotToday() - expiredBefore >= 7L);
+    }
+
+    // Drift the blocks away from the ledger behind the application's back
+    private void takeFromLiveBlock(long points) {
+        jdbcTemplate.update(
+                "UPDATE point_blocks SET remaining_amount = remaining_amount - ? "
+                        + "WHERE user_id = ? AND remaining_amount > 0",
+                points,
+                userId);
+    }
+
+    private long expiredInSlotToday() {
+        return jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(expired), 0) FROM liability_rollups WHERE rollup_day = ? AND slot = ?",
+                Long.class,
+                LocalDate.now(),
+                Math.floorMod(userId, liabilityRepository.slots()));
+    }
+
+    private Optional<BalanceMismatch> findMismatch(ReconciliationReport report) {
+        return report.reported().stream()
+                .filter(mismatch -> mismatch.userId() == userId)
+                .findFirst();
+    }
+}
@@ -0,0 +1,167 @@
+package me.zhc1.pointsystem.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// The scheduled drain is pushed out so that each test decides when the consumer runs
+@SpringBootTest(
+        properties = {
+            "point.earn-queue.drain-interval=PT1H",
+            "point.earn-queue.batch-size=2",
+            "point.earn-queue.max-pending=10"
+        })
+class EarnQueueTest {
+
+    @Autowired
+    private PointService pointService;
+
+    @Autowired
+    private EarnQueue earnQueue;
+
+    @Autowired
+    private UserRegistrar userRegistrar;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private int userId;
+
+    @BeforeEach
+    void setUp() {
+        earnQueue.drain();
+
+        String name = UUID.randomUUID().toString();
+        userId = userRegistrar.register(name, name + "@example.com").getUserId();
+    }
+
+    @Test
+    void drain_ShouldApplyQueuedGrantsInGroupCommits() {
+        LocalDateTime expiresAt = LocalDateTime.now().plusDays(1);
+        for (int i = 0; i < 5; i++) {
+            pointService.earnPointsAsync(userId, 10L, expiresAt, null);
+        }
+        assertEquals(0L, pointService.getAvailablePoints(userId));
+
+        assertEquals(5, earnQueue.drain());
+
+        assertEquals(50L, pointService.getAvailablePoints(userId));
+        assertEquals(0, countQueued());
+        assertEquals(0, earnQueue.pending());
+    }
+
+    @Test
+    void drain_ShouldReplayQueuedGrants_WhenConsumerCrashedBeforeCommit() {
+        LocalDateTime expiresAt = LocalDateTime.now().plusDays(1);
+        pointService.earnPointsAsync(userId, 30L, expiresAt, "crash-" + userId);
+        pointService.earnPointsAsync(userId, 20L, expiresAt, null);
+
+        // The consumer dies before its transaction commits
+        transactionTemplate.executeWithoutResult(status -> {
+            earnQueue.drain();
+            status.setRollbackOnly();
+        });
+        assertEquals(0L, pointService.getAvailablePoints(userId));
+        assertEquals(2, countQueued());
+
+        // A restarted consumer finds the grants still queued and applies them exactly once
+        assertEquals(2, earnQueue.drain());
+        pointService.earnPointsAsync(userId, 30L, expiresAt, "crash-" + userId);
+        assertEquals(0, earnQueue.drain());
+        assertEquals(50L, pointService.getAvailablePoints(userId));
+    }
+
+    @Test
+    void drain_ShouldSetAsideGrantsOfUnknownUsers() {
+        LocalDateTime expiresAt = LocalDateTime.now().plusDays(1);
+        pointService.earnPointsAsync(Integer.MAX_VALUE, 10L, expiresAt, null);
+        pointService.earnPointsAsync(userId, 10L, expiresAt, null);
+
+        assertEquals(1, earnQueue.drain());
+
+        assertEquals(10L, pointService.getAvailablePoints(userId));
+        assertEquals(
+                "User not found",
+                jdbcTemplate.queryForObject(
+                        "SELECT last_error FROM earn_outbox WHERE user_id = ?", String.class, Integer.MAX_VALUE));
+        jdbcTemplate.update("DELETE FROM earn_outbox WHERE user_id = ?", Integer.MAX_VALUE);
+    }
+
+    @Test
+    void enqueue_ShouldRejectGrants_WhenQueueIsFull() {
+        LocalDateTime expiresAt = LocalDateTime.now().plusDays(1);
+        for (int i = 0; i < 10; i++) {
+            pointService.earnPointsAsync(userId, 1L, expiresAt, null);
+        }
+
+        assertThrows(
+                TransientDataAccessResourceException.class,
+                () -> pointService.earnPointsAsync(userId, 1L, expiresAt, null));
+
+        earnQueue.drain();
+        pointService.earnPointsAsync(userId, 1L, expiresAt, null);
+        earnQueue.drain();
+        assertEquals(11L, pointService.getAvailablePoints(userId));
+    }
+
+    @Test
+    void enqueue_ShouldNotOvershootCap_WhenCallersRace() throws Exception {
+        LocalDateTime expiresAt = LocalDateTime.now().plusDays(1);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(20);
+        int rejected = 0;
+        try {
+            for (int t = 0; t < 20; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    pointService.earnPointsAsync(userId, 1L, expiresAt, null);
+                    return null;
+                }));
+            }
+            start.countDown();
+
+            for (Future<?> future : futures) {
+                try {
+                    future.get(30, TimeUnit.SECONDS);
+                } catch (ExecutionException e) {
+                    assertInstanceOf(TransientDataAccessResourceException.class, e.getCause());
+                    rejected++;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(10, rejected);
+        assertEquals(10, countQueued());
+        assertEquals(10, earnQueue.pending());
+        earnQueue.drain();
+        assertEquals(10L, pointService.getAvailablePoints(userId));
+    }
+
+    private int countQueued() {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM earn_outbox WHERE user_id = ? AND failed_at IS NULL", Integer.class, userId);
+    }
+}
@@ -0,0 +1,157 @@
+package me.zhc1.pointsystem.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import me.zhc1.pointsystem.entity.PointUsage;
+import me.zhc1.pointsystem.repository.ExpiringPoints;
+
+@SpringBootTest(properties = {"point.expiry-notification.days=7", "point.expiry-notification.chunk-size=2"})
+class ExpiryNotificationJobTest {
+
+    @Autowired
+    private PointService pointService;
+
+    @Autowired
+    private ExpiryNotificationJob expiryNotificationJob;
+
+    @Autowired
+    private CapturingNotifier notifier;
+
+    @Autowired
+    private UserRegistrar userRegistrar;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private int userId;
+
+    @BeforeEach
+    void setUp() {
+        notifier.notified.clear();
+        userId = createUser();
+    }
+
+    @Test
+    void run_ShouldNotifyPointsExpiringWithinWindow() {
+        LocalDateTime soon = LocalDateTime.now().plusDays(2);
+        pointService.earnPoints(userId, 100L, soon);
+        pointService.earnPoints(userId, 50L, LocalDateTime.now().plusDays(30));
+        pointService.usePoints(userId, 30L);
+
+        expiryNotificationJob.run();
+
+        ExpiringPoints expiring = notifier.notified.get(userId);
+        assertEquals(70L, expiring.points());
+        assertEquals(soon.toLocalDate(), expiring.firstExpiryDay());
+    }
+
+    @Test
+    void run_ShouldNotNotify_WhenPointsAreUsedUpOrExpireLater() {
+        int laterUserId = createUser();
+        pointService.earnPoints(userId, 100L, LocalDateTime.now().plusDays(1));
+        pointService.usePoints(userId, 100L);
+        pointService.earnPoints(laterUserId, 100L, LocalDateTime.now().plusDays(30));
+
+        expiryNotificationJob.run();
+
+        assertFalse(notifier.notified.containsKey(userId));
+        assertFalse(notifier.notified.containsKey(laterUserId));
+    }
+
+    @Test
+    void run_ShouldNotifyRestoredPoints_WhenUsageIsCanceled() {
+        pointService.earnPoints(userId, 100L, LocalDateTime.now().plusDays(3));
+        PointUsage usage = pointService.usePoints(userId, 100L);
+        pointService.cancelUsage(usage.getUsageId());
+
+        expiryNotificationJob.run();
+
+        assertEquals(100L, notifier.notified.get(userId).points());
+    }
+
+    @Test
+    void run_ShouldStreamAllUsersInChunks() {
+        List<Integer> userIds = List.of(userId, createUser(), createUser(), createUser(), createUser());
+        for (int id : userIds) {
+            pointService.earnPoints(id, 10L, LocalDateTime.now().plusDays(1));
+        }
+
+        expiryNotificationJob.run();
+
+        assertTrue(notifier.notified.keySet().containsAll(userIds));
+        assertTrue(notifier.largestChunk <= 2);
+    }
+
+    // Pages of single days fill up at different users, and every user still gets the sum of all their days
+    @Test
+    void run_ShouldMergeDaysPerUser_WhenPagesOfDaysEndAtDifferentUsers() {
+        List<Integer> userIds = List.of(userId, createUser(), createUser(), createUser());
+        for (int i = 0; i < userIds.size(); i++) {
+            pointService.earnPoints(userIds.get(i), 10L, LocalDateTime.now().plusDays(1 + i % 2));
+            pointService.earnPoints(userIds.get(i), 5L, LocalDateTime.now().plusDays(4));
+        }
+
+        expiryNotificationJob.run();
+
+        for (int i = 0; i < userIds.size(); i++) {
+            ExpiringPoints expiring = notifier.notified.get(userIds.get(i));
+            assertEquals(15L, expiring.points());
+            assertEquals(LocalDate.now().plusDays(1 + i % 2), expiring.firstExpiryDay());
+        }
+        assertTrue(notifier.largestChunk <= 2);
+    }
+
+    @Test
+    void run_ShouldDropBucketsOfPastDays() {
+        pointService.earnPoints(userId, 100L, LocalDateTime.now().minusDays(2));
+
+        expiryNotificationJob.run();
+
+        assertEquals(
+                0,
+                jdbcTemplate.queryForObject(
+                        "SELECT COUNT(*) FROM expiry_buckets WHERE bucket_day < ?", Integer.class, LocalDate.now()));
+    }
+
+    private int createUser() {
+        String name = UUID.randomUUID().toString();
+        return userRegistrar.register(name, name + "@example.com").getUserId();
+    }
+
+    static class CapturingNotifier implements ExpiryNotifier {
+        private final Map<Integer, ExpiringPoints> notified = new ConcurrentHashMap<>();
+        private volatile int largestChunk;
+
+        @Override
+        public void notify(List<ExpiringPoints> chunk) {
+            largestChunk = Math.max(largestChunk, chunk.size());
+            chunk.forEach(expiring -> notified.put(expiring.userId(), expiring));
+        }
+    }
+
+    @TestConfiguration
+    static class NotifierConfiguration {
+
+        @Bean
+        @Primary
+        CapturingNotifier capturingNotifier() {
+            return new CapturingNotifier();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package me.zhc1.pointsystem.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+
+import me.zhc1.pointsystem.entity.PointType;
+
+import me.zhc1.pointsystem.service.FefoBlockHeap.SpendPlan;
+
+class FefoBlockHeapTest {
+    private final LocalDateTime now = LocalDateTime.of(2024, 1, 1, 12, 0);
+    private final LocalDate today = now.toLocalDate();
+
+    @Test
+    void plan_ShouldTakeFirstExpiringBlocksFirst() {
+        FefoBlockHeap heap = new FefoBlockHeap();
+        heap.append(1, PointType.CASH, today, now.plusDays(1), 100L);
+        heap.append(2, PointType.CASH, today, now.plusDays(3), 100L);
+        heap.insert(3, PointType.CASH, today.minusDays(1), now.plusDays(2), 50L);
+
+        SpendPlan plan = new SpendPlan();
+        assertEquals(120L, heap.plan(120L, now, plan));
+
+        assertEquals(2, plan.size());
+        assertEquals(1, plan.blockId(0));
+        assertEquals(100L, plan.amount(0));
+        assertEquals(3, plan.blockId(1));
+        assertEquals(20L, plan.amount(1));
+        assertEquals(50L, plan.remainingBefore(1));
+        assertEquals(today.minusDays(1), plan.earnedOn(1));
+    }
+
+    @Test
+    void plan_ShouldSkipExpiredBlocks() {
+        FefoBlockHeap heap = new FefoBlockHeap();
+        heap.append(1, PointType.CASH, today, now.minusSeconds(1), 100L);
+        heap.append(2, PointType.CASH, today, now.plusDays(1), 30L);
+
+        SpendPlan plan = new SpendPlan();
+        assertEquals(30L, heap.plan(50L, now, plan));
+        assertEquals(1, plan.size());
+        assertEquals(2, plan.blockId(0));
+        assertEquals(1, heap.size());
+    }
+
+    @Test
+    void apply_ShouldDropUsedUpBlocksAndKeepOrderWhenGrowing() {
+        FefoBlockHeap heap = new FefoBlockHeap();
+        for (int blockId = 1; blockId <= 20; blockId++) {
+            heap.append(blockId, PointType.CASH, today, now.plusDays(blockId), 10L);
+        }
+
+        SpendPlan plan = new SpendPlan();
+        heap.plan(25L, now, plan);
+        heap.apply(plan);
+        assertEquals(18, heap.size());
+
+        heap.insert(100, PointType.CASH, today, now.plusHours(1), 5L);
+        heap.plan(10L, now, plan);
+        assertEquals(100, plan.blockId(0));
+        assertEquals(3, plan.blockId(1));
+        assertEquals(5L, plan.remainingBefore(1));
+    }
+
+    @Test
+    void plan_ShouldTakeTypesByPriorityThenFirstExpiringFirst() {
+        FefoBlockHeap heap = new FefoBlockHeap();
+        heap.append(1, PointType.PROMOTION, today, now.plusDays(5), 10L);
+        heap.append(2, PointType.CASH, today, now.plusDays(1), 100L);
+        heap.insert(3, PointType.PARTNER, today, now.plusDays(2), 10L);
+        heap.insert(4, PointType.PROMOTION, today, now.plusDays(3), 10L);
+
+        SpendPlan plan = new SpendPlan();
+        assertEquals(40L, heap.plan(40L, now, plan));
+
+        assertEquals(4, plan.size());
+        assertEquals(4, plan.blockId(0));
+        assertEquals(1, plan.blockId(1));
+        assertEquals(3, plan.blockId(2));
+        assertEquals(2, plan.blockId(3));
+        assertEquals(10L, plan.amount(3));
+    }
+
+    @Test
+    void insert_ShouldSkipBlockAlreadyHeld() {
+        FefoBlockHeap heap = new FefoBlockHeap();
+        heap.append(1, PointType.CASH, today, now.plusDays(1), 100L);
+        heap.insert(1, PointType.CASH, today, now.plusDays(1), 100L);
+
+        assertEquals(1, heap.size());
+        SpendPlan plan = new SpendPlan();
+        assertEquals(100L, heap.plan(200L, now, plan));
+    }
+}
@@ -0,0 +1,115 @@
+package me.zhc1.pointsystem.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import me.zhc1.pointsystem.config.FraudProperties;
+
+class FraudDetectorTest {
+    private static final long START = 1_700_000_000_000L;
+
+    @Test
+    void recordEvent_ShouldForgetSlotsOlderThanAMinute() {
+        UserActivityWindow window = new UserActivityWindow();
+        assertEquals(1, window.recordEvent(START));
+        assertEquals(2, window.recordEvent(START + 20_000));
+        assertEquals(3, window.recordEvent(START + 50_000));
+
+        // The first slot has rotated out, the other two are still in the window
+        assertEquals(3, window.recordEvent(START + 70_000));
+        assertEquals(1, window.recordEvent(START + 200_000));
+    }
+
+    @Test
+    void recordSpend_ShouldSumTheLastHour() {
+        UserActivityWindow window = new UserActivityWindow();
+        assertEquals(100L, window.recordSpend(START, 100L));
+        assertEquals(150L, window.recordSpend(START + 30 * 60_000, 50L));
+        assertEquals(60L, window.recordSpend(START + 80 * 60_000, 10L));
+    }
+
+    @Test
+    void takeSpendAfterLargeEarn_ShouldCountOnlyTheFirstQuickSpend() {
+        UserActivityWindow window = new UserActivityWindow();
+        window.recordLargeEarn(START);
+
+        assertTrue(window.takeSpendAfterLargeEarn(START + 1_000, 60_000));
+        assertFalse(window.takeSpendAfterLargeEarn(START + 2_000, 60_000));
+
+        window.recordLargeEarn(START);
+        assertFalse(window.takeSpendAfterLargeEarn(START + 120_000, 60_000));
+    }
+
+    @Test
+    void onUse_ShouldReject_WhenHoldingAndRuleIsBroken() {
+        FraudDetector detector = detector(FraudAction.HOLD, 3);
+
+        detector.onEarn(1, 10L);
+        detector.onUse(1, 5L);
+        detector.onUse(1, 5L);
+        assertThrows(IllegalStateException.class, () -> detector.onUse(1, 5L));
+
+        // Other users have windows of their own
+        detector.onUse(2, 5L);
+        assertEquals(2, detector.trackedUsers());
+    }
+
+    @Test
+    void onUse_ShouldLetOperationsThroughAndCount_WhenFlagging() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        FraudDetector detector = new FraudDetector(properties(FraudAction.FLAG, 0), registry);
+
+        detector.onEarn(1, 1_000L);
+        detector.onUse(1, 10L);
+        detector.onUse(1, 2_000L);
+
+        assertEquals(
+                1.0,
+                registry.get("point.fraud.detections")
+                        .tag("rule", FraudRule.SPEND_RATE.name())
+                        .counter()
+                        .count());
+        assertEquals(
+                1.0,
+                registry.get("point.fraud.detections")
+                        .tag("rule", FraudRule.SPEND_AFTER_LARGE_EARN.name())
+                        .counter()
+                        .count());
+    }
+
+    @Test
+    void onUse_ShouldHandTheUseBack_WhenTransactionRollsBack() {
+        FraudDetector detector = detector(FraudAction.HOLD, 2);
+        detector.onUse(1, 5L);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            detector.onUse(1, 5L);
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        detector.onUse(1, 5L);
+        assertThrows(IllegalStateException.class, () -> detector.onUse(1, 5L));
+    }
+
+    private static FraudDetector detector(FraudAction action, int maxEventsPerMinute) {
+        return new FraudDetector(properties(action, maxEventsPerMinute), new SimpleMeterRegistry());
+    }
+
+    private static FraudProperties properties(FraudAction action, int maxEventsPerMinute) {
+        return new FraudProperties(
+                true, action, DataSize.ofMegabytes(1), maxEventsPerMinute, 1_500L, 1_000L, Duration.ofMinutes(10));
+    }
+}
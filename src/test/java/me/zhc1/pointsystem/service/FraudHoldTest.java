@@ -0,0 +1,128 @@
+package me.zhc1.pointsystem.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import me.zhc1.pointsystem.entity.PointUsage;
+
+@SpringBootTest(
+        properties = {
+            "point.fraud.action=HOLD",
+            "point.fraud.max-events-per-minute=0",
+            "point.fraud.max-spend-per-hour=100",
+            "point.fraud.large-earn=0"
+        })
+class FraudHoldTest {
+
+    @Autowired
+    private PointService pointService;
+
+    @Autowired
+    private UserRegistrar userRegistrar;
+
+    private int userId;
+
+    @BeforeEach
+    void setUp() {
+        userId = registerUser();
+    }
+
+    @Test
+    void usePoints_ShouldReturnOriginalUsage_WhenRetryFollowsSpendUpToTheLimit() {
+        String key = UUID.randomUUID().toString();
+        pointService.earnPoints(userId, 200L, LocalDateTime.now().plusDays(30));
+
+        PointUsage first = pointService.usePoints(userId, 100L, key);
+        PointUsage retried = pointService.usePoints(userId, 100L, key);
+
+        assertEquals(first.getUsageId(), retried.getUsageId());
+        assertEquals(100L, pointService.getAvailablePoints(userId));
+        assertThrows(IllegalStateException.class, () -> pointService.usePoints(userId, 1L));
+    }
+
+    @Test
+    void usePoints_ShouldNotCountFailedSpends() {
+        pointService.earnPoints(userId, 50L, LocalDateTime.now().plusDays(30));
+        assertThrows(IllegalStateException.class, () -> pointService.usePoints(userId, 80L));
+
+        pointService.earnPoints(userId, 50L, LocalDateTime.now().plusDays(30));
+        pointService.usePoints(userId, 100L);
+
+        assertEquals(0L, pointService.getAvailablePoints(userId));
+    }
+
+    // Each spend is within the hourly limit on its own, the burst is not
+    @Test
+    void usePoints_ShouldHoldBurst_WhenParallelSpendsTogetherBreakSpendRate() throws Exception {
+        pointService.earnPoints(userId, 1_000L, LocalDateTime.now().plusDays(30));
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<PointUsage>> futures = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(10);
+        int spent = 0;
+        int held = 0;
+        try {
+            for (int t = 0; t < 10; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return pointService.usePoints(userId, 20L);
+                }));
+            }
+            start.countDown();
+
+            for (Future<PointUsage> future : futures) {
+                try {
+                    future.get(30, TimeUnit.SECONDS);
+                    spent++;
+                } catch (ExecutionException e) {
+                    assertInstanceOf(IllegalStateException.class, e.getCause());
+                    held++;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(5, spent);
+        assertEquals(5, held);
+        assertEquals(900L, pointService.getAvailablePoints(userId));
+    }
+
+    // The first expiring member's share alone is over the hourly limit
+    @Test
+    void useWalletPoints_ShouldHoldSpend_WhenMemberShareBreaksSpendRate() {
+        int otherUserId = registerUser();
+        pointService.earnPoints(userId, 150L, LocalDateTime.now().plusDays(1));
+        pointService.earnPoints(otherUserId, 150L, LocalDateTime.now().plusDays(2));
+        int walletId = pointService.createWallet("family", List.of(userId, otherUserId)).getWalletId();
+
+        IllegalStateException held =
+                assertThrows(IllegalStateException.class, () -> pointService.useWalletPoints(walletId, 200L));
+
+        assertTrue(held.getMessage().contains(FraudRule.SPEND_RATE.name()));
+        assertEquals(300L, pointService.getWalletBalance(walletId).availablePoints());
+        // A share within the limit goes through
+        assertEquals(1, pointService.useWalletPoints(walletId, 100L).size());
+        assertEquals(200L, pointService.getWalletBalance(walletId).availablePoints());
+    }
+
+    private int registerUser() {
+        String name = UUID.randomUUID().toString();
+        return userRegistrar.register(name, name + "@example.com").getUserId();
+    }
+}
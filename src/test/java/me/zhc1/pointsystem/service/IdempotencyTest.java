@@ -0,0 +1,91 @@
+package me.zhc1.pointsystem.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import me.zhc1.pointsystem.entity.PointUsage;
+
+@SpringBootTest
+class IdempotencyTest {
+
+    @Autowired
+    private PointService pointService;
+
+    @Autowired
+    private UserRegistrar userRegistrar;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private int userId;
+
+    @BeforeEach
+    void setUp() {
+        String name = UUID.randomUUID().toString();
+        userId = userRegistrar.register(name, name + "@example.com").getUserId();
+    }
+
+    @Test
+    void earnPoints_ShouldApplyOnce_WhenRetriedWithSameKey() {
+        String key = UUID.randomUUID().toString();
+        LocalDateTime expiresAt = LocalDateTime.now().plusDays(30);
+
+        pointService.earnPoints(userId, 100L, expiresAt, key);
+        pointService.earnPoints(userId, 100L, expiresAt, key);
+
+        assertEquals(100L, pointService.getAvailablePoints(userId));
+        assertEquals(1, countLedgerEvents("EARN"));
+    }
+
+    @Test
+    void usePoints_ShouldReturnOriginalUsage_WhenRetriedWithSameKey() {
+        String key = UUID.randomUUID().toString();
+        pointService.earnPoints(userId, 100L, LocalDateTime.now().plusDays(30));
+
+        PointUsage first = pointService.usePoints(userId, 30L, key);
+        PointUsage retried = pointService.usePoints(userId, 30L, key);
+
+        assertEquals(first.getUsageId(), retried.getUsageId());
+        assertEquals(70L, pointService.getAvailablePoints(userId));
+        assertEquals(1, countLedgerEvents("USE"));
+    }
+
+    @Test
+    void usePoints_ShouldRejectKey_WhenReusedForDifferentRequest() {
+        String key = UUID.randomUUID().toString();
+        pointService.earnPoints(userId, 100L, LocalDateTime.now().plusDays(30));
+        pointService.usePoints(userId, 30L, key);
+
+        assertThrows(IllegalArgumentException.class, () -> pointService.usePoints(userId, 40L, key));
+        assertEquals(70L, pointService.getAvailablePoints(userId));
+    }
+
+    @Test
+    void usePoints_ShouldNotRecordKey_WhenUsageFails() {
+        String key = UUID.randomUUID().toString();
+        pointService.earnPoints(userId, 10L, LocalDateTime.now().plusDays(30));
+
+        assertThrows(IllegalStateException.class, () -> pointService.usePoints(userId, 30L, key));
+
+        // The key stays free for a retry once the user has enough points
+        pointService.earnPoints(userId, 20L, LocalDateTime.now().plusDays(30));
+        pointService.usePoints(userId, 30L, key);
+        assertEquals(0L, pointService.getAvailablePoints(userId));
+    }
+
+    private int countLedgerEvents(String eventType) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM point_ledger_events WHERE user_id = ? AND event_type = ?",
+                Integer.class,
+                userId,
+                eventType);
+    }
+}
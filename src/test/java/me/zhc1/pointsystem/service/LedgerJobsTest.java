@@ -0,0 +1,95 @@
+package me.zhc1.pointsystem.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import me.zhc1.pointsystem.entity.RemainingPoint;
+import me.zhc1.pointsystem.repository.RemainingPointRepository;
+import me.zhc1.pointsystem.service.LedgerRebuildJob.RebuildResult;
+
+@SpringBootTest
+class LedgerJobsTest {
+
+    @Autowired
+    private PointService pointService;
+
+    @Autowired
+    private LedgerSnapshotJob ledgerSnapshotJob;
+
+    @Autowired
+    private LedgerRebuildJob ledgerRebuildJob;
+
+    @Autowired
+    private UserRegistrar userRegistrar;
+
+    @Autowired
+    private RemainingPointRepository remainingPointRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private int userId;
+
+    @BeforeEach
+    void setUp() {
+        String name = UUID.randomUUID().toString();
+        userId = userRegistrar.register(name, name + "@example.com").getUserId();
+
+        pointService.earnPoints(userId, 100L, LocalDateTime.now().plusDays(1));
+        pointService.earnPoints(userId, 50L, LocalDateTime.now().plusDays(2));
+        pointService.usePoints(userId, 120L);
+    }
+
+    @Test
+    void snapshot_ShouldFoldLedgerTailIntoRemainingPoints() {
+        ledgerSnapshotJob.run();
+
+        RemainingPoint snapshot = remainingPointRepository.findByUserId(userId).orElseThrow();
+        assertEquals(30L, snapshot.getTotalRemainingPoints());
+        assertEquals(3L, snapshot.getSnapshotSequence());
+        assertEquals(30L, pointService.getAvailablePoints(userId));
+
+        // Events after the snapshot are replayed on top of it
+        pointService.earnPoints(userId, 5L, LocalDateTime.now().plusDays(3));
+        assertEquals(35L, pointService.getAvailablePoints(userId));
+    }
+
+    @Test
+    void snapshot_ShouldFoldOnlyUsersWithNewEvents() {
+        ledgerSnapshotJob.run();
+        LocalDateTime foldedAt = remainingPointRepository.findByUserId(userId).orElseThrow().getLastUpdatedAt();
+
+        // Nothing was appended for the user since, so its snapshot is left alone
+        ledgerSnapshotJob.run();
+        assertEquals(foldedAt, remainingPointRepository.findByUserId(userId).orElseThrow().getLastUpdatedAt());
+
+        pointService.earnPoints(userId, 5L, LocalDateTime.now().plusDays(3));
+        ledgerSnapshotJob.run();
+        RemainingPoint snapshot = remainingPointRepository.findByUserId(userId).orElseThrow();
+        assertEquals(35L, snapshot.getTotalRemainingPoints());
+        assertEquals(4L, snapshot.getSnapshotSequence());
+    }
+
+    @Test
+    void rebuild_ShouldRestoreCorruptedSnapshotFromLedger() {
+        ledgerSnapshotJob.run();
+        jdbcTemplate.update("UPDATE remaining_points SET total_remaining_points = 999 WHERE user_id = ?", userId);
+
+        RebuildResult result = ledgerRebuildJob.rebuild(userId);
+
+        assertEquals(999L, result.previousBalance());
+        assertEquals(30L, result.rebuiltBalance());
+        assertEquals(3L, result.events());
+        assertTrue(result.gapless());
+        assertFalse(result.consistent());
+        assertEquals(30L, pointService.getAvailablePoints(userId));
+    }
+}
@@ -0,0 +1,90 @@
+package me.zhc1.pointsystem.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@SpringBootTest
+class LiabilityRollupTest {
+
+    @Autowired
+    private PointService pointService;
+
+    @Autowired
+    private LiabilityBackfillJob liabilityBackfillJob;
+
+    @Autowired
+    private UserRegistrar userRegistrar;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private int userId;
+
+    @BeforeEach
+    void setUp() {
+        String name = UUID.randomUUID().toString();
+        userId = userRegistrar.register(name, name + "@example.com").getUserId();
+    }
+
+    @Test
+    void getLiability_ShouldFollowEarnUseExpireAndCancel() {
+        LocalDate today = LocalDate.now();
+        LiabilityReport yesterdayBefore = pointService.getLiability(today.minusDays(1));
+        LiabilityReport before = pointService.getLiability(today);
+
+        pointService.earnPoints(userId, 100L, LocalDateTime.now().plusDays(30));
+        pointService.earnPoints(userId, 50L, LocalDateTime.now().minusSeconds(1));
+        assertEquals(100L, pointService.getAvailablePoints(userId));
+        pointService.usePoints(userId, 30L);
+        pointService.cancelUsage(pointService.usePoints(userId, 10L).getUsageId());
+
+        LiabilityReport after = pointService.getLiability(today);
+        assertEquals(150L, after.earned() - before.earned());
+        assertEquals(30L, after.used() - before.used());
+        assertEquals(50L, after.expired() - before.expired());
+        assertEquals(70L, after.outstanding() - before.outstanding());
+        assertEquals(yesterdayBefore, pointService.getLiability(today.minusDays(1)));
+    }
+
+    @Test
+    void backfill_ShouldRebuildWhatTheLiveDeltasRecorded() {
+        pointService.earnPoints(userId, 100L, LocalDateTime.now().plusDays(30));
+        pointService.earnPoints(userId, 50L, LocalDateTime.now().minusSeconds(1));
+        pointService.usePoints(userId, 30L);
+        pointService.cancelUsage(pointService.usePoints(userId, 10L).getUsageId());
+        LocalDate asOf = LocalDate.now().plusYears(10);
+        LiabilityReport live = pointService.getLiability(asOf);
+
+        jdbcTemplate.update("DELETE FROM liability_rollups");
+        liabilityBackfillJob.run();
+
+        LiabilityReport rebuilt = pointService.getLiability(asOf);
+        assertEquals(live.earned(), rebuilt.earned());
+        assertEquals(live.used(), rebuilt.used());
+        assertEquals(live.expired(), rebuilt.expired());
+        assertEquals(live.outstanding(), rebuilt.outstanding());
+    }
+
+    @Test
+    void backfill_ShouldCorrectDriftedRollups_WithoutDroppingThem() {
+        pointService.earnPoints(userId, 100L, LocalDateTime.now().plusDays(30));
+        pointService.usePoints(userId, 30L);
+        LocalDate asOf = LocalDate.now().plusYears(10);
+        LiabilityReport live = pointService.getLiability(asOf);
+
+        jdbcTemplate.update("UPDATE liability_rollups SET earned = earned + 7, used = used + 3");
+        liabilityBackfillJob.run();
+        liabilityBackfillJob.run();
+
+        assertEquals(live, pointService.getLiability(asOf));
+    }
+}
@@ -0,0 +1,80 @@
+package me.zhc1.pointsystem.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PartnerFileReaderTest {
+    @TempDir
+    private Path directory;
+
+    @Test
+    void fill_ShouldParseLinesAndCountInvalidOnes() throws IOException {
+        Path file = write("alice,100,2030-01-31\r\n\nbob,x,2030-01-31\ncarol,5,2030-02-30\ndave,7,2030-12-01");
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            PartnerFileReader reader = new PartnerFileReader(channel, 0, PartnerFileReader.DEFAULT_WINDOW_SIZE);
+            PartnerFileReader.Chunk chunk = new PartnerFileReader.Chunk(10);
+
+            assertTrue(reader.fill(chunk));
+            assertEquals(4, chunk.lines());
+            assertEquals(2, chunk.invalid());
+            assertEquals(2, chunk.size());
+            assertEquals("alice", chunk.username(0));
+            assertEquals(100L, chunk.amount(0));
+            assertEquals(LocalDate.of(2030, 1, 31).toEpochDay(), chunk.expiryDay(0));
+            assertEquals("dave", chunk.username(1));
+            assertEquals(Files.size(file), chunk.endOffset());
+            assertFalse(reader.fill(chunk));
+        }
+    }
+
+    // Windows smaller than the file cut lines in two, and every chunk ends on a line boundary
+    @Test
+    void fill_ShouldReadLinesAcrossWindowsAndResumeAtOffset() throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            lines.append("user-").append(i).append(',').append(i + 1).append(",2030-01-01\n");
+        }
+        Path file = write(lines.toString());
+
+        long resumeAt;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            PartnerFileReader reader = new PartnerFileReader(channel, 0, 64);
+            PartnerFileReader.Chunk chunk = new PartnerFileReader.Chunk(30);
+
+            assertTrue(reader.fill(chunk));
+            assertEquals(30, chunk.size());
+            resumeAt = chunk.endOffset();
+            int records = chunk.size();
+            while (reader.fill(chunk)) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    assertEquals("user-" + (chunk.amount(i) - 1), chunk.username(i));
+                }
+                records += chunk.size();
+            }
+            assertEquals(100, records);
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            PartnerFileReader reader = new PartnerFileReader(channel, resumeAt, 64);
+            PartnerFileReader.Chunk chunk = new PartnerFileReader.Chunk(100);
+
+            assertTrue(reader.fill(chunk));
+            assertEquals(70, chunk.size());
+            assertEquals("user-30", chunk.username(0));
+        }
+    }
+
+    private Path write(String content) throws IOException {
+        return Files.writeString(directory.resolve("partner.csv"), content);
+    }
+}
@@ -0,0 +1,134 @@
+package me.zhc1.pointsystem.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import me.zhc1.pointsystem.entity.JobCheckpoint;
+import me.zhc1.pointsystem.repository.JobCheckpointRepository;
+import me.zhc1.pointsystem.service.PartnerPointImporter.ImportResult;
+
+@SpringBootTest(properties = {"point.partner-import.chunk-size=2", "point.partner-import.partitions=2"})
+class PartnerPointImporterTest {
+    @TempDir
+    private Path directory;
+
+    @Autowired
+    private PartnerPointImporter partnerPointImporter;
+
+    @Autowired
+    private PointService pointService;
+
+    @Autowired
+    private UserRegistrar userRegistrar;
+
+    @Autowired
+    private JobCheckpointRepository jobCheckpointRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void importFile_ShouldEarnPartnerPointsAndSkipBadLines() throws IOException {
+        String first = registerUser();
+        String second = registerUser();
+        LocalDate validThrough = LocalDate.now().plusDays(10);
+        Path file = write(first + ",100," + validThrough + "\n"
+                + second + ",30," + validThrough + "\n"
+                + "nobody-" + UUID.randomUUID() + ",10," + validThrough + "\n"
+                + first + ",oops," + validThrough + "\n"
+                + second + ",5," + LocalDate.now().minusDays(1) + "\n"
+                + first + ",20," + validThrough.plusDays(1) + "\n");
+
+        ImportResult result = partnerPointImporter.importFile(file);
+
+        assertEquals(6, result.lines());
+        assertEquals(3, result.imported());
+        assertEquals(2, result.invalid());
+        assertEquals(1, result.unknownUsers());
+        assertEquals(120L, pointService.getAvailablePoints(userId(first)));
+        assertEquals(30L, pointService.getAvailablePoints(userId(second)));
+        // Points stay valid through the given day
+        assertEquals(
+                validThrough.plusDays(1).atStartOfDay(),
+                jdbcTemplate.queryForObject(
+                        "SELECT MIN(expires_at) FROM point_blocks WHERE user_id = ? AND point_type = 'PARTNER'",
+                        LocalDateTime.class,
+                        userId(second)));
+
+        // The file's checkpoints are at its end, so importing it again adds nothing
+        ImportResult again = partnerPointImporter.importFile(file);
+        assertEquals(0, again.lines());
+        assertEquals(Files.size(file), again.resumedAt());
+        assertEquals(120L, pointService.getAvailablePoints(userId(first)));
+    }
+
+    // A crash after one partition committed a chunk and before the other did
+    @Test
+    void importFile_ShouldNotRewriteLinesOfPartitionsThatCommittedBeforeACrash() throws IOException {
+        String first = registerUser();
+        String second = registerUser();
+        int firstPartition = Math.floorMod(userId(first), 2);
+        assertNotEquals(firstPartition, Math.floorMod(userId(second), 2));
+        LocalDate validThrough = LocalDate.now().plusDays(10);
+        Path file = write(first + ",100," + validThrough + "\n" + second + ",30," + validThrough + "\n");
+
+        pointService.earnPoints(userId(first), 100L, LocalDateTime.now().plusDays(10));
+        JobCheckpoint checkpoint = new JobCheckpoint();
+        checkpoint.setJobName(PartnerPointImporter.jobName(file) + ":" + firstPartition);
+        checkpoint.setPosition(Files.size(file));
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        jobCheckpointRepository.save(checkpoint);
+
+        ImportResult result = partnerPointImporter.importFile(file);
+
+        assertEquals(0, result.resumedAt());
+        assertEquals(1, result.imported());
+        assertEquals(100L, pointService.getAvailablePoints(userId(first)));
+        assertEquals(30L, pointService.getAvailablePoints(userId(second)));
+    }
+
+    // Partners send a file of the same name every night
+    @Test
+    void importFile_ShouldImportEachDelivery_WhenFilesShareAName() throws IOException {
+        String user = registerUser();
+        LocalDate validThrough = LocalDate.now().plusDays(10);
+        Path file = directory.resolve("partner.csv");
+
+        Files.writeString(file, user + ",100," + validThrough + "\n");
+        assertEquals(1, partnerPointImporter.importFile(file).imported());
+
+        // Same name and length, different records
+        Files.writeString(file, user + ",200," + validThrough + "\n");
+        ImportResult next = partnerPointImporter.importFile(file);
+
+        assertEquals(0, next.resumedAt());
+        assertEquals(1, next.imported());
+        assertEquals(300L, pointService.getAvailablePoints(userId(user)));
+    }
+
+    private Path write(String content) throws IOException {
+        return Files.writeString(directory.resolve(UUID.randomUUID() + ".csv"), content);
+    }
+
+    private String registerUser() {
+        String name = UUID.randomUUID().toString();
+        userRegistrar.register(name, name + "@example.com");
+        return name;
+    }
+
+    private int userId(String username) {
+        return jdbcTemplate.queryForObject("SELECT user_id FROM users WHERE username = ?", Integer.class, username);
+    }
+}
@@ -0,0 +1,95 @@
+package me.zhc1.pointsystem.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import jakarta.persistence.EntityNotFoundException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@SpringBootTest(properties = {"point.archive.retention=30d", "point.archive.chunk-size=2"})
+class PointArchiveJobTest {
+
+    @Autowired
+    private PointService pointService;
+
+    @Autowired
+    private PointArchiveJob pointArchiveJob;
+
+    @Autowired
+    private UserRegistrar userRegistrar;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private int userId;
+
+    @BeforeEach
+    void setUp() {
+        String name = UUID.randomUUID().toString();
+        userId = userRegistrar.register(name, name + "@example.com").getUserId();
+    }
+
+    @Test
+    void run_ShouldMoveOldUsagesAndExhaustedBlocksToArchive() {
+        pointService.earnPoints(userId, 100L, LocalDateTime.now().plusYears(1));
+        int oldUsageId = pointService.usePoints(userId, 100L).getUsageId();
+        backdate(oldUsageId);
+        pointService.earnPoints(userId, 50L, LocalDateTime.now().plusYears(1));
+        int recentUsageId = pointService.usePoints(userId, 20L).getUsageId();
+
+        pointArchiveJob.run();
+
+        assertEquals(1, count("point_usages", userId));
+        assertEquals(1, count("point_blocks", userId));
+        assertEquals(1, count("point_usages_archive", userId));
+        assertEquals(1, count("point_usage_details_archive", userId));
+        assertEquals(1, count("point_blocks_archive", userId));
+        assertEquals(30L, pointService.getAvailablePoints(userId));
+
+        UsageHistoryPage live = pointService.getUsageHistory(userId, null, 10, false);
+        assertEquals(1, live.items().size());
+        assertEquals(recentUsageId, live.items().getFirst().usageId());
+
+        UsageHistoryPage first = pointService.getUsageHistory(userId, null, 1, true, true);
+        assertEquals(recentUsageId, first.items().getFirst().usageId());
+        UsageHistoryPage second = pointService.getUsageHistory(userId, first.nextCursor(), 1, true, true);
+        assertEquals(oldUsageId, second.items().getFirst().usageId());
+        assertEquals(100L, second.items().getFirst().details().getFirst().amount());
+        assertNull(second.nextCursor());
+
+        assertThrows(EntityNotFoundException.class, () -> pointService.cancelUsage(oldUsageId));
+    }
+
+    @Test
+    void run_ShouldKeepBlocksWithPointsLeft() {
+        pointService.earnPoints(userId, 100L, LocalDateTime.now().plusYears(1));
+        int usageId = pointService.usePoints(userId, 40L).getUsageId();
+        backdate(usageId);
+
+        pointArchiveJob.run();
+
+        assertEquals(0, count("point_usages", userId));
+        assertEquals(1, count("point_blocks", userId));
+        assertEquals(0, count("point_blocks_archive", userId));
+        pointService.usePoints(userId, 60L);
+        assertEquals(0L, pointService.getAvailablePoints(userId));
+    }
+
+    private void backdate(int usageId) {
+        LocalDateTime longAgo = LocalDateTime.now().minusDays(60);
+        jdbcTemplate.update("UPDATE point_usages SET used_at = ? WHERE usage_id = ?", longAgo, usageId);
+        jdbcTemplate.update("UPDATE point_blocks SET earned_at = ? WHERE user_id = ?", longAgo, userId);
+    }
+
+    private int count(String table, int userId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM " + table + " WHERE user_id = ?", Integer.class, userId);
+    }
+}
@@ -0,0 +1,56 @@
+package me.zhc1.pointsystem.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import me.zhc1.pointsystem.service.BulkEarnResult.GrantFailure;
+
+@SpringBootTest(properties = "point.bulk-earn.chunk-size=2")
+class PointBulkEarnerTest {
+
+    @Autowired
+    private PointService pointService;
+
+    @Autowired
+    private UserRegistrar userRegistrar;
+
+    @Test
+    void earnPointsBulk_ShouldApplyValidGrantsAndReportFailures() {
+        int firstUserId = createUser();
+        int secondUserId = createUser();
+        int missingUserId = Integer.MAX_VALUE;
+        LocalDateTime expiresAt = LocalDateTime.now().plusDays(30);
+
+        // Seed an existing balance row so that both the insert and the update branch of the upsert run
+        pointService.earnPoints(secondUserId, 10L, expiresAt);
+
+        BulkEarnResult result = pointService.earnPointsBulk(List.of(
+                new Grant(firstUserId, 100L, expiresAt),
+                new Grant(firstUserId, 50L, expiresAt.plusDays(1)),
+                new Grant(missingUserId, 100L, expiresAt),
+                new Grant(secondUserId, 0L, expiresAt),
+                new Grant(secondUserId, 30L, expiresAt)));
+
+        assertEquals(5, result.requested());
+        assertEquals(3, result.succeeded());
+        assertEquals(
+                List.of(
+                        new GrantFailure(3, secondUserId, "Amount must be positive"),
+                        new GrantFailure(2, missingUserId, "User not found")),
+                result.failures());
+        assertEquals(150L, pointService.getAvailablePoints(firstUserId));
+        assertEquals(40L, pointService.getAvailablePoints(secondUserId));
+    }
+
+    private int createUser() {
+        String name = UUID.randomUUID().toString();
+        return userRegistrar.register(name, name + "@example.com").getUserId();
+    }
+}
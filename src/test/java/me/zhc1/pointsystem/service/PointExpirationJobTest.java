@@ -0,0 +1,101 @@
+package me.zhc1.pointsystem.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import me.zhc1.pointsystem.entity.JobCheckpoint;
+import me.zhc1.pointsystem.entity.User;
+import me.zhc1.pointsystem.repository.JobCheckpointRepository;
+import me.zhc1.pointsystem.service.PointExpirationJob.ExpirationResult;
+
+@SpringBootTest(properties = "point.expiration.chunk-size=2")
+class PointExpirationJobTest {
+
+    @Autowired
+    private PointService pointService;
+
+    @Autowired
+    private PointExpirationJob pointExpirationJob;
+
+    @Autowired
+    private UserRegistrar userRegistrar;
+
+    @Autowired
+    private JobCheckpointRepository jobCheckpointRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User testUser;
+
+    @BeforeEach
+    void setUp() {
+        // Leave nothing expirable behind from other tests sharing the database
+        pointExpirationJob.run();
+
+        String name = UUID.randomUUID().toString();
+        testUser = userRegistrar.register(name, name + "@example.com");
+    }
+
+    @Test
+    void run_ShouldExpireOnlyLiveExpiredBlocksInChunks() {
+        int userId = testUser.getUserId();
+        for (int i = 1; i <= 5; i++) {
+            pointService.earnPoints(userId, 100L, LocalDateTime.now().minusDays(i));
+        }
+        pointService.earnPoints(userId, 50L, LocalDateTime.now().plusDays(1));
+
+        ExpirationResult result = pointExpirationJob.run();
+
+        assertEquals(5, result.blocks());
+        assertEquals(500L, result.points());
+        assertEquals(3, result.chunks());
+        assertEquals(50L, pointService.getAvailablePoints(userId));
+        assertEquals(5, countExpirations(userId));
+        assertTrue(jobCheckpointRepository.findById(PointExpirationJob.JOB_NAME).isEmpty());
+
+        // Already zeroed blocks are not picked up again
+        assertEquals(0, pointExpirationJob.run().blocks());
+        assertEquals(5, countExpirations(userId));
+    }
+
+    @Test
+    void run_ShouldResumeAfterCheckpoint() {
+        int userId = testUser.getUserId();
+        pointService.earnPoints(userId, 100L, LocalDateTime.now().minusDays(1));
+        pointService.earnPoints(userId, 200L, LocalDateTime.now().minusDays(1));
+
+        int firstBlockId = jdbcTemplate.queryForObject(
+                "SELECT MIN(block_id) FROM point_blocks WHERE user_id = ?", Integer.class, userId);
+        JobCheckpoint checkpoint = new JobCheckpoint();
+        checkpoint.setJobName(PointExpirationJob.JOB_NAME);
+        checkpoint.setPosition(firstBlockId);
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        jobCheckpointRepository.save(checkpoint);
+
+        ExpirationResult result = pointExpirationJob.run();
+
+        assertEquals(1, result.blocks());
+        assertEquals(200L, result.points());
+        // The block before the checkpoint is left to the next run, or to the user's next read
+        assertEquals(
+                100L,
+                jdbcTemplate.queryForObject(
+                        "SELECT SUM(remaining_amount) FROM point_blocks WHERE user_id = ?", Long.class, userId));
+    }
+
+    private int countExpirations(int userId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM point_ledger_events WHERE user_id = ? AND event_type = 'EXPIRE'",
+                Integer.class,
+                userId);
+    }
+}
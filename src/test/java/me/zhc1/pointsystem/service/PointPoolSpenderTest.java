@@ -0,0 +1,172 @@
+package me.zhc1.pointsystem.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.persistence.EntityNotFoundException;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import me.zhc1.pointsystem.entity.PointTransfer;
+import me.zhc1.pointsystem.entity.PointUsage;
+
+@SpringBootTest
+class PointPoolSpenderTest {
+
+    @Autowired
+    private PointService pointService;
+
+    @Autowired
+    private UserRegistrar userRegistrar;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void useWalletPoints_ShouldSpendFirstExpiringAcrossMembers() {
+        int parent = registerUser();
+        int child = registerUser();
+        pointService.earnPoints(parent, 100L, LocalDateTime.now().plusDays(5));
+        pointService.earnPoints(child, 100L, LocalDateTime.now().plusDays(1));
+        int walletId = pointService.createWallet("family", List.of(parent, child)).getWalletId();
+
+        List<PointUsage> usages = pointService.useWalletPoints(walletId, 150L);
+
+        assertEquals(2, usages.size());
+        assertEquals(Math.min(parent, child), usages.get(0).getUser().getUserId());
+        assertEquals(50L, pointService.getAvailablePoints(parent));
+        assertEquals(0L, pointService.getAvailablePoints(child));
+        assertEquals(50L, pointService.getWalletBalance(walletId).availablePoints());
+
+        // Each member's share is a usage of their own and is canceled like one
+        PointUsage childUsage = usages.stream()
+                .filter(usage -> usage.getUser().getUserId() == child)
+                .findFirst()
+                .orElseThrow();
+        assertEquals(100L, childUsage.getAmount());
+        pointService.cancelUsage(childUsage.getUsageId());
+        assertEquals(100L, pointService.getAvailablePoints(child));
+    }
+
+    @Test
+    void useWalletPoints_ShouldSpendNothing_WhenMembersTogetherHaveTooLittle() {
+        int parent = registerUser();
+        int child = registerUser();
+        pointService.earnPoints(parent, 100L, LocalDateTime.now().plusDays(1));
+        pointService.earnPoints(child, 100L, LocalDateTime.now().plusDays(1));
+        int walletId = pointService.createWallet("family", List.of(parent, child)).getWalletId();
+
+        assertThrows(IllegalStateException.class, () -> pointService.useWalletPoints(walletId, 201L));
+
+        assertEquals(200L, pointService.getWalletBalance(walletId).availablePoints());
+    }
+
+    @Test
+    void mergeWallets_ShouldPoolMembersOfBothWallets() {
+        int first = registerUser();
+        int second = registerUser();
+        pointService.earnPoints(first, 30L, LocalDateTime.now().plusDays(1));
+        pointService.earnPoints(second, 30L, LocalDateTime.now().plusDays(1));
+        int walletId = pointService.createWallet("first", List.of(first)).getWalletId();
+        int otherWalletId = pointService.createWallet("second", List.of(second)).getWalletId();
+
+        pointService.mergeWallets(walletId, otherWalletId);
+
+        assertEquals(List.of(first, second), pointService.getWalletBalance(walletId).memberIds());
+        assertThrows(EntityNotFoundException.class, () -> pointService.getWalletBalance(otherWalletId));
+        assertEquals(2, pointService.useWalletPoints(walletId, 60L).size());
+    }
+
+    @Test
+    void transferPoints_ShouldKeepExpiryAndRefuseCancellation() {
+        int sender = registerUser();
+        int recipient = registerUser();
+        LocalDateTime expiresAt = LocalDateTime.now().plusDays(3).truncatedTo(ChronoUnit.SECONDS);
+        pointService.earnPoints(sender, 100L, expiresAt);
+
+        PointTransfer transfer = pointService.transferPoints(sender, recipient, 40L);
+
+        assertEquals(60L, pointService.getAvailablePoints(sender));
+        assertEquals(40L, pointService.getAvailablePoints(recipient));
+        assertEquals(
+                expiresAt,
+                jdbcTemplate.queryForObject(
+                        "SELECT expires_at FROM point_blocks WHERE user_id = ?", LocalDateTime.class, recipient));
+        assertThrows(IllegalStateException.class, () -> pointService.cancelUsage(transfer.getUsageId()));
+        assertEquals(
+                List.of(transfer.getUsageId()),
+                pointService.cancelUsages(List.of(transfer.getUsageId())).notCancelableUsageIds());
+    }
+
+    // Wallets sharing members and transfers in both directions lock the same users in different combinations
+    @Test
+    void overlappingWalletsAndTransfers_ShouldNeitherDeadlockNorLosePoints() throws Exception {
+        int[] users = new int[4];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = registerUser();
+            pointService.earnPoints(users[i], 10_000L, LocalDateTime.now().plusDays(i + 1));
+        }
+        int[] wallets = {
+            pointService.createWallet("a", List.of(users[0], users[1])).getWalletId(),
+            pointService.createWallet("b", List.of(users[1], users[2])).getWalletId(),
+            pointService.createWallet("c", List.of(users[2], users[3], users[0])).getWalletId()
+        };
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> futures = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(12);
+        try {
+            for (int t = 0; t < 12; t++) {
+                int task = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    long spent = 0;
+                    for (int i = 0; i < 20; i++) {
+                        if (task % 2 == 0) {
+                            pointService.useWalletPoints(wallets[(task + i) % wallets.length], 10L);
+                            spent += 10L;
+                        } else {
+                            int from = users[(task + i) % users.length];
+                            int to = users[(task + i + 1) % users.length];
+                            pointService.transferPoints(from, to, 5L);
+                        }
+                    }
+                    return spent;
+                }));
+            }
+            start.countDown();
+
+            long spent = 0;
+            for (Future<Long> future : futures) {
+                spent += future.get(30, TimeUnit.SECONDS);
+            }
+
+            long remaining = 0;
+            for (int userId : users) {
+                remaining += pointService.getAvailablePoints(userId);
+            }
+            assertEquals(users.length * 10_000L - spent, remaining);
+        } finally {
+            // A deadlock shows up as a timeout above, the stuck threads are interrupted here
+            executor.shutdownNow();
+        }
+    }
+
+    private int registerUser() {
+        String name = UUID.randomUUID().toString();
+        return userRegistrar.register(name, name + "@example.com").getUserId();
+    }
+}
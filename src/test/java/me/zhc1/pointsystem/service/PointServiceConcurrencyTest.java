@@ -0,0 +1,121 @@
+package me.zhc1.pointsystem.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.test.context.TestPropertySource;
+
+import me.zhc1.pointsystem.entity.User;
+import me.zhc1.pointsystem.repository.PointBlockRepository;
+
+@SpringBootTest
+class PointServiceConcurrencyTest {
+    private static final int THREADS = 64;
+    private static final int USAGES_PER_THREAD = 20;
+    private static final long USAGE_AMOUNT = 10L;
+    private static final int BLOCKS = 10;
+    private static final long BLOCK_AMOUNT = 1_000L;
+
+    @Nested
+    @TestPropertySource(properties = "point.concurrency.lock-striping=true")
+    class WithLockStriping {
+        @Test
+        void usePoints_ShouldNeverOverspend(
+                @Autowired PointService pointService,
+                @Autowired UserRegistrar userRegistrar,
+                @Autowired PointBlockRepository pointBlockRepository)
+                throws Exception {
+            hammer("with lock striping", pointService, userRegistrar, pointBlockRepository);
+        }
+    }
+
+    @Nested
+    @TestPropertySource(properties = "point.concurrency.lock-striping=false")
+    class WithoutLockStriping {
+        @Test
+        void usePoints_ShouldNeverOverspend(
+                @Autowired PointService pointService,
+                @Autowired UserRegistrar userRegistrar,
+                @Autowired PointBlockRepository pointBlockRepository)
+                throws Exception {
+            hammer("without lock striping", pointService, userRegistrar, pointBlockRepository);
+        }
+    }
+
+    private static void hammer(
+            String label,
+            PointService pointService,
+            UserRegistrar userRegistrar,
+            PointBlockRepository pointBlockRepository)
+            throws Exception {
+        User user = createUser(userRegistrar);
+        int userId = user.getUserId();
+        for (int i = 0; i < BLOCKS; i++) {
+            pointService.earnPoints(userId, BLOCK_AMOUNT, LocalDateTime.now().plusDays(i + 1));
+        }
+
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger insufficient = new AtomicInteger();
+        AtomicInteger conflicted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < USAGES_PER_THREAD; i++) {
+                    try {
+                        pointService.usePoints(userId, USAGE_AMOUNT);
+                        succeeded.incrementAndGet();
+                    } catch (IllegalStateException e) {
+                        insufficient.incrementAndGet();
+                    } catch (ConcurrencyFailureException e) {
+                        conflicted.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // Every attempt either spent, found too few points or gave up after its retries
+        assertEquals(
+                THREADS * USAGES_PER_THREAD,
+                succeeded.get() + insufficient.get() + conflicted.get(),
+                "usePoints " + label);
+
+        long earned = BLOCKS * BLOCK_AMOUNT;
+        long available = pointService.getAvailablePoints(userId);
+        long blockTotal = pointBlockRepository.sumRemainingAmountForUser(user, LocalDateTime.now());
+
+        assertTrue(succeeded.get() > 0);
+        assertTrue(available >= 0);
+        assertEquals(earned - succeeded.get() * USAGE_AMOUNT, available);
+        assertEquals(available, blockTotal);
+    }
+
+    private static User createUser(UserRegistrar userRegistrar) {
+        String name = UUID.randomUUID().toString();
+        return userRegistrar.register(name, name + "@example.com");
+    }
+}
@@ -3,9 +3,13 @@ package me.zhc1.pointsystem.service;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import jakarta.persistence.EntityNotFoundException;
 
@@ -16,16 +20,31 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.util.unit.DataSize;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import me.zhc1.pointsystem.config.BalanceCacheProperties;
+import me.zhc1.pointsystem.config.BlockHeapProperties;
+import me.zhc1.pointsystem.config.ShardingProperties;
 import me.zhc1.pointsystem.entity.PointBlock;
+import me.zhc1.pointsystem.entity.PointEventType;
+import me.zhc1.pointsystem.entity.PointType;
 import me.zhc1.pointsystem.entity.PointUsage;
-import me.zhc1.pointsystem.entity.RemainingPoint;
 import me.zhc1.pointsystem.entity.User;
+import me.zhc1.pointsystem.repository.AvailableBalance;
+import me.zhc1.pointsystem.repository.ExpiryBucketRepository;
+import me.zhc1.pointsystem.repository.ExpiryHintRepository;
+import me.zhc1.pointsystem.repository.IdempotentOutcome;
+import me.zhc1.pointsystem.repository.LiabilityRepository;
 import me.zhc1.pointsystem.repository.PointBlockRepository;
 import me.zhc1.pointsystem.repository.PointUsageRepository;
 import me.zhc1.pointsystem.repository.RemainingPointRepository;
 import me.zhc1.pointsystem.repository.UserRepository;
+import me.zhc1.pointsystem.service.PointExpirationJob.ExpirationResult;
 
 @ExtendWith(MockitoExtension.class)
 class PointServiceTest {
@@ -42,13 +61,54 @@ class PointServiceTest {
     @Mock
     private RemainingPointRepository remainingPointRepository;
 
+    @Mock
+    private PointConcurrencyGuard concurrencyGuard;
+
+    @Mock
+    private PointExpirationJob pointExpirationJob;
+
+    @Mock
+    private PointLedger pointLedger;
+
+    @Mock
+    private IdempotencyStore idempotencyStore;
+
+    @Mock
+    private UserPointExpirer userPointExpirer;
+
+    @Mock
+    private ExpiryHintRepository expiryHintRepository;
+
+    @Mock
+    private ExpiryBucketRepository expiryBucketRepository;
+
+    @Mock
+    private LiabilityRepository liabilityRepository;
+
+    @Mock
+    private FraudDetector fraudDetector;
+
+    @Spy
+    private BalanceCache balanceCache =
+            new BalanceCache(new BalanceCacheProperties(true, 100, Duration.ofMinutes(1), 16));
+
+    @Spy
+    private PointMetrics pointMetrics = new PointMetrics(new SimpleMeterRegistry());
+
+    @Spy
+    private BlockHeapCache blockHeapCache =
+            new BlockHeapCache(new BlockHeapProperties(false, DataSize.ofMegabytes(1), Duration.ofMinutes(1)));
+
+    @Spy
+    private ShardRouter shardRouter = new ShardRouter(new ShardingProperties(false, List.of(), "sa", "", 10, true));
+
     @InjectMocks
     private PointService pointService;
 
     private User testUser;
     private PointBlock expiredBlock;
     private PointBlock nonExpiredBlock;
-    private RemainingPoint testRemainingPoint;
+    private long testAvailablePoints;
 
     @BeforeEach
     void setUp() {
@@ -60,38 +120,62 @@ class PointServiceTest {
         expiredBlock = new PointBlock();
         expiredBlock.setUser(testUser);
         expiredBlock.setRemainingAmount(100L);
+        expiredBlock.setEarnedAt(now.minusDays(30));
         expiredBlock.setExpiresAt(now.minusDays(1));
 
         nonExpiredBlock = new PointBlock();
         nonExpiredBlock.setUser(testUser);
         nonExpiredBlock.setRemainingAmount(50L);
+        nonExpiredBlock.setEarnedAt(now.minusDays(30));
         nonExpiredBlock.setExpiresAt(now.plusDays(1));
 
-        testRemainingPoint = new RemainingPoint();
-        testRemainingPoint.setUserId(testUser.getUserId());
-        testRemainingPoint.setTotalRemainingPoints(
-                expiredBlock.getRemainingAmount() + nonExpiredBlock.getRemainingAmount());
-        testRemainingPoint.setLastUpdatedAt(LocalDateTime.now());
+        // The expired block has not been swept by an expiration run yet
+        testAvailablePoints = expiredBlock.getRemainingAmount() + nonExpiredBlock.getRemainingAmount();
+
+        lenient()
+                .doAnswer(invocation -> {
+                    invocation.<Runnable>getArgument(1).run();
+                    return null;
+                })
+                .when(concurrencyGuard)
+                .executeWithoutResult(anyInt(), any(Runnable.class));
+        lenient()
+                .doAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get())
+                .when(concurrencyGuard)
+                .execute(anyInt(), any(Supplier.class));
     }
 
     @Test
     void getAvailablePoints_ShouldReturnCorrectAmount() {
-        when(userRepository.findById(testUser.getUserId())).thenReturn(Optional.of(testUser));
-        when(remainingPointRepository.findByUserId(testUser.getUserId())).thenReturn(Optional.of(testRemainingPoint));
+        when(remainingPointRepository.findAvailableBalance(testUser.getUserId()))
+                .thenReturn(Optional.of(new AvailableBalance(testAvailablePoints, null)));
 
         Long availablePoints = pointService.getAvailablePoints(testUser.getUserId());
 
-        assertEquals(testRemainingPoint.getTotalRemainingPoints(), availablePoints);
-        verify(userRepository).findById(testUser.getUserId());
-        verify(remainingPointRepository).findByUserId(testUser.getUserId());
+        assertEquals(testAvailablePoints, availablePoints);
+        verify(remainingPointRepository).findAvailableBalance(testUser.getUserId());
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void getAvailablePoints_ShouldNotTouchRepositories_WhenCached() {
+        when(remainingPointRepository.findAvailableBalance(testUser.getUserId()))
+                .thenReturn(Optional.of(new AvailableBalance(testAvailablePoints, null)));
+
+        pointService.getAvailablePoints(testUser.getUserId());
+        long availablePoints = pointService.getAvailablePoints(testUser.getUserId());
+
+        assertEquals(testAvailablePoints, availablePoints);
+        verify(remainingPointRepository, times(1)).findAvailableBalance(testUser.getUserId());
+        assertEquals(1, balanceCache.stats().hitCount());
     }
 
     @Test
     void getAvailablePoints_ShouldThrowException_WhenUserNotFound() {
-        when(userRepository.findById(testUser.getUserId())).thenReturn(Optional.empty());
+        when(remainingPointRepository.findAvailableBalance(testUser.getUserId())).thenReturn(Optional.empty());
 
         assertThrows(EntityNotFoundException.class, () -> pointService.getAvailablePoints(testUser.getUserId()));
-        verify(userRepository).findById(testUser.getUserId());
+        verify(remainingPointRepository).findAvailableBalance(testUser.getUserId());
     }
 
     @ParameterizedTest
@@ -109,6 +193,12 @@ class PointServiceTest {
     @Test
     void earnPoints_ShouldCreateNewPointBlock() {
         when(userRepository.findById(testUser.getUserId())).thenReturn(Optional.of(testUser));
+        // The sequence assigns the id on persist
+        when(pointBlockRepository.save(any(PointBlock.class))).thenAnswer(invocation -> {
+            PointBlock pointBlock = invocation.getArgument(0);
+            pointBlock.setBlockId(1);
+            return pointBlock;
+        });
 
         LocalDateTime expiresAt = LocalDateTime.now().plusDays(30);
         pointService.earnPoints(testUser.getUserId(), 100L, expiresAt);
@@ -119,6 +209,12 @@ class PointServiceTest {
                         && pointBlock.getAmount() == 100L
                         && pointBlock.getRemainingAmount() == 100L
                         && pointBlock.getExpiresAt().equals(expiresAt)));
+        verify(expiryHintRepository).lowerNextExpiry(testUser.getUserId(), expiresAt);
+        verify(liabilityRepository).apply(argThat(change -> change.earned() == 100L && change.used() == 0L));
+        verify(pointLedger)
+                .append(argThat(entry -> entry.userId() == testUser.getUserId()
+                        && entry.eventType() == PointEventType.EARN
+                        && entry.amount() == 100L));
     }
 
     @ParameterizedTest
@@ -128,57 +224,141 @@ class PointServiceTest {
                 IllegalArgumentException.class, () -> pointService.usePoints(testUser.getUserId(), amount));
         assertEquals("Amount must be positive", exception.getMessage());
 
-        verify(userRepository, never()).findById(anyInt());
-        verify(pointBlockRepository, never()).findByUserAndExpiresAtGreaterThanOrderByExpiresAtAsc(any(), any());
+        verify(remainingPointRepository, never()).findAvailableBalance(anyInt());
+        verify(pointBlockRepository, never()).findSpendableBlocks(any(), any(), any());
         verify(pointUsageRepository, never()).save(any());
     }
 
     @Test
     void usePoints_ShouldUsePointsCorrectly() {
-        when(userRepository.findById(testUser.getUserId())).thenReturn(Optional.of(testUser));
-        when(pointBlockRepository.findByUserAndExpiresAtGreaterThanOrderByExpiresAtAsc(
-                        eq(testUser), any(LocalDateTime.class)))
+        givenAvailablePoints();
+        when(pointBlockRepository.findSpendableBlocks(eq(testUser), any(LocalDateTime.class), any(Limit.class)))
                 .thenReturn(Collections.singletonList(nonExpiredBlock));
-        when(remainingPointRepository.findByUserId(testUser.getUserId())).thenReturn(Optional.of(testRemainingPoint));
 
         pointService.usePoints(testUser.getUserId(), 50L);
 
-        verify(userRepository).findById(testUser.getUserId());
-        verify(pointBlockRepository)
-                .findByUserAndExpiresAtGreaterThanOrderByExpiresAtAsc(eq(testUser), any(LocalDateTime.class));
+        verify(pointBlockRepository).findSpendableBlocks(eq(testUser), any(LocalDateTime.class), any(Limit.class));
+        verify(pointBlockRepository, never())
+                .findSpendableBlocksAfter(any(), any(), any(), any(), any(), anyInt(), any());
         verify(pointBlockRepository).save(argThat(pointBlock -> pointBlock.getRemainingAmount() == 0L));
+        verify(liabilityRepository)
+                .applyAll(argThat(changes -> changes.size() == 1 && changes.iterator().next().used() == 50L));
         verify(pointUsageRepository)
                 .save(argThat(pointUsage -> pointUsage.getUser().equals(testUser)
                         && pointUsage.getAmount() == 50L
                         && pointUsage.getUsageDetails().size() == 1
                         && pointUsage.getUsageDetails().getFirst().getAmount() == 50L));
+        verify(pointLedger)
+                .append(argThat(entry -> entry.userId() == testUser.getUserId()
+                        && entry.eventType() == PointEventType.USE
+                        && entry.amount() == -50L));
+        verify(pointMetrics).recordSpend(1, 1);
     }
 
     @Test
-    void usePoints_ShouldThrowException_WhenNotEnoughPoints() {
-        when(userRepository.findById(testUser.getUserId())).thenReturn(Optional.of(testUser));
-        when(pointBlockRepository.findByUserAndExpiresAtGreaterThanOrderByExpiresAtAsc(
-                        eq(testUser), any(LocalDateTime.class)))
+    void usePoints_ShouldFetchNextPage_WhenFirstPageIsNotEnough() {
+        LocalDateTime expiresAt = LocalDateTime.now().plusDays(1);
+        List<PointBlock> firstPage = new ArrayList<>();
+        for (int i = 1; i <= 16; i++) {
+            PointBlock block = new PointBlock();
+            block.setBlockId(i);
+            block.setUser(testUser);
+            block.setRemainingAmount(5L);
+            block.setEarnedAt(expiresAt.minusDays(30));
+            block.setExpiresAt(expiresAt);
+            firstPage.add(block);
+        }
+        nonExpiredBlock.setBlockId(17);
+
+        givenAvailablePoints();
+        when(pointBlockRepository.findSpendableBlocks(eq(testUser), any(LocalDateTime.class), any(Limit.class)))
+                .thenReturn(firstPage);
+        when(pointBlockRepository.findSpendableBlocksAfter(
+                        eq(testUser),
+                        any(LocalDateTime.class),
+                        eq(PointType.CASH),
+                        eq(List.of()),
+                        eq(expiresAt),
+                        eq(16),
+                        any(Limit.class)))
                 .thenReturn(Collections.singletonList(nonExpiredBlock));
 
-        assertThrows(IllegalStateException.class, () -> pointService.usePoints(testUser.getUserId(), 150L));
+        pointService.usePoints(testUser.getUserId(), 100L);
 
-        verify(userRepository).findById(testUser.getUserId());
-        verify(pointBlockRepository)
-                .findByUserAndExpiresAtGreaterThanOrderByExpiresAtAsc(eq(testUser), any(LocalDateTime.class));
+        assertEquals(30L, nonExpiredBlock.getRemainingAmount());
+        verify(pointUsageRepository)
+                .save(argThat(pointUsage -> pointUsage.getUsageDetails().size() == 17));
+    }
+
+    @Test
+    void usePoints_ShouldThrowException_WhenNotEnoughPoints() {
+        when(remainingPointRepository.findAvailableBalance(testUser.getUserId()))
+                .thenReturn(Optional.of(new AvailableBalance(testAvailablePoints, null)));
+
+        assertThrows(IllegalStateException.class, () -> pointService.usePoints(testUser.getUserId(), 200L));
+
+        verify(remainingPointRepository).findAvailableBalance(testUser.getUserId());
+        verify(pointBlockRepository, never()).findSpendableBlocks(any(), any(), any());
         verify(pointBlockRepository, never()).save(any(PointBlock.class));
         verify(pointUsageRepository, never()).save(any(PointUsage.class));
     }
 
     @Test
-    void expirePoints_ShouldExpireCorrectPointsAndUpdateRemainingPoints() {
-        when(pointBlockRepository.findByExpiresAtLessThanEqual(any(LocalDateTime.class)))
-                .thenReturn(Collections.singletonList(expiredBlock));
-        when(remainingPointRepository.findByUserId(testUser.getUserId())).thenReturn(Optional.of(testRemainingPoint));
+    void getAvailablePoints_ShouldExpireDueBlocks_WhenNextExpiryHasPassed() {
+        LocalDateTime nextExpiresAt = LocalDateTime.now().minusMinutes(1);
+        when(remainingPointRepository.findAvailableBalance(testUser.getUserId()))
+                .thenReturn(Optional.of(new AvailableBalance(testAvailablePoints, nextExpiresAt)))
+                .thenReturn(Optional.of(new AvailableBalance(nonExpiredBlock.getRemainingAmount(), null)));
+
+        long availablePoints = pointService.getAvailablePoints(testUser.getUserId());
 
-        pointService.expirePoints();
+        assertEquals(nonExpiredBlock.getRemainingAmount(), availablePoints);
+        verify(userPointExpirer).expireDue(eq(testUser.getUserId()), any(LocalDateTime.class));
+    }
+
+    @Test
+    void usePoints_ShouldThrowException_WhenLiveBlocksRunOut() {
+        // The balance still includes a block that expired after it was read
+        givenAvailablePoints();
+        when(pointBlockRepository.findSpendableBlocks(eq(testUser), any(LocalDateTime.class), any(Limit.class)))
+                .thenReturn(Collections.singletonList(nonExpiredBlock));
+
+        assertThrows(IllegalStateException.class, () -> pointService.usePoints(testUser.getUserId(), 100L));
+
+        verify(pointUsageRepository, never()).save(any(PointUsage.class));
+        verify(pointLedger, never()).append(any());
+    }
+
+    @Test
+    void usePoints_ShouldReturnOriginalUsage_WhenIdempotencyKeyWasApplied() {
+        PointUsage original = new PointUsage();
+        original.setUsageId(7);
+        original.setUser(testUser);
+        original.setAmount(50L);
+        when(idempotencyStore.find("checkout-1", testUser.getUserId(), PointEventType.USE, 50L))
+                .thenReturn(Optional.of(new IdempotentOutcome(
+                        "checkout-1", testUser.getUserId(), PointEventType.USE, 50L, null, 7, LocalDateTime.now())));
+        when(pointUsageRepository.findById(7)).thenReturn(Optional.of(original));
+
+        PointUsage pointUsage = pointService.usePoints(testUser.getUserId(), 50L, "checkout-1");
+
+        assertSame(original, pointUsage);
+        verifyNoInteractions(concurrencyGuard, pointBlockRepository, remainingPointRepository, pointLedger);
+        verify(idempotencyStore, never()).record(any());
+    }
+
+    @Test
+    void expirePoints_ShouldDelegateToExpirationJob() {
+        ExpirationResult result = new ExpirationResult(1, 1, 100L, Duration.ofMillis(1));
+        when(pointExpirationJob.run()).thenReturn(result);
+
+        assertEquals(result, pointService.expirePoints());
+        verify(pointExpirationJob).run();
+    }
 
-        verify(pointBlockRepository).save(argThat(block -> block.getRemainingAmount() == 0L));
-        verify(remainingPointRepository).save(argThat(rp -> rp.getTotalRemainingPoints() == 50L));
+    private void givenAvailablePoints() {
+        when(remainingPointRepository.findAvailableBalance(testUser.getUserId()))
+                .thenReturn(Optional.of(new AvailableBalance(testAvailablePoints, null)));
+        when(userRepository.getReferenceById(testUser.getUserId())).thenReturn(testUser);
     }
 }
@@ -0,0 +1,77 @@
+package me.zhc1.pointsystem.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import me.zhc1.pointsystem.entity.PointType;
+
+// Spends walk the block rows here; the heap's order is covered by FefoBlockHeapTest
+@SpringBootTest(properties = "point.block-heap.enabled=false")
+class PointTypeTest {
+
+    @Autowired
+    private PointService pointService;
+
+    @Autowired
+    private UserRegistrar userRegistrar;
+
+    private int userId;
+
+    @BeforeEach
+    void setUp() {
+        String name = UUID.randomUUID().toString();
+        userId = userRegistrar.register(name, name + "@example.com").getUserId();
+    }
+
+    @Test
+    void usePoints_ShouldSpendPromotionalPointsFirst() {
+        LocalDateTime now = LocalDateTime.now();
+        pointService.earnPoints(userId, 100L, now.plusDays(1), PointType.CASH, null);
+        pointService.earnPoints(userId, 30L, now.plusDays(20), PointType.PARTNER, null);
+        pointService.earnPoints(userId, 50L, now.plusDays(10), PointType.PROMOTION, null);
+
+        pointService.usePoints(userId, 60L);
+
+        assertEquals(120L, pointService.getAvailablePoints(userId));
+        assertEquals(
+                Map.of(PointType.PARTNER, 20L, PointType.CASH, 100L), pointService.getAvailablePointsByType(userId));
+    }
+
+    @Test
+    void usePoints_ShouldCrossTypesAcrossPages() {
+        LocalDateTime expiresAt = LocalDateTime.now().plusDays(1);
+        for (int i = 0; i < 16; i++) {
+            pointService.earnPoints(userId, 1L, expiresAt.plusMinutes(i), PointType.PROMOTION, null);
+        }
+        pointService.earnPoints(userId, 10L, expiresAt, PointType.PARTNER, null);
+        for (int i = 0; i < 17; i++) {
+            pointService.earnPoints(userId, 1L, expiresAt.plusMinutes(i), PointType.CASH, null);
+        }
+
+        pointService.usePoints(userId, 20L);
+        assertEquals(Map.of(PointType.PARTNER, 6L, PointType.CASH, 17L), pointService.getAvailablePointsByType(userId));
+
+        // The last type has nothing after it to continue with
+        pointService.usePoints(userId, 23L);
+        assertEquals(Map.of(), pointService.getAvailablePointsByType(userId));
+        assertEquals(0L, pointService.getAvailablePoints(userId));
+    }
+
+    @Test
+    void earnPointsBulk_ShouldKeepGrantTypes() {
+        LocalDateTime expiresAt = LocalDateTime.now().plusDays(1);
+        pointService.earnPointsBulk(List.of(
+                new Grant(userId, 10L, expiresAt, PointType.PARTNER), new Grant(userId, 5L, expiresAt, null)));
+
+        assertEquals(Map.of(PointType.PARTNER, 10L, PointType.CASH, 5L), pointService.getAvailablePointsByType(userId));
+    }
+}
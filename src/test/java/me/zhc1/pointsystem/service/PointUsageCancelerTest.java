@@ -0,0 +1,89 @@
+package me.zhc1.pointsystem.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@SpringBootTest(properties = "point.cancel.chunk-size=2")
+class PointUsageCancelerTest {
+
+    @Autowired
+    private PointService pointService;
+
+    @Autowired
+    private UserRegistrar userRegistrar;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private int userId;
+
+    @BeforeEach
+    void setUp() {
+        String name = UUID.randomUUID().toString();
+        userId = userRegistrar.register(name, name + "@example.com").getUserId();
+    }
+
+    @Test
+    void cancelUsage_ShouldRestoreOriginalBlocks() {
+        pointService.earnPoints(userId, 100L, LocalDateTime.now().plusDays(1));
+        pointService.earnPoints(userId, 50L, LocalDateTime.now().plusDays(2));
+        int usageId = pointService.usePoints(userId, 120L).getUsageId();
+
+        CancelResult result = pointService.cancelUsage(usageId);
+
+        assertEquals(1, result.canceled());
+        assertEquals(120L, result.restoredPoints());
+        assertEquals(150L, pointService.getAvailablePoints(userId));
+        assertEquals(List.of(100L, 50L), remainingAmounts());
+        assertThrows(IllegalStateException.class, () -> pointService.cancelUsage(usageId));
+    }
+
+    @Test
+    void cancelUsage_ShouldExpireRefund_WhenBlockHasExpiredSince() {
+        pointService.earnPoints(userId, 100L, LocalDateTime.now().plusDays(1));
+        pointService.earnPoints(userId, 50L, LocalDateTime.now().plusDays(2));
+        int usageId = pointService.usePoints(userId, 120L).getUsageId();
+        jdbcTemplate.update(
+                "UPDATE point_blocks SET expires_at = ? WHERE user_id = ? AND amount = 100",
+                LocalDateTime.now().minusMinutes(1),
+                userId);
+
+        CancelResult result = pointService.cancelUsage(usageId);
+
+        assertEquals(20L, result.restoredPoints());
+        assertEquals(100L, result.expiredPoints());
+        assertEquals(50L, pointService.getAvailablePoints(userId));
+        assertEquals(List.of(0L, 50L), remainingAmounts());
+    }
+
+    @Test
+    void cancelUsages_ShouldCancelInChunksAndSkipNotCancelable() {
+        pointService.earnPoints(userId, 100L, LocalDateTime.now().plusDays(1));
+        int first = pointService.usePoints(userId, 10L).getUsageId();
+        int second = pointService.usePoints(userId, 20L).getUsageId();
+        int third = pointService.usePoints(userId, 30L).getUsageId();
+        pointService.cancelUsage(second);
+
+        CancelResult result = pointService.cancelUsages(List.of(first, second, third, Integer.MAX_VALUE));
+
+        assertEquals(4, result.requested());
+        assertEquals(2, result.canceled());
+        assertEquals(40L, result.restoredPoints());
+        assertEquals(List.of(second, Integer.MAX_VALUE), result.notCancelableUsageIds());
+        assertEquals(100L, pointService.getAvailablePoints(userId));
+    }
+
+    private List<Long> remainingAmounts() {
+        return jdbcTemplate.queryForList(
+                "SELECT remaining_amount FROM point_blocks WHERE user_id = ? ORDER BY expires_at", Long.class, userId);
+    }
+}
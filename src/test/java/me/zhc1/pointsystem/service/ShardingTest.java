@@ -0,0 +1,92 @@
+package me.zhc1.pointsystem.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import me.zhc1.pointsystem.entity.PointUsage;
+import me.zhc1.pointsystem.service.ShardRebalancer.MoveResult;
+
+@SpringBootTest(
+        properties = {
+            "point.sharding.enabled=true",
+            "point.sharding.urls[0]=jdbc:h2:mem:sharding-test-0;MODE=MYSQL",
+            "point.sharding.urls[1]=jdbc:h2:mem:sharding-test-1;MODE=MYSQL"
+        })
+class ShardingTest {
+
+    @Autowired
+    private PointService pointService;
+
+    @Autowired
+    private UserRegistrar userRegistrar;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private ShardRebalancer shardRebalancer;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void pointOperations_ShouldRunOnOwningShard() {
+        int userId = registerUserOn(1);
+
+        pointService.earnPoints(userId, 100L, LocalDateTime.now().plusDays(1));
+        PointUsage usage = pointService.usePoints(userId, 30L);
+
+        assertEquals(70L, pointService.getAvailablePoints(userId));
+        assertEquals(1, countBlocks(1, userId));
+        assertEquals(0, countBlocks(0, userId));
+        // Usage ids of shard 1 start above the range of shard 0
+        assertTrue(usage.getUsageId() > 1 << 27);
+
+        CancelResult result = pointService.cancelUsage(usage.getUsageId());
+        assertEquals(1, result.canceled());
+        assertEquals(100L, pointService.getAvailablePoints(userId));
+    }
+
+    @Test
+    void moveBucket_ShouldKeepBalanceAndHistory() {
+        int userId = registerUserOn(1);
+        pointService.earnPoints(userId, 100L, LocalDateTime.now().plusDays(1));
+        pointService.usePoints(userId, 40L);
+
+        MoveResult result = shardRebalancer.moveBucket(ShardRouter.bucketOf(userId), 0);
+
+        assertEquals(1, result.sourceShard());
+        assertEquals(0, shardRouter.shardOf(userId));
+        assertEquals(0, countBlocks(1, userId));
+        assertEquals(1, countBlocks(0, userId));
+        assertEquals(60L, pointService.getAvailablePoints(userId));
+        assertEquals(1, pointService.getUsageHistory(userId, null, 20, true).items().size());
+
+        pointService.usePoints(userId, 60L);
+        assertEquals(0L, pointService.getAvailablePoints(userId));
+    }
+
+    private int registerUserOn(int shard) {
+        while (true) {
+            String name = UUID.randomUUID().toString();
+            int userId = userRegistrar.register(name, name + "@example.com").getUserId();
+            if (shardRouter.shardOf(userId) == shard) {
+                return userId;
+            }
+        }
+    }
+
+    private int countBlocks(int shard, int userId) {
+        return shardRouter.onShard(
+                shard,
+                () -> jdbcTemplate.queryForObject(
+                        "SELECT COUNT(*) FROM point_blocks WHERE user_id = ?", Integer.class, userId));
+    }
+}
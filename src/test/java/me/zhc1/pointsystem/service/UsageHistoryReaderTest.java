@@ -0,0 +1,87 @@
+package me.zhc1.pointsystem.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import jakarta.persistence.EntityNotFoundException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import me.zhc1.pointsystem.config.StatementCounter;
+
+@SpringBootTest
+class UsageHistoryReaderTest {
+
+    @Autowired
+    private PointService pointService;
+
+    @Autowired
+    private UserRegistrar userRegistrar;
+
+    private int userId;
+
+    @BeforeEach
+    void setUp() {
+        String name = UUID.randomUUID().toString();
+        userId = userRegistrar.register(name, name + "@example.com").getUserId();
+    }
+
+    @Test
+    void getUsageHistory_ShouldWalkAllUsagesNewestFirst() {
+        pointService.earnPoints(userId, 100L, LocalDateTime.now().plusDays(1));
+        pointService.earnPoints(userId, 100L, LocalDateTime.now().plusDays(2));
+        List<Integer> usageIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            usageIds.addFirst(pointService.usePoints(userId, 30L).getUsageId());
+        }
+
+        List<Integer> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            UsageHistoryPage page = pointService.getUsageHistory(userId, cursor, 2, false);
+            page.items().forEach(item -> seen.add(item.usageId()));
+            cursor = page.nextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(usageIds, seen);
+        assertEquals(3, pages);
+    }
+
+    @Test
+    void getUsageHistory_ShouldExpandDetailsInOneQueryPerPage() {
+        pointService.earnPoints(userId, 20L, LocalDateTime.now().plusDays(1));
+        pointService.earnPoints(userId, 100L, LocalDateTime.now().plusDays(2));
+        pointService.usePoints(userId, 30L);
+        pointService.usePoints(userId, 30L);
+
+        long statementsBefore = StatementCounter.current();
+        UsageHistoryPage page = pointService.getUsageHistory(userId, null, 10, true);
+        long statements = StatementCounter.current() - statementsBefore;
+
+        assertNull(page.nextCursor());
+        assertEquals(1, page.items().get(0).details().size());
+        assertEquals(2, page.items().get(1).details().size());
+        assertEquals(2, statements);
+    }
+
+    @Test
+    void getUsageHistory_ShouldThrowException_WhenUserNotFound() {
+        assertThrows(
+                EntityNotFoundException.class, () -> pointService.getUsageHistory(Integer.MAX_VALUE, null, 10, false));
+    }
+
+    @Test
+    void getUsageHistory_ShouldRejectInvalidCursor() {
+        assertThrows(
+                IllegalArgumentException.class, () -> pointService.getUsageHistory(userId, "not-a-cursor", 10, false));
+    }
+}
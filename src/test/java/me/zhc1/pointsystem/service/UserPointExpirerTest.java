@@ -0,0 +1,75 @@
+package me.zhc1.pointsystem.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@SpringBootTest
+class UserPointExpirerTest {
+
+    @Autowired
+    private PointService pointService;
+
+    @Autowired
+    private UserRegistrar userRegistrar;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private int userId;
+
+    @BeforeEach
+    void setUp() {
+        String name = UUID.randomUUID().toString();
+        userId = userRegistrar.register(name, name + "@example.com").getUserId();
+    }
+
+    @Test
+    void getAvailablePoints_ShouldExcludeExpiredBlocks_WithoutExpirationRun() {
+        LocalDateTime liveExpiresAt = LocalDateTime.now().plusDays(1).truncatedTo(ChronoUnit.SECONDS);
+        pointService.earnPoints(userId, 50L, liveExpiresAt);
+        assertEquals(50L, pointService.getAvailablePoints(userId));
+
+        pointService.earnPoints(userId, 100L, LocalDateTime.now().minusSeconds(1));
+
+        assertEquals(50L, pointService.getAvailablePoints(userId));
+        assertEquals(1, countExpirations());
+        assertEquals(liveExpiresAt, nextExpiresAt());
+
+        // Nothing is due any more, so reading again expires nothing
+        assertEquals(50L, pointService.getAvailablePoints(userId));
+        assertEquals(1, countExpirations());
+    }
+
+    @Test
+    void usePoints_ShouldCheckBalanceWithoutExpiredBlocks() {
+        pointService.earnPoints(userId, 100L, LocalDateTime.now().minusSeconds(1));
+        pointService.earnPoints(userId, 50L, LocalDateTime.now().plusDays(1));
+
+        assertThrows(IllegalStateException.class, () -> pointService.usePoints(userId, 60L));
+        pointService.usePoints(userId, 50L);
+
+        assertEquals(0L, pointService.getAvailablePoints(userId));
+        assertEquals(1, countExpirations());
+    }
+
+    private int countExpirations() {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM point_ledger_events WHERE user_id = ? AND event_type = 'EXPIRE'",
+                Integer.class,
+                userId);
+    }
+
+    private LocalDateTime nextExpiresAt() {
+        return jdbcTemplate.queryForObject(
+                "SELECT next_expires_at FROM remaining_points WHERE user_id = ?", LocalDateTime.class, userId);
+    }
+}